@@ -0,0 +1,64 @@
+package com.alivex.connector.rabbitmq.benchmark;
+
+import com.alivex.connector.rabbitmq.ConfirmTracker;
+import com.alivex.connector.rabbitmq.DefaultConfirmListener;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Dispatch of broker confirm through DefaultConfirmListener to outstanding confirm of ConfirmTracker.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ConfirmListenerBenchmark {
+
+    private static final int MULTIPLE_SIZE = 64;
+
+    private ConfirmTracker confirmTracker;
+    private DefaultConfirmListener confirmListener;
+    private long seqNo;
+
+    @Setup
+    public void setup() {
+        confirmTracker = new ConfirmTracker();
+        confirmListener = new DefaultConfirmListener();
+        confirmListener.responseTo(confirmTracker);
+        confirmListener.setOperationId("benchmark");
+    }
+
+    @Benchmark
+    public ConfirmTracker.Confirmation singleAck() throws IOException {
+
+        ConfirmTracker.Confirmation confirmation = confirmTracker.register(++seqNo);
+        confirmListener.handleAck(seqNo, false);
+        return confirmation;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MULTIPLE_SIZE)
+    public ConfirmTracker.Confirmation multipleAck() throws IOException {
+
+        ConfirmTracker.Confirmation confirmation = null;
+        for (int i = 0; i < MULTIPLE_SIZE; i++) {
+            confirmation = confirmTracker.register(++seqNo);
+        }
+
+        confirmListener.handleAck(seqNo, true);
+        return confirmation;
+    }
+}
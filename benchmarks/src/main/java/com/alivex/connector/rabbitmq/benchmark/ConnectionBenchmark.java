@@ -0,0 +1,70 @@
+package com.alivex.connector.rabbitmq.benchmark;
+
+import com.alivex.connector.rabbitmq.TraceableConnection;
+import com.alivex.connector.rabbitmq.simulator.SimulatedBroker;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of traceable connection wrapper create by TraceableConnectionFactory against a plain connection.
+ * Channel is closed right away so simulated connection does not keep it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ConnectionBenchmark {
+
+    private SimulatedBroker broker;
+    private Connection plainConnection;
+    private Connection traceableConnection;
+
+    @Setup
+    public void setup() {
+        broker = new SimulatedBroker();
+        plainConnection = broker.newConnection("plain");
+        traceableConnection = new TraceableConnection(broker.newConnection("traceable"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        broker.close();
+    }
+
+    @Benchmark
+    public Channel createChannelPlain() throws IOException, TimeoutException {
+
+        Channel channel = plainConnection.createChannel();
+        channel.close();
+        return channel;
+    }
+
+    @Benchmark
+    public Channel createChannelTraceable() throws IOException, TimeoutException {
+
+        Channel channel = traceableConnection.createChannel();
+        channel.close();
+        return channel;
+    }
+
+    @Benchmark
+    public String getIdTraceable() {
+        return traceableConnection.getId();
+    }
+}
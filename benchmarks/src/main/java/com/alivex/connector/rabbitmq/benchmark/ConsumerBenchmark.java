@@ -0,0 +1,96 @@
+package com.alivex.connector.rabbitmq.benchmark;
+
+import com.alivex.connector.rabbitmq.consumer.ConsumerBuilder;
+import com.alivex.connector.rabbitmq.consumer.DefaultConsumer;
+import com.alivex.connector.rabbitmq.simulator.SimulatedBroker;
+import com.alivex.connector.rabbitmq.simulator.SimulatedConnectionManager;
+import com.rabbitmq.client.Channel;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * DefaultConsumer delivery path with a processor that does nothing, ack per message against cumulative ack.
+ * Each invocation publish a burst on a plain channel and wait until consumer processed all of it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ConsumerBenchmark {
+
+    private static final int BURST_SIZE = 1000;
+
+    @Param({"1", "64"})
+    private int ackBatchCount;
+
+    private SimulatedBroker broker;
+    private DefaultConsumer consumer;
+    private Channel publishChannel;
+    private final AtomicLong processedCount = new AtomicLong();
+    private long publishedCount;
+    private byte[] body;
+
+    @Setup
+    public void setup(final Blackhole blackhole) throws IOException {
+
+        body = new byte[256];
+        broker = new SimulatedBroker();
+        broker.declareQueue("q.benchmark");
+        publishChannel = broker.newConnection("publisher").createChannel();
+
+        ConsumerBuilder builder = new ConsumerBuilder()
+                .queueName("q.benchmark")
+                .qos(1000)
+                .processor(data -> {
+                    blackhole.consume(data);
+                    processedCount.incrementAndGet();
+                })
+                .connectionManager(new SimulatedConnectionManager(broker));
+
+        if (ackBatchCount > 1) {
+            builder.ackBatch(ackBatchCount, 1000);
+        }
+
+        consumer = (DefaultConsumer) builder.build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        consumer.closeChannel();
+        broker.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST_SIZE)
+    public long handleDelivery() throws IOException {
+
+        for (int i = 0; i < BURST_SIZE; i++) {
+            publishChannel.basicPublish("", "q.benchmark", null, body);
+        }
+
+        publishedCount += BURST_SIZE;
+        while (processedCount.get() < publishedCount) {
+            LockSupport.parkNanos(1_000);
+        }
+
+        return publishedCount;
+    }
+}
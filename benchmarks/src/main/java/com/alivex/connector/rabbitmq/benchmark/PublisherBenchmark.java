@@ -0,0 +1,92 @@
+package com.alivex.connector.rabbitmq.benchmark;
+
+import com.alivex.connector.rabbitmq.publisher.Publisher;
+import com.alivex.connector.rabbitmq.publisher.PublisherBuilder;
+import com.alivex.connector.rabbitmq.simulator.SimulatedBroker;
+import com.alivex.connector.rabbitmq.simulator.SimulatedConnectionManager;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.DefaultConsumer;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * DefaultPublisher publish path, String encoding against byte[] publish.
+ * Messages are drained by an auto-ack consumer so simulated queue does not grow.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PublisherBenchmark {
+
+    @Param({"256", "16384"})
+    private int payloadSize;
+
+    private SimulatedBroker broker;
+    private Publisher publisher;
+    private String json;
+    private byte[] data;
+
+    @Setup
+    public void setup() throws IOException {
+
+        char[] chars = new char[payloadSize];
+        Arrays.fill(chars, 'a');
+        json = new String(chars);
+        data = json.getBytes(StandardCharsets.UTF_8);
+
+        broker = new SimulatedBroker();
+        broker.declareQueue("q.benchmark");
+        Channel sink = broker.newConnection("sink").createChannel();
+        sink.basicConsume("q.benchmark", true, new DefaultConsumer(sink));
+
+        publisher = new PublisherBuilder()
+                .exchange("")
+                .routingKey("q.benchmark")
+                .connectionManager(new SimulatedConnectionManager(broker))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        publisher.closeChannel();
+        broker.close();
+    }
+
+    @Benchmark
+    public boolean publishString() {
+        return publisher.basicPublish(json);
+    }
+
+    @Benchmark
+    public boolean publishBytes() {
+        return publisher.basicPublish(data);
+    }
+
+    @Benchmark
+    public CompletableFuture<Boolean> publishAsyncString() {
+        return publisher.publishAsync(json);
+    }
+
+    @Benchmark
+    public CompletableFuture<Boolean> publishAsyncBytes() {
+        return publisher.publishAsync(data);
+    }
+}
@@ -1,6 +1,8 @@
 package com.alivex.connector.rabbitmq;
 
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -9,9 +11,37 @@ import java.util.concurrent.BlockingQueue;
  */
 public interface ConfirmResponseConfigurer {
 
+    /**
+     * Confirm listener will complete outstanding confirm in tracker when confirm listener invoke in future.
+     * Default implementation keep a listener written for responseTo(BlockingQueue) working, queue given to it discard every result.
+     * @param confirmTracker
+     */
+    public default void responseTo(ConfirmTracker confirmTracker) {
+        responseTo(new LinkedBlockingQueue<Boolean>() {
+
+            @Override
+            public boolean offer(Boolean result) {
+                return true;
+            }
+
+            @Override
+            public boolean offer(Boolean result, long timeout, TimeUnit unit) {
+                return true;
+            }
+
+            @Override
+            public void put(Boolean result) {
+            }
+        });
+    }
+
     /**
      * Confirm listener will put response result into blocking queue when confirm listener invoke in future.
      * @param confirmAsyncResult
+     * @deprecated A result cannot be matched to its message through a queue once many messages are in flight,
+     * implement responseTo(ConfirmTracker) instead.
      */
-    public void responseTo(BlockingQueue<Boolean> confirmAsyncResult);
+    @Deprecated
+    public default void responseTo(BlockingQueue<Boolean> confirmAsyncResult) {
+    }
 }
@@ -0,0 +1,136 @@
+package com.alivex.connector.rabbitmq;
+
+import com.alivex.connector.rabbitmq.ConfirmTracker.Confirmation;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hashed timer wheel expiring outstanding publisher confirms, one timer thread is shared by every publisher.
+ * Confirmation itself is the node of wheel so scheduling a timeout allocate nothing and take no lock,
+ * a confirmation completed before its deadline is drop when its bucket is visited.
+ * Resolution is one tick, a confirmation is never expired before its deadline.
+ */
+final class ConfirmTimeoutWheel implements Runnable {
+
+    private static final Logger LOG = Logger.getLogger(ConfirmTimeoutWheel.class.getName());
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int WHEEL_SIZE = 512;
+    private static final int MASK = WHEEL_SIZE - 1;
+
+    private static final ConfirmTimeoutWheel INSTANCE = new ConfirmTimeoutWheel();
+
+    //Confirmations scheduled since last tick, push by publisher threads and taken as a whole by timer thread.
+    private final AtomicReference<Confirmation> pending = new AtomicReference<>();
+
+    //Buckets and tick are own by timer thread only.
+    private final Confirmation[] buckets = new Confirmation[WHEEL_SIZE];
+    private final long startNanos;
+    private long tick;
+
+    private ConfirmTimeoutWheel() {
+
+        this.startNanos = System.nanoTime();
+
+        Thread thread = new Thread(this, "rabbitmq-confirm-timer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    static ConfirmTimeoutWheel get() {
+        return INSTANCE;
+    }
+
+    void schedule(Confirmation confirmation, long timeout) {
+
+        confirmation.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        Confirmation head;
+        do {
+            head = pending.get();
+            confirmation.next = head;
+        } while (!pending.compareAndSet(head, confirmation));
+    }
+
+    @Override
+    public void run() {
+
+        while (true) {
+
+            waitForNextTick();
+
+            try {
+                transferPending();
+                expireBucket((int) (tick & MASK));
+            } catch (Throwable t) {
+                LOG.log(Level.SEVERE, "Confirm timeout wheel failed to process tick", t);
+            }
+
+            tick++;
+        }
+    }
+
+    private void waitForNextTick() {
+
+        long deadline = startNanos + (tick + 1) * TICK_NANOS;
+        long sleep;
+        while ((sleep = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, sleep);
+        }
+    }
+
+    private void transferPending() {
+
+        Confirmation confirmation = pending.getAndSet(null);
+        while (confirmation != null) {
+
+            Confirmation next = confirmation.next;
+            if (confirmation.isDone()) {
+                confirmation.next = null;
+            } else {
+                place(confirmation);
+            }
+            confirmation = next;
+        }
+    }
+
+    private void place(Confirmation confirmation) {
+
+        long deadlineTick = (confirmation.deadlineNanos - startNanos) / TICK_NANOS;
+        long targetTick = Math.max(deadlineTick, tick);
+        int index = (int) (targetTick & MASK);
+
+        confirmation.remainingRounds = (targetTick - tick) / WHEEL_SIZE;
+        confirmation.next = buckets[index];
+        buckets[index] = confirmation;
+    }
+
+    private void expireBucket(int index) {
+
+        Confirmation confirmation = buckets[index];
+        Confirmation remaining = null;
+
+        while (confirmation != null) {
+
+            Confirmation next = confirmation.next;
+            confirmation.next = null;
+
+            if (confirmation.isDone()) {
+                //Ack or nack already arrive, nothing to expire.
+            } else if (confirmation.remainingRounds > 0) {
+                confirmation.remainingRounds--;
+                confirmation.next = remaining;
+                remaining = confirmation;
+            } else {
+                confirmation.getTracker().expire(confirmation);
+            }
+
+            confirmation = next;
+        }
+
+        buckets[index] = remaining;
+    }
+}
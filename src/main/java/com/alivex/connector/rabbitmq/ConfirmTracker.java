@@ -0,0 +1,184 @@
+
+package com.alivex.connector.rabbitmq;
+
+import com.alivex.connector.rabbitmq.metrics.ConnectorMetrics;
+import com.rabbitmq.client.ConfirmListener;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Keep track of outstanding publisher confirms of a single channel, keyed by publish sequence number.
+ * Require enable confirm mode on channel, sequence number must be taken from getNextPublishSeqNo() before publish.
+ */
+public class ConfirmTracker implements ConfirmListener, Serializable {
+
+    private final ConcurrentNavigableMap<Long, Confirmation> outstandingConfirms = new ConcurrentSkipListMap<>();
+    private final ConnectorMetrics metrics;
+
+    public ConfirmTracker() {
+        this(ConnectorMetrics.NOOP);
+    }
+
+    public ConfirmTracker(ConnectorMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Register a message about to be publish with given sequence number.
+     * @param seqNo
+     * @return future completed with true when broker ack, false when broker nack or confirm is discard.
+     */
+    public Confirmation register(long seqNo) {
+
+        Confirmation confirmation = new Confirmation(this, seqNo, System.nanoTime());
+        outstandingConfirms.put(seqNo, confirmation);
+        metrics.recordInFlight(1);
+        return confirmation;
+    }
+
+    @Override
+    public void handleAck(long deliveryTag, boolean multiple) throws IOException {
+        confirm(deliveryTag, multiple, true);
+    }
+
+    @Override
+    public void handleNack(long deliveryTag, boolean multiple) throws IOException {
+        confirm(deliveryTag, multiple, false);
+    }
+
+    /**
+     * Complete a confirmation of delivery tag, or every confirmation up to and including delivery tag when multiple is set.
+     * @param deliveryTag
+     * @param multiple
+     * @param ack
+     */
+    public void confirm(long deliveryTag, boolean multiple, boolean ack) {
+
+        if (!multiple) {
+            Confirmation confirmation = outstandingConfirms.remove(deliveryTag);
+            if (confirmation != null) {
+                completeConfirmed(confirmation, ack);
+            }
+            return;
+        }
+
+        Map.Entry<Long, Confirmation> entry;
+        while ((entry = outstandingConfirms.firstEntry()) != null && entry.getKey() <= deliveryTag) {
+            if (outstandingConfirms.remove(entry.getKey(), entry.getValue())) {
+                completeConfirmed(entry.getValue(), ack);
+            }
+        }
+    }
+
+    /**
+     * Stop waiting for a confirmation, a late ack or nack of its sequence number will be ignored.
+     * @param confirmation
+     */
+    public void expire(Confirmation confirmation) {
+
+        if (outstandingConfirms.remove(confirmation.getSequenceNumber(), confirmation)) {
+            metrics.recordInFlight(-1);
+            metrics.recordConfirmTimeout();
+            confirmation.expired = true;
+            confirmation.complete(false);
+        }
+    }
+
+    /**
+     * Complete a confirmation as failed when its message could not be written to channel, it is not counted as a confirm timeout.
+     * @param confirmation
+     */
+    public void fail(Confirmation confirmation) {
+
+        if (outstandingConfirms.remove(confirmation.getSequenceNumber(), confirmation)) {
+            metrics.recordInFlight(-1);
+            confirmation.complete(false);
+        }
+    }
+
+    /**
+     * Expire a confirmation if broker does not confirm it within timeout, tracked by a shared timer wheel
+     * so no thread is parked and no task is scheduled per message.
+     * @param confirmation
+     * @param timeout in milliseconds, 0 to wait until confirm arrive or channel is shutdown.
+     */
+    public void expireAfter(Confirmation confirmation, long timeout) {
+
+        if (timeout > 0 && !confirmation.isDone()) {
+            ConfirmTimeoutWheel.get().schedule(confirmation, timeout);
+        }
+    }
+
+    /**
+     * Complete every outstanding confirmation as failed, used when a channel is shutdown.
+     * Sequence number start over on a new or recovered channel.
+     */
+    public void failAll() {
+
+        Map.Entry<Long, Confirmation> entry;
+        while ((entry = outstandingConfirms.pollFirstEntry()) != null) {
+            metrics.recordInFlight(-1);
+            entry.getValue().complete(false);
+        }
+    }
+
+    private void completeConfirmed(Confirmation confirmation, boolean ack) {
+
+        metrics.recordInFlight(-1);
+        metrics.recordConfirm(System.nanoTime() - confirmation.getPublishNanos());
+        if (!ack) {
+            metrics.recordNack();
+        }
+
+        confirmation.complete(ack);
+    }
+
+    public int getOutstandingCount() {
+        return outstandingConfirms.size();
+    }
+
+    /**
+     * Pending publisher confirm of one message.
+     */
+    public static class Confirmation extends CompletableFuture<Boolean> {
+
+        private final ConfirmTracker tracker;
+        private final long sequenceNumber;
+        private final long publishNanos;
+        private volatile boolean expired;
+
+        //Node of confirm timeout wheel.
+        long deadlineNanos;
+        long remainingRounds;
+        Confirmation next;
+
+        private Confirmation(ConfirmTracker tracker, long sequenceNumber, long publishNanos) {
+            this.tracker = tracker;
+            this.sequenceNumber = sequenceNumber;
+            this.publishNanos = publishNanos;
+        }
+
+        ConfirmTracker getTracker() {
+            return tracker;
+        }
+
+        /**
+         * @return true when confirmation is completed as false because timeout is reached before broker confirm.
+         */
+        public boolean isExpired() {
+            return expired;
+        }
+
+        public long getSequenceNumber() {
+            return sequenceNumber;
+        }
+
+        public long getPublishNanos() {
+            return publishNanos;
+        }
+    }
+}
@@ -4,7 +4,6 @@ package com.alivex.connector.rabbitmq;
 import com.rabbitmq.client.ConfirmListener;
 import java.io.IOException;
 import java.io.Serializable;
-import java.util.concurrent.BlockingQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -14,19 +13,19 @@ import java.util.logging.Logger;
 public class DefaultConfirmListener implements ConfirmListener, ConfirmResponseConfigurer, OperationIdConfigurer, Serializable {
 
     private static final Logger LOG = Logger.getLogger(DefaultConfirmListener.class.getName());
-    private BlockingQueue<Boolean> confirmAsyncResult;
+    private transient ConfirmTracker confirmTracker;
     private String operatioId;
 
     @Override
-    public void handleAck(long arg0, boolean arg1) throws IOException {
+    public void handleAck(long deliveryTag, boolean multiple) throws IOException {
         try {
 
             if (LOG.isLoggable(Level.FINER)) {
                 LOG.log(Level.FINER, "Confirm listener invoke.");
-                LOG.log(Level.FINER, "Successfully to publish data, operationId:{0}", operatioId);
+                LOG.log(Level.FINER, "Successfully to publish data, operationId:{0}, deliveryTag:{1}, multiple:{2}", new Object[]{operatioId, deliveryTag, multiple});
             }
 
-            confirmAsyncResult.add(true);
+            confirmTracker.confirm(deliveryTag, multiple, true);
         } catch (Exception e) {
             LOG.log(Level.WARNING, "Failed to confirm publish", e);
             throw e;
@@ -34,12 +33,12 @@ public class DefaultConfirmListener implements ConfirmListener, ConfirmResponseC
     }
 
     @Override
-    public void handleNack(long arg0, boolean arg1) throws IOException {
+    public void handleNack(long deliveryTag, boolean multiple) throws IOException {
         try {
 
             LOG.log(Level.FINER, "Confirm listener invoke.");
-            LOG.log(Level.FINER, "Failed to publish, operationId:{0}", operatioId);
-            confirmAsyncResult.add(false);
+            LOG.log(Level.FINER, "Failed to publish, operationId:{0}, deliveryTag:{1}, multiple:{2}", new Object[]{operatioId, deliveryTag, multiple});
+            confirmTracker.confirm(deliveryTag, multiple, false);
 
         } catch (Exception e) {
             LOG.log(Level.WARNING, "Failed to nack confirm publish", e);
@@ -48,8 +47,8 @@ public class DefaultConfirmListener implements ConfirmListener, ConfirmResponseC
     }
 
     @Override
-    public void responseTo(BlockingQueue<Boolean> confirmAsyncResult) {
-        this.confirmAsyncResult = confirmAsyncResult;
+    public void responseTo(ConfirmTracker confirmTracker) {
+        this.confirmTracker = confirmTracker;
     }
 
     @Override
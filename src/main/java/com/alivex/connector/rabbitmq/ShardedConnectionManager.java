@@ -0,0 +1,177 @@
+
+package com.alivex.connector.rabbitmq;
+
+import com.rabbitmq.client.Address;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Connection manager that open many connections per role and hand them out in round-robin.
+ * Every connection has its own socket and I/O thread, so channels of publishers and consumers
+ * are spread across them instead of sharing a single connection.
+ * A connection that is not open, for example while auto-recovery is in progress, is skipped
+ * and receives new channels again as soon as it is recovered.
+ * Existing channels are not rebalanced, channels opened on other connections while one was recovering stay where they are
+ * until they are closed, so shards are even again only as channels are replaced.
+ * Factory, addresses and connections are not serialized, a deserialized manager must be created again before use.
+ */
+public class ShardedConnectionManager extends ConnectionManager {
+
+    private static final Logger LOG = Logger.getLogger(ShardedConnectionManager.class.getName());
+
+    private final transient ConnectionFactory factory;
+    private final transient List<Address> addresses;
+    private final int publisherShards;
+    private final int consumerShards;
+    private final AtomicInteger publisherIndex = new AtomicInteger();
+    private final AtomicInteger consumerIndex = new AtomicInteger();
+
+    private transient volatile List<Connection> publisherConnections = Collections.emptyList();
+    private transient volatile List<Connection> consumerConnections = Collections.emptyList();
+
+    /**
+     * Use host or uri specified on factory.
+     * @param factory should be create by TraceableConnectionFactory to keep connection id traceable.
+     * @param publisherShards number of publisher connection.
+     * @param consumerShards number of consumer connection.
+     */
+    public ShardedConnectionManager(ConnectionFactory factory, int publisherShards, int consumerShards) {
+        this(factory, null, publisherShards, consumerShards);
+    }
+
+    /**
+     * @param factory should be create by TraceableConnectionFactory to keep connection id traceable.
+     * @param addresses list of server node, a connection will try each node in order.
+     * @param publisherShards number of publisher connection.
+     * @param consumerShards number of consumer connection.
+     */
+    public ShardedConnectionManager(ConnectionFactory factory, List<Address> addresses, int publisherShards, int consumerShards) {
+
+        if (publisherShards < 1 || consumerShards < 1) {
+            throw new IllegalArgumentException("Number of connection must be greater than zero");
+        }
+
+        this.factory = factory;
+        this.addresses = addresses;
+        this.publisherShards = publisherShards;
+        this.consumerShards = consumerShards;
+    }
+
+    /**
+     * Open every publisher and consumer connection, connections already opened are closed when one of them fail.
+     * @throws IOException
+     * @throws TimeoutException
+     */
+    public void open() throws IOException, TimeoutException {
+
+        List<Connection> publishers = openConnections("publisher", publisherShards);
+        try {
+            consumerConnections = openConnections("consumer", consumerShards);
+        } catch (IOException | TimeoutException | RuntimeException e) {
+            closeConnections(publishers);
+            throw e;
+        }
+
+        publisherConnections = publishers;
+        LOG.log(Level.INFO, "Sharded connection manager successfully intialized, publisher:{0}, consumer:{1}", new Object[]{publisherShards, consumerShards});
+    }
+
+    public void close() {
+
+        closeConnections(publisherConnections);
+        closeConnections(consumerConnections);
+    }
+
+    @Override
+    public Connection getPublisherConnection() {
+        return nextConnection(publisherConnections, publisherIndex);
+    }
+
+    @Override
+    public Connection getConsumerConnection() {
+        return nextConnection(consumerConnections, consumerIndex);
+    }
+
+    public List<Connection> getPublisherConnections() {
+        return publisherConnections;
+    }
+
+    public List<Connection> getConsumerConnections() {
+        return consumerConnections;
+    }
+
+    private List<Connection> openConnections(String role, int shards) throws IOException, TimeoutException {
+
+        List<Connection> connections = new ArrayList<>(shards);
+        try {
+
+            for (int i = 0; i < shards; i++) {
+
+                Connection connection = newConnection(role + "-" + i);
+                connections.add(connection);
+                LOG.log(Level.INFO, "Create cache connection for {0}, connection id:{1}", new Object[]{role, connection.getId()});
+            }
+
+        } catch (IOException | TimeoutException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Failed to open {0} connection, close {1} connection already opened", new Object[]{role, connections.size()});
+            closeConnections(connections);
+            throw e;
+        }
+
+        return Collections.unmodifiableList(connections);
+    }
+
+    private Connection newConnection(String name) throws IOException, TimeoutException {
+
+        if (addresses == null) {
+            return factory.newConnection(name);
+        }
+
+        return factory.newConnection(addresses, name);
+    }
+
+    /**
+     * Round-robin over open connections, fallback to next connection in order when none of them is open.
+     */
+    private Connection nextConnection(List<Connection> connections, AtomicInteger index) {
+
+        int size = connections == null ? 0 : connections.size();
+        if (size == 0) {
+            throw new IllegalStateException("Sharded connection manager is not open");
+        }
+
+        int start = Math.floorMod(index.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+
+            Connection connection = connections.get((start + i) % size);
+            if (connection.isOpen()) {
+                return connection;
+            }
+        }
+
+        return connections.get(start);
+    }
+
+    private void closeConnections(List<Connection> connections) {
+
+        if (connections == null) {
+            return;
+        }
+
+        for (Connection connection : connections) {
+            try {
+                connection.close();
+            } catch (Exception e) {
+                LOG.log(Level.INFO, "Failed to close Rabbit MQ connection", e);
+            }
+        }
+    }
+}
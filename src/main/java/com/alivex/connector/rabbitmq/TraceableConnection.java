@@ -1,64 +1,224 @@
 
 package com.alivex.connector.rabbitmq;
 
+import com.rabbitmq.client.BlockedListener;
+import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
-import java.io.Serializable;
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.Method;
+import com.rabbitmq.client.ExceptionHandler;
+import com.rabbitmq.client.Recoverable;
+import com.rabbitmq.client.RecoveryListener;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Map;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * This class use JDK dynamic proxy for connection interface
+ * Delegating wrapper of com.rabbitmq.client.Connection,
+ * every call is forward to original connection except getId() that always return an id.
+ * Recovery listener is forward when original connection support auto-recovery.
  */
-public class TraceableConnection implements InvocationHandler, Serializable  {
+public class TraceableConnection implements Connection, Recoverable {
 
     private static final Logger LOG = Logger.getLogger(TraceableConnection.class.getName());
 
-    private Object original;
+    private final Connection delegate;
 
-    public TraceableConnection(Object original) {
-        this.original = original;
+    public TraceableConnection(Connection delegate) {
+        this.delegate = delegate;
+    }
+
+    public Connection getDelegate() {
+        return delegate;
     }
 
     /**
-     * Interceptor for getId() on com.rabbitmq.client.Connection,
      * This method will automatic set id to connection object if current value is null.
      * Prevent null of id after auto-recovery connection feature trigger.
-     * @param proxy
-     * @param method
-     * @param args
      * @return
-     * @throws Throwable
      */
     @Override
-    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    public String getId() {
 
-        if (isInvokeGetId(method)) {
-
-            if (LOG.isLoggable(Level.FINEST)) {
-                LOG.log(Level.FINEST, "Proxy invoked, method:{0}", method.getName());
-            }
-            
-            Object result = method.invoke(original, args);
-            if (result == null) {
+        String id = delegate.getId();
+        if (id != null) {
+            return id;
+        }
 
-                String id = UUID.randomUUID().toString();
-                ((Connection)original).setId(id);
-                return id;
-            }
+        if (LOG.isLoggable(Level.FINEST)) {
+            LOG.log(Level.FINEST, "Assign id to connection");
         }
 
-        return method.invoke(original, args);
+        id = UUID.randomUUID().toString();
+        delegate.setId(id);
+        return id;
+    }
+
+    @Override
+    public void setId(String id) {
+        delegate.setId(id);
+    }
+
+    @Override
+    public Channel createChannel() throws IOException {
+        return delegate.createChannel();
+    }
+
+    @Override
+    public Channel createChannel(int channelNumber) throws IOException {
+        return delegate.createChannel(channelNumber);
+    }
+
+    @Override
+    public InetAddress getAddress() {
+        return delegate.getAddress();
+    }
+
+    @Override
+    public int getPort() {
+        return delegate.getPort();
+    }
+
+    @Override
+    public int getChannelMax() {
+        return delegate.getChannelMax();
+    }
+
+    @Override
+    public int getFrameMax() {
+        return delegate.getFrameMax();
+    }
+
+    @Override
+    public int getHeartbeat() {
+        return delegate.getHeartbeat();
     }
 
-    private boolean isInvokeGetId(Method m) {
-        return m.getName().equals("getId");
+    @Override
+    public Map<String, Object> getClientProperties() {
+        return delegate.getClientProperties();
+    }
+
+    @Override
+    public String getClientProvidedName() {
+        return delegate.getClientProvidedName();
+    }
+
+    @Override
+    public Map<String, Object> getServerProperties() {
+        return delegate.getServerProperties();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    @Override
+    public void close(int closeCode, String closeMessage) throws IOException {
+        delegate.close(closeCode, closeMessage);
+    }
+
+    @Override
+    public void close(int timeout) throws IOException {
+        delegate.close(timeout);
+    }
+
+    @Override
+    public void close(int closeCode, String closeMessage, int timeout) throws IOException {
+        delegate.close(closeCode, closeMessage, timeout);
+    }
+
+    @Override
+    public void abort() {
+        delegate.abort();
     }
-    
+
+    @Override
+    public void abort(int closeCode, String closeMessage) {
+        delegate.abort(closeCode, closeMessage);
+    }
+
+    @Override
+    public void abort(int timeout) {
+        delegate.abort(timeout);
+    }
+
+    @Override
+    public void abort(int closeCode, String closeMessage, int timeout) {
+        delegate.abort(closeCode, closeMessage, timeout);
+    }
+
+    @Override
+    public void addBlockedListener(BlockedListener listener) {
+        delegate.addBlockedListener(listener);
+    }
+
+    @Override
+    public boolean removeBlockedListener(BlockedListener listener) {
+        return delegate.removeBlockedListener(listener);
+    }
+
+    @Override
+    public void clearBlockedListeners() {
+        delegate.clearBlockedListeners();
+    }
+
+    @Override
+    public ExceptionHandler getExceptionHandler() {
+        return delegate.getExceptionHandler();
+    }
+
+    @Override
+    public void addShutdownListener(ShutdownListener listener) {
+        delegate.addShutdownListener(listener);
+    }
+
+    @Override
+    public void removeShutdownListener(ShutdownListener listener) {
+        delegate.removeShutdownListener(listener);
+    }
+
+    @Override
+    public ShutdownSignalException getCloseReason() {
+        return delegate.getCloseReason();
+    }
+
+    @Override
+    public void notifyListeners() {
+        delegate.notifyListeners();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return delegate.isOpen();
+    }
+
+    /**
+     * Listener is ignore when original connection does not support auto-recovery, it would never be invoke.
+     * @param listener
+     */
+    @Override
+    public void addRecoveryListener(RecoveryListener listener) {
+
+        if (delegate instanceof Recoverable) {
+            ((Recoverable) delegate).addRecoveryListener(listener);
+        }
+    }
+
+    @Override
+    public void removeRecoveryListener(RecoveryListener listener) {
+
+        if (delegate instanceof Recoverable) {
+            ((Recoverable) delegate).removeRecoveryListener(listener);
+        }
+    }
+
     @Override
     public String toString() {
-        return "TraceableConnection";
+        return delegate.toString();
     }
 }
@@ -1,23 +1,22 @@
 
 package com.alivex.connector.rabbitmq;
 
+import com.rabbitmq.client.AddressResolver;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
-import java.io.Serializable;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import net.sf.cglib.proxy.Enhancer;
-import net.sf.cglib.proxy.MethodInterceptor;
-import net.sf.cglib.proxy.MethodProxy;
 
 
 /**
- * This class use cglib proxy for connection factory object,
- * Do not declare subclass as final class cglib cannot be proxy a final class.
+ * Connection factory that wrap every created connection with TraceableConnection.
+ * Every newConnection() overload of com.rabbitmq.client.ConnectionFactory end up in
+ * newConnection(ExecutorService, AddressResolver, String), so only that one is override.
  */
-public class TraceableConnectionFactory implements MethodInterceptor, Serializable {
+public class TraceableConnectionFactory extends ConnectionFactory {
 
     private static final Logger LOG = Logger.getLogger(TraceableConnectionFactory.class.getName());
 
@@ -26,28 +25,50 @@ public class TraceableConnectionFactory implements MethodInterceptor, Serializab
     }
 
     /**
-     * Factory method, used to create proxy object of com.rabbitmq.client.ConnectionFactory.
-     * This proxy object add ability to trace connection id when create connection object from this factory.
+     * Factory method, used to create com.rabbitmq.client.ConnectionFactory.
+     * This factory add ability to trace connection id when create connection object from this factory.
      * @return
      */
     public static ConnectionFactory newFactoryInstance() {
-
-        Enhancer enhancer = new Enhancer();
-        enhancer.setSuperclass(ConnectionFactory.class);
-        enhancer.setCallback(new TraceableConnectionFactory());
-        return (ConnectionFactory) enhancer.create();
+        return new TraceableConnectionFactory();
     }
 
 
     /**
-     * Factory method, used to create proxy object of com.rabbitmq.client.ConnectionFactory.
-     * This proxy object add ability to trace connection id when create connection object from this factory.
+     * Factory method, used to create com.rabbitmq.client.ConnectionFactory.
+     * Consumer deliveries of every connection create from this factory are dispatch on given executor,
+     * instead of a default consumer work pool.
+     * @param consumerExecutor
+     * @return
+     */
+    public static ConnectionFactory newFactoryInstance(ExecutorService consumerExecutor) {
+
+        ConnectionFactory factory = newFactoryInstance();
+        factory.setSharedExecutor(consumerExecutor);
+        return factory;
+    }
+
+    /**
+     * Factory method, used to create com.rabbitmq.client.ConnectionFactory.
+     * This factory add ability to trace connection id when create connection object from this factory.
      * And set default auto-recovery.
      * @return
      */
     public static ConnectionFactory newAutomaticRecoveryFactoryInstance() {
+        return enableAutomaticRecovery(newFactoryInstance());
+    }
+
+    /**
+     * Same as newAutomaticRecoveryFactoryInstance(), consumer deliveries are dispatch on given executor.
+     * @param consumerExecutor
+     * @return
+     */
+    public static ConnectionFactory newAutomaticRecoveryFactoryInstance(ExecutorService consumerExecutor) {
+        return enableAutomaticRecovery(newFactoryInstance(consumerExecutor));
+    }
+
+    private static ConnectionFactory enableAutomaticRecovery(ConnectionFactory factory) {
 
-        ConnectionFactory factory = newFactoryInstance();
         factory.setRequestedHeartbeat(3);
         factory.setConnectionTimeout(5000);
         factory.setAutomaticRecoveryEnabled(true);
@@ -58,32 +79,19 @@ public class TraceableConnectionFactory implements MethodInterceptor, Serializab
 
 
     /**
-     * Interceptor method for newConnection() on com.rabbitmq.client.ConnectionFactory.
-     * This method create proxy object of com.rabbitmq.client.Connection,
+     * Create connection and wrap it with TraceableConnection,
      * used to enhance getId() on original connection object.
-     * @param o
-     * @param method
-     * @param args
-     * @param proxy
+     * @param executor
+     * @param addressResolver
+     * @param clientProvidedName
      * @return
-     * @throws Throwable
+     * @throws IOException
+     * @throws TimeoutException
      */
     @Override
-    public Object intercept(Object o, Method method, Object[] args, MethodProxy proxy) throws Throwable {
-
-        if (!isInvokeNewConnection(method)) {
-            return proxy.invokeSuper(o, args);
-        }
-
-        LOG.log(Level.FINER, "Intecept create connection from traceable connection factory.");
-        Object newConnection = proxy.invokeSuper(o, args);
-        //Create jdk dynamic proxy for connection interface.
-        return Proxy.newProxyInstance(TraceableConnection.class.getClassLoader(),
-                                      new Class[]{Connection.class},
-                                      new TraceableConnection(newConnection));
-    }
+    public Connection newConnection(ExecutorService executor, AddressResolver addressResolver, String clientProvidedName) throws IOException, TimeoutException {
 
-    private boolean isInvokeNewConnection(Method method) {
-        return method.getDeclaringClass() != Object.class && method.getReturnType() == Connection.class;
+        LOG.log(Level.FINER, "Create connection from traceable connection factory.");
+        return new TraceableConnection(super.newConnection(executor, addressResolver, clientProvidedName));
     }
 }
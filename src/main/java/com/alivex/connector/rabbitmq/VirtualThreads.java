@@ -0,0 +1,64 @@
+
+package com.alivex.connector.rabbitmq;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runtime detection of virtual thread support.
+ * This module is compiled for Java 8, virtual thread executor is looked up by reflection and is available
+ * only when running on a JVM that support it.
+ */
+public final class VirtualThreads {
+
+    private static final Logger LOG = Logger.getLogger(VirtualThreads.class.getName());
+    private static final MethodHandle NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = lookupFactory();
+
+    private VirtualThreads() {
+
+    }
+
+    public static boolean isSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Create an executor that start a new virtual thread for each task.
+     * @return
+     * @throws UnsupportedOperationException if running JVM does not support virtual thread.
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Virtual thread is not supported by this JVM");
+        }
+
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke();
+        } catch (Throwable e) {
+            throw new UnsupportedOperationException("Failed to create virtual thread executor", e);
+        }
+    }
+
+    private static MethodHandle lookupFactory() {
+
+        try {
+
+            MethodHandle factory = MethodHandles.publicLookup().findStatic(Executors.class,
+                                                                           "newVirtualThreadPerTaskExecutor",
+                                                                           MethodType.methodType(ExecutorService.class));
+            //Preview API on some JVM version throw when preview is not enabled.
+            ((ExecutorService) factory.invoke()).shutdown();
+            return factory;
+
+        } catch (Throwable e) {
+            LOG.log(Level.FINE, "Virtual thread is not supported by this JVM");
+            return null;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.alivex.connector.rabbitmq.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Serialize a message object to bytes and back, content type is set to every message encoded by this codec.
+ * Codec is share by every publisher or consumer it is given to, implementation must be thread-safe.
+ * @param <T> type of message object
+ */
+public interface Codec<T> {
+
+    /**
+     * @return mime type of encoded data, for example application/json.
+     */
+    public String getContentType();
+
+    /**
+     * Write value straight to output, output is a reusable buffer of publisher and must not be closed or kept.
+     * @param value
+     * @param output
+     * @throws IOException
+     */
+    public void encode(T value, OutputStream output) throws IOException;
+
+    /**
+     * Read value from a range of delivery body, data must not be kept after return.
+     * @param data
+     * @param offset
+     * @param length
+     * @return
+     * @throws IOException when data is not a valid encoding of T.
+     */
+    public T decode(byte[] data, int offset, int length) throws IOException;
+}
@@ -0,0 +1,53 @@
+package com.alivex.connector.rabbitmq.codec;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Select a codec by content type of a message, used by consumer that receive more than one encoding.
+ * Content type parameter such as charset is ignored when looking up a codec.
+ * @param <T> common type of message object decoded by every registered codec
+ */
+public class CodecRegistry<T> {
+
+    private final Map<String, Codec<? extends T>> codecs = new ConcurrentHashMap<>();
+    private final Codec<? extends T> defaultCodec;
+
+    /**
+     * @param defaultCodec used for message without content type, it is registered as well.
+     */
+    public CodecRegistry(Codec<? extends T> defaultCodec) {
+        this.defaultCodec = defaultCodec;
+        register(defaultCodec);
+    }
+
+    public CodecRegistry<T> register(Codec<? extends T> codec) {
+        codecs.put(mediaType(codec.getContentType()), codec);
+        return this;
+    }
+
+    /**
+     * @param contentType
+     * @return codec of content type, default codec when content type is null, null when content type is unknown.
+     */
+    public Codec<? extends T> get(String contentType) {
+
+        if (contentType == null) {
+            return defaultCodec;
+        }
+
+        return codecs.get(mediaType(contentType));
+    }
+
+    public Codec<? extends T> getDefault() {
+        return defaultCodec;
+    }
+
+    private static String mediaType(String contentType) {
+
+        int end = contentType.indexOf(';');
+        String mediaType = end < 0 ? contentType : contentType.substring(0, end);
+        return mediaType.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,44 @@
+package com.alivex.connector.rabbitmq.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encode text message such as json, it is what publisher send when a json string is given.
+ */
+public class StringCodec implements Codec<String> {
+
+    public static final String JSON = "application/json";
+
+    private final String contentType;
+    private final Charset charset;
+
+    /**
+     * Codec of utf-8 json.
+     */
+    public StringCodec() {
+        this(JSON, StandardCharsets.UTF_8);
+    }
+
+    public StringCodec(String contentType, Charset charset) {
+        this.contentType = contentType;
+        this.charset = charset;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public void encode(String value, OutputStream output) throws IOException {
+        output.write(value.getBytes(charset));
+    }
+
+    @Override
+    public String decode(byte[] data, int offset, int length) {
+        return new String(data, offset, length, charset);
+    }
+}
@@ -0,0 +1,296 @@
+package com.alivex.connector.rabbitmq.compression;
+
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Payload compression, name of each codec is send as content-encoding property of message.
+ * Deflate and gzip use fastest compression level, both are read back by any standard zlib or gzip reader.
+ */
+public enum Compression {
+
+    NONE(null) {
+        @Override
+        public byte[] compress(byte[] data) {
+            return data;
+        }
+
+        @Override
+        public byte[] decompress(byte[] data, int maxSize) {
+            return data;
+        }
+    },
+
+    /**
+     * zlib format (RFC 1950) the same as HTTP deflate content-encoding.
+     */
+    DEFLATE("deflate") {
+        @Override
+        public byte[] compress(byte[] data) {
+
+            CompressionBuffers buffers = CompressionBuffers.borrow();
+            try {
+
+                Deflater deflater = buffers.deflater(false);
+                deflater.setInput(data);
+                deflater.finish();
+
+                byte[] scratch = buffers.scratch(data.length / 2 + 64);
+                int length = deflate(buffers, deflater, scratch, 0);
+                return buffers.copyOut(buffers.scratch(0), length);
+
+            } finally {
+                buffers.release();
+            }
+        }
+
+        @Override
+        public byte[] decompress(byte[] data, int maxSize) throws IOException {
+
+            CompressionBuffers buffers = CompressionBuffers.borrow();
+            try {
+
+                Inflater inflater = buffers.inflater(false);
+                inflater.setInput(data);
+                int length = inflate(buffers, inflater, data.length * 4, maxSize);
+                return buffers.copyOut(buffers.scratch(0), length);
+
+            } finally {
+                buffers.release();
+            }
+        }
+    },
+
+    /**
+     * gzip format (RFC 1952) with a single member.
+     */
+    GZIP("gzip") {
+        @Override
+        public byte[] compress(byte[] data) {
+
+            CompressionBuffers buffers = CompressionBuffers.borrow();
+            try {
+
+                Deflater deflater = buffers.deflater(true);
+                deflater.setInput(data);
+                deflater.finish();
+
+                byte[] scratch = buffers.scratch(data.length / 2 + 64);
+                System.arraycopy(GZIP_HEADER, 0, scratch, 0, GZIP_HEADER.length);
+                int length = deflate(buffers, deflater, scratch, GZIP_HEADER.length);
+
+                scratch = buffers.scratch(0);
+                if (scratch.length < length + GZIP_TRAILER_SIZE) {
+                    scratch = buffers.grow(scratch);
+                }
+
+                CRC32 crc = buffers.crc();
+                crc.update(data);
+                writeIntLE(scratch, length, (int) crc.getValue());
+                writeIntLE(scratch, length + 4, data.length);
+
+                return buffers.copyOut(scratch, length + GZIP_TRAILER_SIZE);
+
+            } finally {
+                buffers.release();
+            }
+        }
+
+        @Override
+        public byte[] decompress(byte[] data, int maxSize) throws IOException {
+
+            int offset = readGzipHeader(data);
+            CompressionBuffers buffers = CompressionBuffers.borrow();
+            try {
+
+                Inflater inflater = buffers.inflater(true);
+                //Trailer follow deflate stream, it also serve as extra input byte raw inflater need.
+                inflater.setInput(data, offset, data.length - offset);
+
+                int length = inflate(buffers, inflater, data.length * 4, maxSize);
+                int trailer = data.length - inflater.getRemaining();
+                if (trailer + GZIP_TRAILER_SIZE > data.length) {
+                    throw new ZipException("Truncated gzip trailer");
+                }
+
+                byte[] scratch = buffers.scratch(0);
+                CRC32 crc = buffers.crc();
+                crc.update(scratch, 0, length);
+                if (readIntLE(data, trailer) != (int) crc.getValue() || readIntLE(data, trailer + 4) != length) {
+                    throw new ZipException("Corrupt gzip trailer");
+                }
+
+                return buffers.copyOut(scratch, length);
+
+            } finally {
+                buffers.release();
+            }
+        }
+    };
+
+    /**
+     * Maximum size of decompressed payload when not specified, guard consumer against a small message that inflate to gigabytes.
+     */
+    public static final int DEFAULT_MAX_DECOMPRESSED_SIZE = 64 * 1024 * 1024;
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+    private static final int GZIP_TRAILER_SIZE = 8;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private final String contentEncoding;
+
+    private Compression(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    public abstract byte[] compress(byte[] data);
+
+    /**
+     * Decompress with default max size of 64 MB.
+     * @param data
+     * @return
+     * @throws IOException when data is not a valid payload of this codec or it inflate above max size.
+     */
+    public byte[] decompress(byte[] data) throws IOException {
+        return decompress(data, DEFAULT_MAX_DECOMPRESSED_SIZE);
+    }
+
+    /**
+     * @param data
+     * @param maxSize maximum size in bytes of decompressed payload.
+     * @return
+     * @throws ZipException when data is not a valid payload of this codec or it inflate above max size.
+     */
+    public abstract byte[] decompress(byte[] data, int maxSize) throws IOException;
+
+    /**
+     * @return value of content-encoding property, null for NONE.
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    /**
+     * @param contentEncoding
+     * @return codec of content-encoding, null when message is not compressed by any supported codec.
+     */
+    public static Compression fromContentEncoding(String contentEncoding) {
+
+        if (contentEncoding == null) {
+            return null;
+        }
+
+        for (Compression compression : values()) {
+            if (contentEncoding.equalsIgnoreCase(compression.contentEncoding)) {
+                return compression;
+            }
+        }
+
+        return null;
+    }
+
+    private static int deflate(CompressionBuffers buffers, Deflater deflater, byte[] scratch, int offset) {
+
+        int length = offset;
+        while (!deflater.finished()) {
+            if (length == scratch.length) {
+                scratch = buffers.grow(scratch);
+            }
+            length += deflater.deflate(scratch, length, scratch.length - length);
+        }
+        return length;
+    }
+
+    /**
+     * Inflate into scratch buffer, output is stopped one byte after max size so buffer never grow far above it.
+     */
+    private static int inflate(CompressionBuffers buffers, Inflater inflater, int sizeHint, int maxSize) throws IOException {
+
+        byte[] scratch = buffers.scratch(Math.min(sizeHint, maxSize + 1));
+        int length = 0;
+
+        try {
+
+            while (!inflater.finished()) {
+
+                if (length == scratch.length) {
+                    scratch = buffers.grow(scratch);
+                }
+
+                int limit = (int) Math.min(scratch.length, maxSize + 1L);
+                int inflated = inflater.inflate(scratch, length, limit - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new ZipException("Truncated compressed payload");
+                }
+
+                length += inflated;
+                if (length > maxSize) {
+                    buffers.copyOut(scratch, 0);
+                    throw new ZipException("Decompressed payload exceed max size of " + maxSize + " bytes");
+                }
+            }
+
+        } catch (DataFormatException e) {
+            throw new ZipException("Corrupt compressed payload: " + e.getMessage());
+        }
+
+        return length;
+    }
+
+    private static int readGzipHeader(byte[] data) throws IOException {
+
+        if (data.length < GZIP_HEADER.length + GZIP_TRAILER_SIZE || data[0] != GZIP_HEADER[0] || data[1] != GZIP_HEADER[1] || data[2] != Deflater.DEFLATED) {
+            throw new ZipException("Not in gzip format");
+        }
+
+        int flags = data[3] & 0xff;
+        int offset = GZIP_HEADER.length;
+
+        if ((flags & FEXTRA) != 0) {
+            if (offset + 2 > data.length) {
+                throw new ZipException("Truncated gzip header");
+            }
+            offset += 2 + ((data[offset] & 0xff) | (data[offset + 1] & 0xff) << 8);
+        }
+        if ((flags & FNAME) != 0) {
+            offset = skipZeroTerminated(data, offset);
+        }
+        if ((flags & FCOMMENT) != 0) {
+            offset = skipZeroTerminated(data, offset);
+        }
+        if ((flags & FHCRC) != 0) {
+            offset += 2;
+        }
+
+        if (offset >= data.length) {
+            throw new ZipException("Truncated gzip header");
+        }
+        return offset;
+    }
+
+    private static int skipZeroTerminated(byte[] data, int offset) {
+
+        while (offset < data.length && data[offset] != 0) {
+            offset++;
+        }
+        return offset + 1;
+    }
+
+    private static void writeIntLE(byte[] data, int offset, int value) {
+        data[offset] = (byte) value;
+        data[offset + 1] = (byte) (value >>> 8);
+        data[offset + 2] = (byte) (value >>> 16);
+        data[offset + 3] = (byte) (value >>> 24);
+    }
+
+    private static int readIntLE(byte[] data, int offset) {
+        return (data[offset] & 0xff) | (data[offset + 1] & 0xff) << 8 | (data[offset + 2] & 0xff) << 16 | (data[offset + 3] & 0xff) << 24;
+    }
+}
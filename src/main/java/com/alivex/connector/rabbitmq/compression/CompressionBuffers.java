@@ -0,0 +1,152 @@
+package com.alivex.connector.rabbitmq.compression;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflater, inflater and scratch buffer borrowed from a bounded pool, creating a deflater per message is expensive.
+ * Pool does not depend on thread so it does not grow with number of thread, including virtual threads,
+ * buffers released while pool is full are ended at once instead of waiting for finalizer.
+ * A scratch buffer grown above retained size is given up after use so a single large payload does not stay in memory.
+ */
+final class CompressionBuffers {
+
+    private static final int INITIAL_SIZE = 8 * 1024;
+    private static final int MAX_RETAINED_SIZE = 1024 * 1024;
+    private static final int MAX_POOLED = Runtime.getRuntime().availableProcessors() * 2;
+
+    private static final Queue<CompressionBuffers> POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger POOLED = new AtomicInteger();
+
+    private Deflater zlibDeflater;
+    private Deflater rawDeflater;
+    private Inflater zlibInflater;
+    private Inflater rawInflater;
+    private final CRC32 crc = new CRC32();
+    private byte[] scratch = new byte[INITIAL_SIZE];
+
+    private CompressionBuffers() {
+
+    }
+
+    /**
+     * Must be given back by release once compression is done, usually in a finally block.
+     * @return buffers from pool or new buffers when pool is empty.
+     */
+    static CompressionBuffers borrow() {
+
+        CompressionBuffers buffers = POOL.poll();
+        if (buffers == null) {
+            return new CompressionBuffers();
+        }
+
+        POOLED.decrementAndGet();
+        return buffers;
+    }
+
+    /**
+     * Put buffers back to pool, or end them when pool is full.
+     */
+    void release() {
+
+        if (POOLED.incrementAndGet() <= MAX_POOLED) {
+            POOL.offer(this);
+            return;
+        }
+
+        POOLED.decrementAndGet();
+        end();
+    }
+
+    /**
+     * @return number of buffers waiting in pool.
+     */
+    static int pooledCount() {
+        return POOLED.get();
+    }
+
+    /**
+     * @param nowrap true for raw deflate without zlib header.
+     * @return deflater already reset.
+     */
+    Deflater deflater(boolean nowrap) {
+
+        Deflater deflater;
+        if (nowrap) {
+            deflater = rawDeflater == null ? rawDeflater = new Deflater(Deflater.BEST_SPEED, true) : rawDeflater;
+        } else {
+            deflater = zlibDeflater == null ? zlibDeflater = new Deflater(Deflater.BEST_SPEED, false) : zlibDeflater;
+        }
+
+        deflater.reset();
+        return deflater;
+    }
+
+    Inflater inflater(boolean nowrap) {
+
+        Inflater inflater;
+        if (nowrap) {
+            inflater = rawInflater == null ? rawInflater = new Inflater(true) : rawInflater;
+        } else {
+            inflater = zlibInflater == null ? zlibInflater = new Inflater(false) : zlibInflater;
+        }
+
+        inflater.reset();
+        return inflater;
+    }
+
+    CRC32 crc() {
+        crc.reset();
+        return crc;
+    }
+
+    /**
+     * @param minSize
+     * @return scratch buffer, content is undefined.
+     */
+    byte[] scratch(int minSize) {
+
+        if (scratch.length < minSize) {
+            scratch = new byte[Math.max(minSize, scratch.length * 2)];
+        }
+        return scratch;
+    }
+
+    byte[] grow(byte[] current) {
+        scratch = Arrays.copyOf(current, current.length * 2);
+        return scratch;
+    }
+
+    /**
+     * Copy result out of scratch buffer and shrink scratch buffer when it grow too large.
+     */
+    byte[] copyOut(byte[] current, int length) {
+
+        byte[] result = Arrays.copyOf(current, length);
+        if (current.length > MAX_RETAINED_SIZE) {
+            scratch = new byte[INITIAL_SIZE];
+        }
+        return result;
+    }
+
+    private void end() {
+
+        if (zlibDeflater != null) {
+            zlibDeflater.end();
+        }
+        if (rawDeflater != null) {
+            rawDeflater.end();
+        }
+        if (zlibInflater != null) {
+            zlibInflater.end();
+        }
+        if (rawInflater != null) {
+            rawInflater.end();
+        }
+    }
+}
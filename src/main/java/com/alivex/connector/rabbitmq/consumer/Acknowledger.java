@@ -0,0 +1,241 @@
+package com.alivex.connector.rabbitmq.consumer;
+
+import com.alivex.connector.rabbitmq.metrics.ConnectorMetrics;
+import com.rabbitmq.client.Channel;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Send ack and reject of a consumer channel.
+ * In batch mode an ack is deferred and send as a single cumulative ack of the highest contiguous completed delivery tag,
+ * when count of pending ack or max delay is reached. Completion may happen out of order, a delivery tag is never
+ * covered by cumulative ack until every lower delivery tag is completed.
+ * Reject is always send immediately.
+ */
+class Acknowledger {
+
+    private static final Logger LOG = Logger.getLogger(Acknowledger.class.getName());
+    private static final int COMPACT_THRESHOLD = 1 << 16;
+
+    private final Channel channel;
+    private final ConnectorMetrics metrics;
+    private final int batchCount;
+    private final ScheduledFuture<?> flushTask;
+
+    //Bit index is delivery tag minus origin.
+    private BitSet completed = new BitSet();
+    private BitSet acked = new BitSet();
+    private long origin = 1;
+    private long floor;
+    private long ackTarget;
+    private long ackedUpTo;
+    private int pendingAcks;
+
+    /**
+     * Ack every delivery immediately.
+     * @param channel
+     * @param metrics
+     */
+    Acknowledger(Channel channel, ConnectorMetrics metrics) {
+        this.channel = channel;
+        this.metrics = metrics;
+        this.batchCount = 1;
+        this.flushTask = null;
+    }
+
+    /**
+     * Ack deliveries in batch.
+     * @param channel
+     * @param metrics
+     * @param batchCount number of pending ack that trigger cumulative ack.
+     * @param maxDelayMs maximum time a completed delivery wait for ack.
+     */
+    Acknowledger(Channel channel, ConnectorMetrics metrics, int batchCount, long maxDelayMs) {
+        this.channel = channel;
+        this.metrics = metrics;
+        this.batchCount = batchCount;
+        this.flushTask = ConsumerScheduler.get().scheduleAtFixedRate(this::flushQuietly, maxDelayMs, maxDelayMs, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void ack(long deliveryTag) throws IOException {
+
+        metrics.recordAck(1);
+
+        if (!isBatch()) {
+            channel.basicAck(deliveryTag, false);
+            return;
+        }
+
+        complete(deliveryTag, true);
+        if (pendingAcks >= batchCount) {
+            flush();
+        }
+    }
+
+    /**
+     * Ack many deliveries at once with a single cumulative ack.
+     * Delivery tags must be in ascending order, every unsettled delivery tag lower than the last one must be in the list.
+     * @param deliveryTags
+     * @throws IOException
+     */
+    synchronized void ackAll(List<Long> deliveryTags) throws IOException {
+
+        if (deliveryTags.isEmpty()) {
+            return;
+        }
+
+        metrics.recordAck(deliveryTags.size());
+
+        if (!isBatch()) {
+            channel.basicAck(deliveryTags.get(deliveryTags.size() - 1), true);
+            return;
+        }
+
+        for (Long deliveryTag : deliveryTags) {
+            complete(deliveryTag, true);
+        }
+
+        if (pendingAcks >= batchCount) {
+            flush();
+        }
+    }
+
+    synchronized void reject(long deliveryTag, boolean requeue) throws IOException {
+
+        channel.basicReject(deliveryTag, requeue);
+        metrics.recordReject(1);
+
+        if (isBatch()) {
+            complete(deliveryTag, false);
+        }
+    }
+
+    /**
+     * Settle a delivery whose retry or dead-letter copy has been published, ack it when broker confirm the copy
+     * otherwise requeue it so message is not lost.
+     * Nothing is send when delivery tag belong to a channel that has been shutdown, broker already requeue the original.
+     * @param deliveryTag
+     * @param confirmed
+     * @throws IOException
+     */
+    synchronized void settleRepublished(long deliveryTag, boolean confirmed) throws IOException {
+
+        if (deliveryTag < origin || !channel.isOpen()) {
+            return;
+        }
+
+        if (confirmed) {
+            ack(deliveryTag);
+        } else {
+            reject(deliveryTag, true);
+        }
+    }
+
+    /**
+     * Send cumulative ack of pending acks.
+     * @throws IOException
+     */
+    synchronized void flush() throws IOException {
+
+        if (ackTarget <= ackedUpTo) {
+            return;
+        }
+
+        channel.basicAck(ackTarget, true);
+        ackedUpTo = ackTarget;
+        pendingAcks = 0;
+    }
+
+    /**
+     * Forget every delivery tag up to the last one delivered by a channel that has been shutdown.
+     * Unacked messages are requeue by broker, a recovered channel continue delivery tag after the last delivered one.
+     * @param lastDeliveredTag
+     */
+    synchronized void reset(long lastDeliveredTag) {
+
+        completed.clear();
+        acked.clear();
+        origin = lastDeliveredTag + 1;
+        floor = lastDeliveredTag;
+        ackTarget = lastDeliveredTag;
+        ackedUpTo = lastDeliveredTag;
+        pendingAcks = 0;
+    }
+
+    /**
+     * Flush pending acks and stop flush timer, used before a channel is closed.
+     */
+    void close() {
+
+        if (flushTask != null) {
+            flushTask.cancel(false);
+        }
+
+        flushQuietly();
+    }
+
+    boolean isBatch() {
+        return batchCount > 1;
+    }
+
+    private void flushQuietly() {
+
+        try {
+            flush();
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to send cumulative ack", e);
+        }
+    }
+
+    private void complete(long deliveryTag, boolean isAck) {
+
+        if (deliveryTag <= floor) {
+            return;
+        }
+
+        int index = (int) (deliveryTag - origin);
+        completed.set(index);
+        if (isAck) {
+            acked.set(index);
+        }
+
+        advanceFloor();
+    }
+
+    /**
+     * Move floor over contiguous completed delivery tags, last acked one become a target of next cumulative ack.
+     * A rejected delivery tag is never used as a target, broker would close channel on unknown delivery tag.
+     */
+    private void advanceFloor() {
+
+        int index = (int) (floor + 1 - origin);
+        while (completed.get(index)) {
+
+            if (acked.get(index)) {
+                ackTarget = origin + index;
+                pendingAcks++;
+            }
+
+            index++;
+        }
+
+        floor = origin + index - 1;
+
+        if (floor - origin >= COMPACT_THRESHOLD) {
+            compact();
+        }
+    }
+
+    private void compact() {
+
+        int shift = (int) (floor + 1 - origin);
+        completed = completed.get(shift, Math.max(shift, completed.length()));
+        acked = acked.get(shift, Math.max(shift, acked.length()));
+        origin += shift;
+    }
+}
@@ -0,0 +1,17 @@
+package com.alivex.connector.rabbitmq.consumer;
+
+import java.util.List;
+
+
+public interface BatchProcessor {
+
+    /**
+     * Process a batch of messages received from consumer, messages are in delivery order.
+     * Return normally will result in ack of the whole batch.
+     * Throw RejectDeliveriesException will result in reject and don't requeue only deliveries in exception, the rest are ack.
+     * Throw RejectAndDontRequeueException will result in reject and don't requeue the whole batch.
+     * Throw any other runtime exception will result in nack and requeue the whole batch.
+     * @param deliveries
+     */
+    public void process(List<Delivery> deliveries) throws RuntimeException;
+}
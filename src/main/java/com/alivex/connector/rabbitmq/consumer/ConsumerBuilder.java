@@ -5,17 +5,46 @@ import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.Consumer;
 import com.alivex.connector.rabbitmq.ConnectionManager;
+import com.alivex.connector.rabbitmq.VirtualThreads;
+import com.alivex.connector.rabbitmq.codec.Codec;
+import com.alivex.connector.rabbitmq.codec.CodecRegistry;
+import com.alivex.connector.rabbitmq.compression.Compression;
+import com.alivex.connector.rabbitmq.metrics.ConnectorMetrics;
+import com.alivex.connector.rabbitmq.partition.Partitions;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class ConsumerBuilder implements Serializable {
 
+    private static final Logger LOG = Logger.getLogger(ConsumerBuilder.class.getName());
     private final boolean AUTO_ACK = false;
     private String queueName;
     private int qos = 1;
     private Processor processor;
     private ConnectionManager connectionManager;
     private String consumerTag;
+    private int concurrency = 1;
+    private OrderingKeyExtractor orderingKeyExtractor;
+    private int ackBatchCount = 1;
+    private long ackBatchMaxDelayMs;
+    private BatchProcessor batchProcessor;
+    private int batchMaxSize;
+    private long batchMaxWaitMs;
+    private ExecutorService executor;
+    private boolean virtualThreads;
+    private RetryPolicy retryPolicy;
+    private int adaptiveQosMin;
+    private int adaptiveQosMax;
+    private DedupPolicy dedupPolicy;
+    private int maxDecompressedSize = Compression.DEFAULT_MAX_DECOMPRESSED_SIZE;
+    private transient Deduplicator deduplicator;
+    private ConnectorMetrics metrics = ConnectorMetrics.NOOP;
 
     public ConsumerBuilder queueName(String name) {
         this.queueName = name;
@@ -27,10 +56,67 @@ public class ConsumerBuilder implements Serializable {
         return this;
     }
 
+    /**
+     * Tune prefetch count at runtime between min and max instead of fixed qos.
+     * Prefetch is raised when consumer wait for next message after finishing one, and lowered when processing get slower.
+     * Prefetch start from min and is set as global qos of consumer channel so a change apply to running consumer.
+     * Batch processor cannot be used with adaptive qos.
+     * @param min
+     * @param max
+     * @return
+     */
+    public ConsumerBuilder adaptiveQos(int min, int max) {
+
+        if (min < 1 || min > max) {
+            throw new IllegalArgumentException("Adaptive qos must be 1 <= min <= max");
+        }
+
+        this.adaptiveQosMin = min;
+        this.adaptiveQosMax = max;
+        return this;
+    }
+
+    /**
+     * Ack message already processed without calling processor, message is identified by message-id or a header.
+     * Message without id is always processed. Id is remembered once processor return normally, by every consumer of this builder.
+     * Batch processor cannot be used with dedup.
+     * @param dedupPolicy
+     * @return
+     */
+    public ConsumerBuilder deduplicate(DedupPolicy dedupPolicy) {
+        this.dedupPolicy = dedupPolicy;
+        return this;
+    }
+
     public ConsumerBuilder processor(Processor p) {
         this.processor = p;
         return this;
     }
+
+    /**
+     * Process message object decoded by codec, used instead of processor.
+     * Message that cannot be decoded is rejected without requeue.
+     * @param <T>
+     * @param codec
+     * @param p
+     * @return
+     */
+    public <T> ConsumerBuilder processor(Codec<T> codec, TypedProcessor<T> p) {
+        return processor(new CodecRegistry<T>(codec), p);
+    }
+
+    /**
+     * Process message object decoded by codec of its content type, message without content type is decoded by default codec of registry.
+     * Message of unknown content type or that cannot be decoded is rejected without requeue.
+     * @param <T>
+     * @param codecs
+     * @param p
+     * @return
+     */
+    public <T> ConsumerBuilder processor(CodecRegistry<T> codecs, TypedProcessor<T> p) {
+        this.processor = new DecodingProcessor<>(codecs, p);
+        return this;
+    }
     
     public ConsumerBuilder connectionManager(ConnectionManager connectionManager) {
         this.connectionManager = connectionManager;
@@ -42,33 +128,421 @@ public class ConsumerBuilder implements Serializable {
         return this;
     }
 
+    /**
+     * Number of worker thread process messages of this consumer in parallel,
+     * If not specify default is 1 and message is process on a connection dispatch thread.
+     * Processor must be thread-safe when concurrency is greater than 1, and qos should be at least concurrency.
+     * @param concurrency
+     * @return
+     */
+    public ConsumerBuilder concurrency(int concurrency) {
+
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be greater than zero");
+        }
+
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * Messages with the same ordering key are processed in order, messages with different key are processed in parallel.
+     * If not specify, order of messages is not preserved when concurrency is greater than 1.
+     * @param orderingKeyExtractor
+     * @return
+     */
+    public ConsumerBuilder orderingKey(OrderingKeyExtractor orderingKeyExtractor) {
+        this.orderingKeyExtractor = orderingKeyExtractor;
+        return this;
+    }
+
+    /**
+     * Acknowledge messages with a single cumulative ack instead of one ack per message.
+     * A cumulative ack of the highest contiguous processed message is send when count of pending ack
+     * or max delay is reached, whichever come first.
+     * A message that fail with an exception other than RejectAndDontRequeueException is nack and requeue
+     * immediately, so it does not hold back cumulative ack.
+     * @param count
+     * @param maxDelayMs
+     * @return
+     */
+    public ConsumerBuilder ackBatch(int count, long maxDelayMs) {
+
+        if (count < 1 || maxDelayMs < 1) {
+            throw new IllegalArgumentException("Ack batch count and max delay must be greater than zero");
+        }
+
+        this.ackBatchCount = count;
+        this.ackBatchMaxDelayMs = maxDelayMs;
+        return this;
+    }
+
+    /**
+     * Process messages in batch instead of one by one, used instead of processor.
+     * A batch is process when max size or max wait time since first message of a batch is reached, whichever come first.
+     * Max size is limited to qos because a consumer never receive more than qos unacked messages.
+     * Batches are processed one at a time in order, concurrency and retry cannot be used with batch processor.
+     * A batch that fail with an exception other than RejectDeliveriesException or RejectAndDontRequeueException is requeue immediately.
+     * @param batchProcessor
+     * @param maxSize
+     * @param maxWaitMs
+     * @return
+     */
+    public ConsumerBuilder batchProcessor(BatchProcessor batchProcessor, int maxSize, long maxWaitMs) {
+
+        if (maxSize < 1 || maxWaitMs < 1) {
+            throw new IllegalArgumentException("Batch max size and max wait must be greater than zero");
+        }
+
+        this.batchProcessor = batchProcessor;
+        this.batchMaxSize = maxSize;
+        this.batchMaxWaitMs = maxWaitMs;
+        return this;
+    }
+
+    /**
+     * Process messages on given executor instead of a connection dispatch thread.
+     * Executor is share by every consumer build from this builder and is never shutdown by a consumer.
+     * Concurrency still limit number of message of a consumer process in parallel.
+     * @param executor
+     * @return
+     */
+    public ConsumerBuilder executor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Process messages on virtual threads when running JVM support it, a blocking processor does not hold a platform thread.
+     * Fallback to a pool of platform thread of concurrency size when virtual thread is not supported.
+     * @return
+     */
+    public ConsumerBuilder virtualThreads() {
+        this.virtualThreads = true;
+        return this;
+    }
+
+    /**
+     * Retry message that processor fail with exception other than RejectAndDontRequeueException, then dead-letter it.
+     * If not specify failed message stay unacked until channel is closed, or is nack and requeue when ack batch is used.
+     * Batch processor cannot be used with retry.
+     * @param retryPolicy
+     * @return
+     */
+    public ConsumerBuilder retry(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
+    /**
+     * Maximum size of a compressed message once decompressed, larger message is rejected without requeue.
+     * If not specify default is 64 MB.
+     * @param maxDecompressedSize in bytes.
+     * @return
+     */
+    public ConsumerBuilder maxDecompressedSize(int maxDecompressedSize) {
+
+        if (maxDecompressedSize < 1) {
+            throw new IllegalArgumentException("Max decompressed size must be greater than zero");
+        }
+
+        this.maxDecompressedSize = maxDecompressedSize;
+        return this;
+    }
+
+    /**
+     * Record processor execution time, ack and reject count,
+     * If not specify nothing is recorded. Metrics is share by every consumer build from this builder.
+     * @param metrics
+     * @return
+     */
+    public ConsumerBuilder metrics(ConnectorMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
     public Consumer build() throws IOException {
 
+        checkBatchProcessor();
+        return buildConsumer(processor);
+    }
+
+    /**
+     * Build a group of consumers of queue, number of consumer is scale between min and max by queue depth and processing time.
+     * Queue depth is sampled every 5 seconds, see buildGroup(int, int, long).
+     * @param min
+     * @param max
+     * @return
+     * @throws IOException
+     */
+    public ConsumerGroup buildGroup(int min, int max) throws IOException {
+        return buildGroup(min, max, 5000);
+    }
+
+    /**
+     * Build a group of consumers of queue, every consumer use settings of this builder and share its processor.
+     * Processor must be thread-safe. Batch processor cannot be used with a group.
+     * @param min number of consumer open when group is built, group never scale below it.
+     * @param max
+     * @param scaleIntervalMs time between two samples of queue depth.
+     * @return
+     * @throws IOException
+     */
+    public ConsumerGroup buildGroup(int min, int max, long scaleIntervalMs) throws IOException {
+
+        if (min < 0 || max < 1 || min > max || scaleIntervalMs < 1) {
+            throw new IllegalArgumentException("Group size must be 0 <= min <= max and max greater than zero, scale interval must be greater than zero");
+        }
+
+        if (batchProcessor != null) {
+            throw new IllegalStateException("Batch processor cannot be used with consumer group");
+        }
+
+        return new ConsumerGroup(queueName, min, max, scaleIntervalMs, concurrency, connectionManager, processor, p -> buildConsumer(p, queueName));
+    }
+
+    /**
+     * Build a consumer per partition queue named {queueName}.i, matching a partitioned publisher of the same base name.
+     * Each partition is consumed by its own channel, with default concurrency messages of a partition are processed in order
+     * so order of messages of a key is preserved. Batch processor cannot be used with partitioned consumer.
+     * @param partitions
+     * @return
+     * @throws IOException
+     */
+    public PartitionedConsumer buildPartitioned(int partitions) throws IOException {
+
+        if (partitions < 1) {
+            throw new IllegalArgumentException("Partitions must be greater than zero");
+        }
+
+        if (batchProcessor != null) {
+            throw new IllegalStateException("Batch processor cannot be used with partitioned consumer");
+        }
+
+        List<DefaultConsumer> consumers = new ArrayList<>(partitions);
+        try {
+            for (int i = 0; i < partitions; i++) {
+                consumers.add(buildConsumer(processor, Partitions.name(queueName, i)));
+            }
+        } catch (IOException | RuntimeException e) {
+            consumers.forEach(DefaultConsumer::closeChannel);
+            throw e;
+        }
+
+        return new PartitionedConsumer(consumers);
+    }
+
+    private void checkBatchProcessor() {
+
+        if (batchProcessor == null) {
+            return;
+        }
+
+        if (concurrency > 1) {
+            throw new IllegalStateException("Batch processor cannot be used with concurrency");
+        }
+
+        if (isAdaptiveQos()) {
+            throw new IllegalStateException("Batch processor cannot be used with adaptive qos");
+        }
+
+        if (dedupPolicy != null) {
+            throw new IllegalStateException("Batch processor cannot be used with dedup");
+        }
+
+        if (retryPolicy != null) {
+            throw new IllegalStateException("Batch processor cannot be used with retry");
+        }
+    }
+
+    private DefaultConsumer buildConsumer(Processor processor) throws IOException {
+        return buildConsumer(processor, queueName);
+    }
+
+    private DefaultConsumer buildConsumer(Processor processor, String queueName) throws IOException {
+
         Channel channel = initChannel();
-        Consumer consumer = new DefaultConsumer(channel, processor);
+        PrefetchTuner prefetchTuner = null;
+        Acknowledger acknowledger = null;
+        OrderedDispatcher dispatcher = null;
+        DeliveryBatcher batcher = null;
+        DefaultConsumer consumer;
 
-        if (isConsumerTagAvailable()) {
-            channel.basicConsume(queueName, AUTO_ACK, consumerTag, consumer);
-        } else {
-            channel.basicConsume(queueName, AUTO_ACK, consumer);
+        try {
+            prefetchTuner = initPrefetchTuner(channel);
+            acknowledger = initAcknowledger(channel);
+            dispatcher = initDispatcher();
+            batcher = initBatcher(acknowledger);
+            consumer = new DefaultConsumer(channel,
+                                           processor,
+                                           dispatcher,
+                                           orderingKeyExtractor,
+                                           acknowledger,
+                                           batcher,
+                                           initRetrier(channel, queueName, acknowledger),
+                                           prefetchTuner,
+                                           getDeduplicator(),
+                                           qos,
+                                           maxDecompressedSize,
+                                           metrics);
+        } catch (IOException | RuntimeException e) {
+            abandon(channel, prefetchTuner, acknowledger, dispatcher, batcher);
+            throw e;
+        }
+
+        try {
+            if (isConsumerTagAvailable()) {
+                channel.basicConsume(queueName, AUTO_ACK, consumerTag, consumer);
+            } else {
+                channel.basicConsume(queueName, AUTO_ACK, consumer);
+            }
+        } catch (IOException | RuntimeException e) {
+            consumer.closeChannel();
+            throw e;
         }
 
         return consumer;
     }
 
+    /**
+     * Release what was created for a consumer that failed to build, so no channel or worker thread is leaked.
+     */
+    private void abandon(Channel channel, PrefetchTuner prefetchTuner, Acknowledger acknowledger, OrderedDispatcher dispatcher, DeliveryBatcher batcher) {
+
+        if (prefetchTuner != null) {
+            prefetchTuner.close();
+        }
+
+        if (acknowledger != null) {
+            acknowledger.close();
+        }
+
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+
+        if (batcher != null) {
+            batcher.close();
+        }
+
+        try {
+            if (channel.isOpen()) {
+                channel.close();
+            }
+        } catch (Exception e) {
+            LOG.log(Level.INFO, "Failed to close consumer channel", e);
+        }
+    }
+
     private Channel initChannel() throws IOException{
 
         Connection connection = connectionManager.getConsumerConnection();
         Channel channel = connection.createChannel();
-        channel.basicQos(qos);
+        if (!isAdaptiveQos()) {
+            channel.basicQos(qos);
+        }
 
-        //Invoke connection proxy object to init connection id,
+        //Invoke traceable connection to init connection id,
         //fix connection id null when reference from default consumer.
         connection.getId();
 
         return channel;
     }
 
+    private OrderedDispatcher initDispatcher() {
+
+        if (batchProcessor != null || (concurrency == 1 && executor == null && !virtualThreads)) {
+            return null;
+        }
+
+        return newDispatcher(concurrency);
+    }
+
+    private OrderedDispatcher newDispatcher(int lanes) {
+
+        if (executor != null) {
+            return new OrderedDispatcher(executor, false, lanes);
+        }
+
+        if (virtualThreads && VirtualThreads.isSupported()) {
+            return new OrderedDispatcher(VirtualThreads.newVirtualThreadPerTaskExecutor(), true, lanes);
+        }
+
+        if (virtualThreads) {
+            LOG.log(Level.WARNING, "Virtual thread is not supported by this JVM, fallback to platform thread");
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(lanes, new DaemonThreadFactory("rabbitmq-consumer-worker"));
+        return new OrderedDispatcher(workers, true, lanes);
+    }
+
+    private DeliveryBatcher initBatcher(Acknowledger acknowledger) {
+
+        if (batchProcessor == null) {
+            return null;
+        }
+
+        return new DeliveryBatcher(batchProcessor,
+                                   qos > 0 ? Math.min(batchMaxSize, qos) : batchMaxSize,
+                                   batchMaxWaitMs,
+                                   acknowledger,
+                                   newDispatcher(1),
+                                   metrics);
+    }
+
+    private synchronized Deduplicator getDeduplicator() {
+
+        if (dedupPolicy == null) {
+            return null;
+        }
+
+        if (deduplicator == null) {
+            deduplicator = new Deduplicator(dedupPolicy);
+        }
+
+        return deduplicator;
+    }
+
+    private PrefetchTuner initPrefetchTuner(Channel channel) throws IOException {
+
+        if (!isAdaptiveQos()) {
+            return null;
+        }
+
+        PrefetchTuner prefetchTuner = new PrefetchTuner(channel, concurrency, adaptiveQosMin, adaptiveQosMax);
+        try {
+            prefetchTuner.init();
+        } catch (IOException | RuntimeException e) {
+            prefetchTuner.close();
+            throw e;
+        }
+        return prefetchTuner;
+    }
+
+    private Retrier initRetrier(Channel channel, String queueName, Acknowledger acknowledger) throws IOException {
+
+        if (retryPolicy == null) {
+            return null;
+        }
+
+        Retrier retrier = new Retrier(retryPolicy, queueName, acknowledger, channel.getConnection());
+        retrier.declareDelayQueues(channel);
+        return retrier;
+    }
+
+    private Acknowledger initAcknowledger(Channel channel) {
+
+        if (ackBatchCount == 1) {
+            return new Acknowledger(channel, metrics);
+        }
+
+        return new Acknowledger(channel, metrics, ackBatchCount, ackBatchMaxDelayMs);
+    }
+
+    private boolean isAdaptiveQos() {
+        return adaptiveQosMax > 0;
+    }
+
     private boolean isConsumerTagAvailable() {
         return consumerTag != null;
     }
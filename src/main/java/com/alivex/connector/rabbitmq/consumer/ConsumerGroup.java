@@ -0,0 +1,310 @@
+package com.alivex.connector.rabbitmq.consumer;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.alivex.connector.rabbitmq.ConnectionManager;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pool of consumers of one queue, number of consumer is scale between min and max by queue depth and processing time.
+ * On every scale interval queue depth is sampled with a passive declare, together with number of message processed
+ * and time spent in processor since last sample.
+ * Consumer is added when backlog would take more than two intervals to drain and consumers are busy,
+ * and is removed when queue is almost empty and consumers are mostly idle.
+ * A signal must hold for consecutive samples before group scale, so a short burst does not add and remove consumers.
+ * Removed consumer is cancelled then drained, message already received is processed and acked before its channel is closed.
+ */
+public class ConsumerGroup implements Consumer {
+
+    private static final Logger LOG = Logger.getLogger(ConsumerGroup.class.getName());
+    private static final int SCALE_UP_SAMPLES = 2;
+    private static final int SCALE_DOWN_SAMPLES = 3;
+    private static final double BUSY_UTILIZATION = 0.5;
+    private static final double IDLE_UTILIZATION = 0.3;
+    private static final long DRAIN_TIMEOUT_MS = 30_000;
+
+    private final String id = UUID.randomUUID().toString();
+    private final String queueName;
+    private final int minSize;
+    private final int maxSize;
+    private final long scaleIntervalMs;
+    private final int concurrency;
+    private final ConnectionManager connectionManager;
+    private final Processor processor;
+    private final ConsumerFactory factory;
+    private final ScheduledExecutorService scaler;
+
+    private final List<DefaultConsumer> consumers = new CopyOnWriteArrayList<>();
+    private final LongAdder processedCount = new LongAdder();
+    private final LongAdder processNanos = new LongAdder();
+
+    //Accessed by scaler thread only.
+    private Channel depthChannel;
+    private long lastSampleNanos;
+    private int upSignals;
+    private int downSignals;
+
+    private volatile long queueDepth = -1;
+    private volatile double throughput;
+    private volatile double utilization;
+    private volatile boolean closed;
+
+    ConsumerGroup(String queueName,
+                  int minSize,
+                  int maxSize,
+                  long scaleIntervalMs,
+                  int concurrency,
+                  ConnectionManager connectionManager,
+                  Processor processor,
+                  ConsumerFactory factory) throws IOException {
+
+        this.queueName = queueName;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.scaleIntervalMs = scaleIntervalMs;
+        this.concurrency = concurrency;
+        this.connectionManager = connectionManager;
+        this.processor = processor;
+        this.factory = factory;
+
+        try {
+            for (int i = 0; i < minSize; i++) {
+                addConsumer();
+            }
+        } catch (IOException | RuntimeException e) {
+            consumers.forEach(DefaultConsumer::closeChannel);
+            throw e;
+        }
+
+        this.lastSampleNanos = System.nanoTime();
+        this.scaler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("rabbitmq-consumer-group"));
+        this.scaler.scheduleWithFixedDelay(this::scaleQuietly, scaleIntervalMs, scaleIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Create a consumer of group with given processor, it count processed message and processing time for the group.
+     */
+    interface ConsumerFactory {
+        DefaultConsumer create(Processor processor) throws IOException;
+    }
+
+    public int getSize() {
+        return consumers.size();
+    }
+
+    /**
+     * @return message count of queue at last sample, -1 before first sample or when queue cannot be declared.
+     */
+    public long getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * @return message processed per second by the whole group at last sample.
+     */
+    public double getThroughput() {
+        return throughput;
+    }
+
+    /**
+     * @return fraction of worker time spent in processor at last sample, from 0 to 1.
+     */
+    public double getUtilization() {
+        return utilization;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public boolean isChannelOpen() {
+
+        for (DefaultConsumer consumer : consumers) {
+            if (consumer.isChannelOpen()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Stop scaling, cancel and drain every consumer then close their channels.
+     */
+    @Override
+    public void closeChannel() {
+
+        closed = true;
+        scaler.shutdown();
+
+        try {
+            scaler.awaitTermination(DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<DefaultConsumer> removed = new ArrayList<>(consumers);
+        consumers.clear();
+        for (DefaultConsumer consumer : removed) {
+            drain(consumer);
+        }
+
+        closeDepthChannel();
+        LOG.log(Level.INFO, "Consumer group id:{0} is successfully close", id);
+    }
+
+    private void scaleQuietly() {
+
+        try {
+            scale();
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to scale consumer group of queue " + queueName, e);
+        }
+    }
+
+    private void scale() throws IOException {
+
+        if (closed) {
+            return;
+        }
+
+        replaceClosedConsumers();
+
+        long now = System.nanoTime();
+        long elapsedNanos = Math.max(now - lastSampleNanos, 1);
+        lastSampleNanos = now;
+
+        long processed = processedCount.sumThenReset();
+        long busyNanos = processNanos.sumThenReset();
+        int size = consumers.size();
+        long depth = sampleDepth();
+
+        throughput = processed * 1e9 / elapsedNanos;
+        utilization = size == 0 ? 0 : Math.min(1.0, (double) busyNanos / ((double) elapsedNanos * size * concurrency));
+        queueDepth = depth;
+
+        if (depth < 0) {
+            return;
+        }
+
+        double drainMs = throughput > 0 ? depth * 1000 / throughput : (depth > 0 ? Double.MAX_VALUE : 0);
+        boolean scaleUp = size < maxSize && drainMs > scaleIntervalMs * 2 && (utilization >= BUSY_UTILIZATION || size == 0);
+        boolean scaleDown = size > minSize && depth <= size && utilization < IDLE_UTILIZATION;
+
+        upSignals = scaleUp ? upSignals + 1 : 0;
+        downSignals = scaleDown ? downSignals + 1 : 0;
+
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.log(Level.FINE, "Consumer group sample, queue:{0}, size:{1}, depth:{2}, throughput:{3}, utilization:{4}",
+                    new Object[]{queueName, size, depth, throughput, utilization});
+        }
+
+        if (upSignals >= SCALE_UP_SAMPLES) {
+
+            //Grow by half of current size so a large backlog is caught up in a few intervals.
+            int target = Math.min(maxSize, size + Math.max(1, size / 2));
+            LOG.log(Level.INFO, "Scale up consumer group of queue {0} from {1} to {2}, depth:{3}", new Object[]{queueName, size, target, depth});
+            while (consumers.size() < target) {
+                addConsumer();
+            }
+            upSignals = 0;
+
+        } else if (downSignals >= SCALE_DOWN_SAMPLES) {
+
+            LOG.log(Level.INFO, "Scale down consumer group of queue {0} from {1} to {2}", new Object[]{queueName, size, size - 1});
+            drain(consumers.remove(consumers.size() - 1));
+            downSignals = 0;
+        }
+    }
+
+    /**
+     * Consumer whose channel is closed by broker does not receive message anymore, replace it to keep group size.
+     */
+    private void replaceClosedConsumers() throws IOException {
+
+        for (DefaultConsumer consumer : consumers) {
+            if (!consumer.isChannelOpen() && consumers.remove(consumer)) {
+                LOG.log(Level.WARNING, "Replace closed consumer id:{0} of queue {1}", new Object[]{consumer.getId(), queueName});
+                consumer.closeChannel();
+                addConsumer();
+            }
+        }
+    }
+
+    private long sampleDepth() {
+
+        try {
+
+            if (depthChannel == null || !depthChannel.isOpen()) {
+                depthChannel = connectionManager.getConsumerConnection().createChannel();
+            }
+
+            AMQP.Queue.DeclareOk declareOk = depthChannel.queueDeclarePassive(queueName);
+            return declareOk.getMessageCount();
+
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to sample depth of queue " + queueName, e);
+            return -1;
+        }
+    }
+
+    private void addConsumer() throws IOException {
+        consumers.add(factory.create(new CountingProcessor()));
+    }
+
+    private void drain(DefaultConsumer consumer) {
+
+        if (!consumer.cancelAndClose(DRAIN_TIMEOUT_MS)) {
+            LOG.log(Level.WARNING, "Consumer id:{0} is closed with {1} message in process, they are requeue by broker",
+                    new Object[]{consumer.getId(), consumer.getInFlightCount()});
+        }
+    }
+
+    private void closeDepthChannel() {
+
+        if (depthChannel == null || !depthChannel.isOpen()) {
+            return;
+        }
+
+        try {
+            depthChannel.close();
+        } catch (Exception e) {
+            LOG.log(Level.INFO, "Failed to close queue depth channel", e);
+        }
+    }
+
+    /**
+     * Count processed message and processing time of every consumer of group.
+     */
+    private class CountingProcessor implements Processor {
+
+        @Override
+        public void process(byte[] data) {
+            process(data, null);
+        }
+
+        @Override
+        public void process(byte[] data, AMQP.BasicProperties properties) {
+
+            long start = System.nanoTime();
+            try {
+                processor.process(data, properties);
+            } finally {
+                processNanos.add(System.nanoTime() - start);
+                processedCount.increment();
+            }
+        }
+    }
+}
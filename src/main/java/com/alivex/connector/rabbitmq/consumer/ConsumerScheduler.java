@@ -0,0 +1,22 @@
+package com.alivex.connector.rabbitmq.consumer;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Single timer thread shared by every consumer for periodic work such as flushing batched acks.
+ * Scheduled task must be short and never block.
+ */
+final class ConsumerScheduler {
+
+    private static final ScheduledExecutorService SCHEDULER =
+            Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("rabbitmq-consumer-scheduler"));
+
+    private ConsumerScheduler() {
+
+    }
+
+    static ScheduledExecutorService get() {
+        return SCHEDULER;
+    }
+}
@@ -0,0 +1,47 @@
+package com.alivex.connector.rabbitmq.consumer;
+
+import com.rabbitmq.client.AMQP;
+import com.alivex.connector.rabbitmq.codec.Codec;
+import com.alivex.connector.rabbitmq.codec.CodecRegistry;
+import com.alivex.connector.rabbitmq.exception.RejectAndDontRequeueException;
+import java.io.IOException;
+
+/**
+ * Decode delivery body with codec selected by content type then give object to typed processor.
+ * A message that cannot be decoded is rejected without requeue, it would never be decoded on redelivery.
+ * @param <T>
+ */
+class DecodingProcessor<T> implements Processor {
+
+    private final CodecRegistry<T> codecs;
+    private final TypedProcessor<T> processor;
+
+    DecodingProcessor(CodecRegistry<T> codecs, TypedProcessor<T> processor) {
+        this.codecs = codecs;
+        this.processor = processor;
+    }
+
+    @Override
+    public void process(byte[] data) {
+        process(data, null);
+    }
+
+    @Override
+    public void process(byte[] data, AMQP.BasicProperties properties) {
+
+        String contentType = properties == null ? null : properties.getContentType();
+        Codec<? extends T> codec = codecs.get(contentType);
+        if (codec == null) {
+            throw new RejectAndDontRequeueException("No codec for content type " + contentType);
+        }
+
+        T value;
+        try {
+            value = codec.decode(data, 0, data.length);
+        } catch (IOException | RuntimeException e) {
+            throw new RejectAndDontRequeueException(e);
+        }
+
+        processor.process(value);
+    }
+}
@@ -0,0 +1,111 @@
+package com.alivex.connector.rabbitmq.consumer;
+
+import java.io.Serializable;
+
+/**
+ * How consumer detect a message it has already processed, by message-id property or by a header.
+ * Id of a processed message is remembered for at least window time and at most twice window time, memory does not grow
+ * with number of message, it is sized by capacity which is the maximum number of id remembered per window.
+ */
+public class DedupPolicy implements Serializable {
+
+    //Two exact id tables of 2^25 slots, about 512 MB.
+    private static final int MAX_CAPACITY = 1 << 24;
+
+    private final String header;
+    private long windowMs = 60 * 60 * 1000L;
+    private int capacity = 1_000_000;
+    private double falsePositiveRate;
+
+    private DedupPolicy(String header) {
+        this.header = header;
+    }
+
+    /**
+     * Use message-id property as id of message.
+     * @return
+     */
+    public static DedupPolicy byMessageId() {
+        return new DedupPolicy(null);
+    }
+
+    /**
+     * Use value of header as id of message.
+     * @param header
+     * @return
+     */
+    public static DedupPolicy byHeader(String header) {
+        return new DedupPolicy(header);
+    }
+
+    /**
+     * If not specify default is 1 hour.
+     * @param windowMs
+     * @return
+     */
+    public DedupPolicy window(long windowMs) {
+
+        if (windowMs < 1) {
+            throw new IllegalArgumentException("Window must be greater than zero");
+        }
+
+        this.windowMs = windowMs;
+        return this;
+    }
+
+    /**
+     * Maximum number of id remembered per window, window is shortened when more message is processed.
+     * If not specify default is 1,000,000, maximum is 16,777,216. Two windows are kept, exact id set use up to 64 bytes
+     * per id of capacity and is allocated up front, for example about 32 MB at default and 512 MB at maximum.
+     * @param capacity
+     * @return
+     */
+    public DedupPolicy capacity(int capacity) {
+
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Capacity must be between 1 and " + MAX_CAPACITY);
+        }
+
+        this.capacity = capacity;
+        return this;
+    }
+
+    /**
+     * Remember id in a Bloom filter instead of exact id set, use about 4 bytes per id of capacity at 0.001.
+     * A false positive make a new message look like a duplicate, it is acked without being processed.
+     * @param falsePositiveRate for example 0.000001
+     * @return
+     */
+    public DedupPolicy bloomFilter(double falsePositiveRate) {
+
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+        }
+
+        this.falsePositiveRate = falsePositiveRate;
+        return this;
+    }
+
+    /**
+     * @return header name, null when message-id property is used.
+     */
+    public String getHeader() {
+        return header;
+    }
+
+    public long getWindowMs() {
+        return windowMs;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    public boolean isBloomFilter() {
+        return falsePositiveRate > 0;
+    }
+}
@@ -0,0 +1,109 @@
+package com.alivex.connector.rabbitmq.consumer;
+
+import com.rabbitmq.client.AMQP;
+import com.alivex.connector.rabbitmq.partition.Hashing;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Remember 64-bit hash of id of processed messages in two generations of fixed size set.
+ * Current generation take new id, previous one is still checked, they rotate every window or when current is full,
+ * so an id is remembered between one and two windows and memory stay the same whatever the message rate.
+ * Id is remembered only after message is processed, a message that failed is not taken as duplicate on redelivery.
+ * Shared by every consumer of a builder.
+ */
+class Deduplicator {
+
+    private static final Logger LOG = Logger.getLogger(Deduplicator.class.getName());
+
+    private final String header;
+    private final long windowNanos;
+    private IdSet current;
+    private IdSet previous;
+    private long generationStart;
+
+    Deduplicator(DedupPolicy policy) {
+
+        this.header = policy.getHeader();
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(policy.getWindowMs());
+        this.current = newIdSet(policy);
+        this.previous = newIdSet(policy);
+        this.generationStart = System.nanoTime();
+    }
+
+    /**
+     * @param properties
+     * @return hash of message id, 0 when message has no id.
+     */
+    long keyOf(AMQP.BasicProperties properties) {
+
+        if (properties == null) {
+            return 0;
+        }
+
+        Object id;
+        if (header == null) {
+            id = properties.getMessageId();
+        } else {
+            id = properties.getHeaders() == null ? null : properties.getHeaders().get(header);
+        }
+
+        if (id == null) {
+            return 0;
+        }
+
+        long key = id instanceof byte[] ? Hashing.hash64((byte[]) id) : Hashing.hash64(id.toString());
+        return key == 0 ? 1 : key;
+    }
+
+    synchronized boolean isDuplicate(long key) {
+
+        rotateIfExpired();
+        return current.contains(key) || previous.contains(key);
+    }
+
+    synchronized void markProcessed(long key) {
+
+        rotateIfExpired();
+        if (current.isFull()) {
+            LOG.log(Level.FINE, "Dedup capacity is reached before end of window, window is shortened");
+            rotate();
+        }
+
+        current.add(key);
+    }
+
+    private void rotateIfExpired() {
+
+        long elapsed = System.nanoTime() - generationStart;
+        if (elapsed < windowNanos) {
+            return;
+        }
+
+        rotate();
+
+        //Nothing processed for two windows, previous generation is expired as well.
+        if (elapsed >= windowNanos * 2) {
+            previous.clear();
+        }
+    }
+
+    private void rotate() {
+
+        IdSet expired = previous;
+        expired.clear();
+        previous = current;
+        current = expired;
+        generationStart = System.nanoTime();
+    }
+
+    private static IdSet newIdSet(DedupPolicy policy) {
+
+        if (policy.isBloomFilter()) {
+            return new IdSet.Bloom(policy.getCapacity(), policy.getFalsePositiveRate());
+        }
+
+        return new IdSet.Exact(policy.getCapacity());
+    }
+}
@@ -4,10 +4,14 @@ package com.alivex.connector.rabbitmq.consumer;
 import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.ShutdownSignalException;
+import com.alivex.connector.rabbitmq.compression.Compression;
 import com.alivex.connector.rabbitmq.exception.RejectAndDontRequeueException;
+import com.alivex.connector.rabbitmq.metrics.ConnectorMetrics;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -18,36 +22,270 @@ public class DefaultConsumer extends com.rabbitmq.client.DefaultConsumer impleme
     private final String id;
     private final Channel channel;
     private final Processor processor;
+    private final OrderingKeyExtractor orderingKeyExtractor;
+    private final OrderedDispatcher dispatcher;
+    private final Acknowledger acknowledger;
+    private final DeliveryBatcher batcher;
+    private final Retrier retrier;
+    private final PrefetchTuner prefetchTuner;
+    private final Deduplicator deduplicator;
+    private final int qos;
+    private final int maxDecompressedSize;
+    private final ConnectorMetrics metrics;
+    private volatile long lastDeliveryTag;
+
+    //Deliveries received and not yet processed, used to drain consumer before close.
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile boolean cancelled;
     
     public DefaultConsumer(Channel channel, Processor processor) {
+        this(channel, processor, null, null, new Acknowledger(channel, ConnectorMetrics.NOOP), null, null, null, null, 0, Compression.DEFAULT_MAX_DECOMPRESSED_SIZE, ConnectorMetrics.NOOP);
+    }
+
+    DefaultConsumer(Channel channel,
+                    Processor processor,
+                    OrderedDispatcher dispatcher,
+                    OrderingKeyExtractor orderingKeyExtractor,
+                    Acknowledger acknowledger,
+                    DeliveryBatcher batcher,
+                    Retrier retrier,
+                    PrefetchTuner prefetchTuner,
+                    Deduplicator deduplicator,
+                    int qos,
+                    int maxDecompressedSize,
+                    ConnectorMetrics metrics) {
         super(channel);
         this.channel = channel;
         this.processor = processor;
+        this.dispatcher = dispatcher;
+        this.orderingKeyExtractor = orderingKeyExtractor;
+        this.acknowledger = acknowledger;
+        this.batcher = batcher;
+        this.retrier = retrier;
+        this.prefetchTuner = prefetchTuner;
+        this.deduplicator = deduplicator;
+        this.qos = qos;
+        this.maxDecompressedSize = maxDecompressedSize;
+        this.metrics = metrics;
         this.id = UUID.randomUUID().toString();
     }
 
     @Override
     public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) throws IOException {
 
+        lastDeliveryTag = envelope.getDeliveryTag();
+
+        if (batcher != null) {
+            try {
+                batcher.add(new Delivery(envelope, properties, decompress(properties, body)));
+            } catch (RejectAndDontRequeueException e) {
+                reject(envelope.getDeliveryTag(), false);
+                LOG.log(Level.SEVERE, "Failed to consume message.", e);
+            }
+            return;
+        }
+
+        long dedupKey = deduplicator == null ? 0 : deduplicator.keyOf(properties);
+        if (dedupKey != 0 && deduplicator.isDuplicate(dedupKey)) {
+            ackDuplicate(envelope);
+            return;
+        }
+
+        int inProcess = inFlight.getAndIncrement();
+        if (prefetchTuner != null) {
+            prefetchTuner.delivered(inProcess == 0);
+        }
+
+        if (dispatcher == null) {
+            processDelivery(envelope, properties, body, dedupKey);
+            return;
+        }
+
+        String orderingKey = orderingKeyExtractor == null ? null : orderingKeyExtractor.extract(envelope, properties);
+        dispatcher.dispatch(orderingKey, () -> processDelivery(envelope, properties, body, dedupKey), () -> rejectUndispatched(envelope));
+    }
+
+    /**
+     * Requeue a delivery that executor refused to run.
+     */
+    private void rejectUndispatched(Envelope envelope) {
+
+        reject(envelope.getDeliveryTag(), true);
+        if (inFlight.decrementAndGet() == 0 && prefetchTuner != null) {
+            prefetchTuner.idle();
+        }
+    }
+
+    private void processDelivery(Envelope envelope, AMQP.BasicProperties properties, byte[] body, long dedupKey) {
+
         try {
 
             if (LOG.isLoggable(Level.FINE)) {
                 LOG.log(Level.FINE, "Consumer received message, connection:{0}, channel:{1}", new Object[]{getConnectionId(), getChannelId()});
             }
 
-            processor.process(body);
-            this.channel.basicAck(envelope.getDeliveryTag(), false);
+            long start = System.nanoTime();
+            processor.process(decompress(properties, body), properties);
+            long processNanos = System.nanoTime() - start;
+            metrics.recordProcess(processNanos);
+            if (prefetchTuner != null) {
+                prefetchTuner.processed(processNanos);
+            }
+            if (dedupKey != 0) {
+                deduplicator.markProcessed(dedupKey);
+            }
+            acknowledger.ack(envelope.getDeliveryTag());
 
         } catch (RejectAndDontRequeueException e) {
 
-            this.channel.basicReject(envelope.getDeliveryTag(), false);
+            reject(envelope.getDeliveryTag(), false);
             LOG.log(Level.SEVERE, "Failed to consume message.", e);
             
         } catch (Exception e) {
+
             LOG.log(Level.SEVERE, "Failed to consume message.", e);
+
+            if (retrier != null) {
+                retrier.retry(envelope, properties, body);
+                return;
+            }
+
+            //Unacked message would hold back cumulative ack forever, give it back to broker.
+            if (acknowledger.isBatch()) {
+                reject(envelope.getDeliveryTag(), true);
+            }
+
+        } finally {
+            if (inFlight.decrementAndGet() == 0 && prefetchTuner != null) {
+                prefetchTuner.idle();
+            }
+        }
+    }
+
+    private void ackDuplicate(Envelope envelope) {
+
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.log(Level.FINE, "Ack duplicate message without processing, delivery tag:{0}", envelope.getDeliveryTag());
+        }
+
+        metrics.recordDuplicate();
+        try {
+            acknowledger.ack(envelope.getDeliveryTag());
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Failed to ack duplicate message.", e);
         }
     }
 
+    /**
+     * Decompress body of message compressed by publisher, message of unknown content-encoding is given as is.
+     * @throws RejectAndDontRequeueException when body is corrupt or too large once decompressed, it would never be processed successfully.
+     */
+    private byte[] decompress(AMQP.BasicProperties properties, byte[] body) {
+
+        Compression compression = properties == null ? null : Compression.fromContentEncoding(properties.getContentEncoding());
+        if (compression == null) {
+            return body;
+        }
+
+        try {
+            return compression.decompress(body, maxDecompressedSize);
+        } catch (IOException e) {
+            throw new RejectAndDontRequeueException(e);
+        }
+    }
+
+    private void reject(long deliveryTag, boolean requeue) {
+        try {
+            acknowledger.reject(deliveryTag, requeue);
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Failed to reject message.", e);
+        }
+    }
+
+    @Override
+    public void handleCancelOk(String consumerTag) {
+        cancelled = true;
+    }
+
+    /**
+     * Stop receiving message, wait until every received message is processed then close channel.
+     * Message still in process when timeout is reached is requeue by broker.
+     * @param timeoutMs
+     * @return true when every received message is processed before close.
+     */
+    boolean cancelAndClose(long timeoutMs) {
+
+        long deadline = System.nanoTime() + timeoutMs * 1_000_000L;
+        cancel();
+        return drainAndClose(deadline);
+    }
+
+    /**
+     * Stop receiving message, message already received is still processed.
+     */
+    void cancel() {
+
+        try {
+            if (channel.isOpen() && getConsumerTag() != null) {
+                channel.basicCancel(getConsumerTag());
+            }
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to cancel consumer id:" + id, e);
+        }
+    }
+
+    /**
+     * Wait until every received message is processed then close channel, used after cancel.
+     * @param deadline in System.nanoTime(), so many consumers can share one deadline.
+     * @return true when every received message is processed before close.
+     */
+    boolean drainAndClose(long deadline) {
+
+        boolean drained = waitForDrain(deadline);
+        closeChannel();
+        return drained;
+    }
+
+    private boolean waitForDrain(long deadline) {
+
+        //Deliveries sent before cancel-ok are still dispatched, in-flight count is final only after cancel-ok.
+        while ((!cancelled || getInFlightCount() > 0) && channel.isOpen()) {
+
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        return getInFlightCount() == 0;
+    }
+
+    /**
+     * @return deliveries received and not yet processed, including those collected or processed by batcher.
+     */
+    int getInFlightCount() {
+        return batcher == null ? inFlight.get() : inFlight.get() + batcher.getUnsettledCount();
+    }
+
+    /**
+     * @return prefetch count of consumer channel, it change at runtime when adaptive qos is used. 0 when unknown.
+     */
+    public int getPrefetchCount() {
+        return prefetchTuner == null ? qos : prefetchTuner.getPrefetchCount();
+    }
+
+    @Override
+    public void handleShutdownSignal(String consumerTag, ShutdownSignalException sig) {
+        //Delivery tags of shutdown channel are no longer valid, broker requeue every unacked message.
+        acknowledger.reset(lastDeliveryTag);
+    }
+
     public String getChannelId() {
         return String.valueOf(channel.hashCode());
     }
@@ -64,7 +302,23 @@ public class DefaultConsumer extends com.rabbitmq.client.DefaultConsumer impleme
     @Override
     public void closeChannel() {
 
+        if (retrier != null) {
+            retrier.close();
+        }
+        acknowledger.close();
+        if (prefetchTuner != null) {
+            prefetchTuner.close();
+        }
         closeChannel(channel);
+
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+
+        if (batcher != null) {
+            batcher.close();
+        }
+
         LOG.log(Level.INFO, "Consumer id:{0} is successfully close", id);
     }
 
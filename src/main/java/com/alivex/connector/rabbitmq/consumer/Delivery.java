@@ -0,0 +1,36 @@
+package com.alivex.connector.rabbitmq.consumer;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Envelope;
+
+/**
+ * A message received from consumer, used by batch processor.
+ */
+public class Delivery {
+
+    private final Envelope envelope;
+    private final AMQP.BasicProperties properties;
+    private final byte[] body;
+
+    public Delivery(Envelope envelope, AMQP.BasicProperties properties, byte[] body) {
+        this.envelope = envelope;
+        this.properties = properties;
+        this.body = body;
+    }
+
+    public Envelope getEnvelope() {
+        return envelope;
+    }
+
+    public AMQP.BasicProperties getProperties() {
+        return properties;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public long getDeliveryTag() {
+        return envelope.getDeliveryTag();
+    }
+}
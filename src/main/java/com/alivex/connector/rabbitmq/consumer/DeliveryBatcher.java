@@ -0,0 +1,188 @@
+package com.alivex.connector.rabbitmq.consumer;
+
+import com.alivex.connector.rabbitmq.exception.RejectAndDontRequeueException;
+import com.alivex.connector.rabbitmq.exception.RejectDeliveriesException;
+import com.alivex.connector.rabbitmq.metrics.ConnectorMetrics;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collect deliveries until max size or max wait time is reached, then process them as a single batch.
+ * Batches are processed one at a time in delivery order, so a cumulative ack of a batch never cover a delivery of another batch.
+ */
+class DeliveryBatcher {
+
+    private static final Logger LOG = Logger.getLogger(DeliveryBatcher.class.getName());
+
+    private final BatchProcessor processor;
+    private final int maxSize;
+    private final long maxWaitMs;
+    private final Acknowledger acknowledger;
+    private final OrderedDispatcher dispatcher;
+    private final ConnectorMetrics metrics;
+
+    private List<Delivery> pending;
+    private ScheduledFuture<?> flushTask;
+
+    //Deliveries added and not yet acked or rejected, used to drain consumer before close.
+    private final AtomicInteger unsettled = new AtomicInteger();
+
+    DeliveryBatcher(BatchProcessor processor,
+                    int maxSize,
+                    long maxWaitMs,
+                    Acknowledger acknowledger,
+                    OrderedDispatcher dispatcher,
+                    ConnectorMetrics metrics) {
+        this.processor = processor;
+        this.maxSize = maxSize;
+        this.maxWaitMs = maxWaitMs;
+        this.acknowledger = acknowledger;
+        this.dispatcher = dispatcher;
+        this.metrics = metrics;
+        this.pending = new ArrayList<>(maxSize);
+    }
+
+    synchronized void add(Delivery delivery) {
+
+        unsettled.incrementAndGet();
+        pending.add(delivery);
+
+        if (pending.size() >= maxSize) {
+            flush();
+        } else if (pending.size() == 1) {
+            flushTask = ConsumerScheduler.get().schedule(this::flush, maxWaitMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop collecting, deliveries not yet processed are requeue by broker when a channel is closed.
+     */
+    synchronized void close() {
+
+        cancelFlushTask();
+        unsettled.addAndGet(-pending.size());
+        pending = new ArrayList<>(maxSize);
+        dispatcher.shutdown();
+    }
+
+    /**
+     * @return number of deliveries pending or in a running batch, not yet acked or rejected.
+     */
+    int getUnsettledCount() {
+        return unsettled.get();
+    }
+
+    private synchronized void flush() {
+
+        cancelFlushTask();
+
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        final List<Delivery> batch = Collections.unmodifiableList(pending);
+        pending = new ArrayList<>(maxSize);
+        dispatcher.dispatch(null, () -> process(batch), () -> {
+            rejectAll(batch, true);
+            unsettled.addAndGet(-batch.size());
+        });
+    }
+
+    private void cancelFlushTask() {
+
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+    }
+
+    private void process(List<Delivery> batch) {
+
+        try {
+
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.log(Level.FINE, "Consumer process batch, size:{0}", batch.size());
+            }
+
+            long start = System.nanoTime();
+            processor.process(batch);
+            metrics.recordProcess(System.nanoTime() - start);
+            acknowledger.ackAll(deliveryTags(batch));
+
+        } catch (RejectDeliveriesException e) {
+
+            LOG.log(Level.SEVERE, "Failed to consume some messages of batch.", e);
+            rejectSome(batch, e);
+
+        } catch (RejectAndDontRequeueException e) {
+
+            LOG.log(Level.SEVERE, "Failed to consume batch.", e);
+            rejectAll(batch, false);
+
+        } catch (Exception e) {
+
+            LOG.log(Level.SEVERE, "Failed to consume batch.", e);
+            rejectAll(batch, true);
+
+        } finally {
+            unsettled.addAndGet(-batch.size());
+        }
+    }
+
+    private void rejectSome(List<Delivery> batch, RejectDeliveriesException e) {
+
+        Set<Long> rejectedTags = new HashSet<>();
+        for (Delivery delivery : e.getDeliveries()) {
+            rejectedTags.add(delivery.getDeliveryTag());
+        }
+
+        List<Long> ackTags = new ArrayList<>(batch.size());
+        try {
+
+            for (Delivery delivery : batch) {
+                if (rejectedTags.contains(delivery.getDeliveryTag())) {
+                    acknowledger.reject(delivery.getDeliveryTag(), false);
+                } else {
+                    ackTags.add(delivery.getDeliveryTag());
+                }
+            }
+
+            acknowledger.ackAll(ackTags);
+
+        } catch (IOException ex) {
+            LOG.log(Level.SEVERE, "Failed to acknowledge batch.", ex);
+        }
+    }
+
+    private void rejectAll(List<Delivery> batch, boolean requeue) {
+
+        try {
+
+            for (Delivery delivery : batch) {
+                acknowledger.reject(delivery.getDeliveryTag(), requeue);
+            }
+
+        } catch (IOException ex) {
+            LOG.log(Level.SEVERE, "Failed to reject batch.", ex);
+        }
+    }
+
+    private List<Long> deliveryTags(List<Delivery> batch) {
+
+        List<Long> deliveryTags = new ArrayList<>(batch.size());
+        for (Delivery delivery : batch) {
+            deliveryTags.add(delivery.getDeliveryTag());
+        }
+
+        return deliveryTags;
+    }
+}
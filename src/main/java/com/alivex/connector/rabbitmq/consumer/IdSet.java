@@ -0,0 +1,139 @@
+package com.alivex.connector.rabbitmq.consumer;
+
+import java.util.Arrays;
+
+/**
+ * Fixed size set of 64-bit id hash, exact or probabilistic. Not thread-safe.
+ */
+abstract class IdSet {
+
+    abstract boolean contains(long id);
+
+    abstract void add(long id);
+
+    abstract boolean isFull();
+
+    abstract void clear();
+
+    /**
+     * Open addressing set of primitive long with linear probing, load factor is kept under one half.
+     * Zero mark an empty slot, caller must not add zero.
+     */
+    static final class Exact extends IdSet {
+
+        private final long[] table;
+        private final int mask;
+        private final int capacity;
+        private int size;
+
+        Exact(int capacity) {
+
+            int tableSize = Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1) << 1;
+            this.table = new long[tableSize];
+            this.mask = tableSize - 1;
+            this.capacity = capacity;
+        }
+
+        @Override
+        boolean contains(long id) {
+
+            int index = (int) id & mask;
+            long value;
+            while ((value = table[index]) != 0) {
+                if (value == id) {
+                    return true;
+                }
+                index = (index + 1) & mask;
+            }
+
+            return false;
+        }
+
+        @Override
+        void add(long id) {
+
+            int index = (int) id & mask;
+            long value;
+            while ((value = table[index]) != 0) {
+                if (value == id) {
+                    return;
+                }
+                index = (index + 1) & mask;
+            }
+
+            table[index] = id;
+            size++;
+        }
+
+        @Override
+        boolean isFull() {
+            return size >= capacity;
+        }
+
+        @Override
+        void clear() {
+            Arrays.fill(table, 0);
+            size = 0;
+        }
+    }
+
+    /**
+     * Bloom filter with double hashing, bit positions are derived from the two halves of id hash.
+     */
+    static final class Bloom extends IdSet {
+
+        private final long[] bits;
+        private final long bitCount;
+        private final int hashCount;
+        private final int capacity;
+        private int size;
+
+        Bloom(int capacity, double falsePositiveRate) {
+
+            long m = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.bits = new long[(int) Math.max(1, (m + 63) >>> 6)];
+            this.bitCount = (long) bits.length << 6;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * Math.log(2)));
+            this.capacity = capacity;
+        }
+
+        @Override
+        boolean contains(long id) {
+
+            long h1 = id & 0xffffffffL;
+            long h2 = id >>> 32;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = (h1 + i * h2) % bitCount;
+                if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        void add(long id) {
+
+            long h1 = id & 0xffffffffL;
+            long h2 = id >>> 32;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = (h1 + i * h2) % bitCount;
+                bits[(int) (bit >>> 6)] |= 1L << bit;
+            }
+
+            size++;
+        }
+
+        @Override
+        boolean isFull() {
+            return size >= capacity;
+        }
+
+        @Override
+        void clear() {
+            Arrays.fill(bits, 0);
+            size = 0;
+        }
+    }
+}
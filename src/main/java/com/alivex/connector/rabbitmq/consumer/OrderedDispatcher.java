@@ -0,0 +1,50 @@
+package com.alivex.connector.rabbitmq.consumer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dispatch deliveries to a fixed number of lanes, a lane run its deliveries in order.
+ * Deliveries with the same ordering key always go to the same lane,
+ * deliveries without ordering key are spread across lanes in round-robin.
+ */
+class OrderedDispatcher {
+
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final SerialExecutor[] lanes;
+    private final AtomicInteger nextLane = new AtomicInteger();
+
+    /**
+     * @param executor executor that run lanes.
+     * @param ownsExecutor shutdown executor with dispatcher, must be false for a user supplied executor.
+     * @param concurrency number of lane.
+     */
+    OrderedDispatcher(ExecutorService executor, boolean ownsExecutor, int concurrency) {
+
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.lanes = new SerialExecutor[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            lanes[i] = new SerialExecutor(executor);
+        }
+    }
+
+    /**
+     * @param orderingKey
+     * @param task
+     * @param rejection give delivery of task back to broker when executor reject task.
+     */
+    void dispatch(String orderingKey, Runnable task, Runnable rejection) {
+
+        int lane = orderingKey == null ? nextLane.getAndIncrement() : orderingKey.hashCode();
+        lanes[Math.floorMod(lane, lanes.length)].execute(task, rejection);
+    }
+
+    void shutdown() {
+
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.alivex.connector.rabbitmq.consumer;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Envelope;
+import java.util.Map;
+
+/**
+ * Extract ordering key from a delivery.
+ * Messages with the same key are processed in order, messages with different key are processed in parallel.
+ */
+public interface OrderingKeyExtractor {
+
+    /**
+     * @param envelope
+     * @param properties
+     * @return ordering key, null when a message does not need ordering.
+     */
+    public String extract(Envelope envelope, AMQP.BasicProperties properties);
+
+    /**
+     * Use routing key of a message as ordering key.
+     * @return
+     */
+    public static OrderingKeyExtractor routingKey() {
+        return (envelope, properties) -> envelope.getRoutingKey();
+    }
+
+    /**
+     * Use value of a message header as ordering key.
+     * @param name header name
+     * @return
+     */
+    public static OrderingKeyExtractor header(final String name) {
+        return (envelope, properties) -> {
+
+            Map<String, Object> headers = properties == null ? null : properties.getHeaders();
+            if (headers == null) {
+                return null;
+            }
+
+            Object value = headers.get(name);
+            return value == null ? null : value.toString();
+        };
+    }
+}
@@ -0,0 +1,77 @@
+package com.alivex.connector.rabbitmq.consumer;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One consumer per partition queue, consumer of partition i consume queue {queueName}.i.
+ */
+public class PartitionedConsumer implements Consumer {
+
+    private static final Logger LOG = Logger.getLogger(PartitionedConsumer.class.getName());
+    private static final long DRAIN_TIMEOUT_MS = 30_000;
+
+    private final String id = UUID.randomUUID().toString();
+    private final List<DefaultConsumer> consumers;
+
+    PartitionedConsumer(List<DefaultConsumer> consumers) {
+        this.consumers = Collections.unmodifiableList(consumers);
+    }
+
+    public int getPartitionCount() {
+        return consumers.size();
+    }
+
+    /**
+     * @param partition
+     * @return consumer of partition queue.
+     */
+    public DefaultConsumer getConsumer(int partition) {
+        return consumers.get(partition);
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return true when consumer of every partition is open, a partition without consumer is not processed.
+     */
+    @Override
+    public boolean isChannelOpen() {
+
+        for (DefaultConsumer consumer : consumers) {
+            if (!consumer.isChannelOpen()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Cancel consumer of every partition first so they drain in parallel, then close each channel once drained.
+     * Every partition share one drain timeout, message still in process when it is reached is requeue by broker.
+     */
+    @Override
+    public void closeChannel() {
+
+        long deadline = System.nanoTime() + DRAIN_TIMEOUT_MS * 1_000_000L;
+        for (DefaultConsumer consumer : consumers) {
+            consumer.cancel();
+        }
+
+        for (DefaultConsumer consumer : consumers) {
+            if (!consumer.drainAndClose(deadline)) {
+                LOG.log(Level.WARNING, "Consumer id:{0} is closed with {1} message in process, they are requeue by broker",
+                        new Object[]{consumer.getId(), consumer.getInFlightCount()});
+            }
+        }
+
+        LOG.log(Level.INFO, "Partitioned consumer id:{0} is successfully close", id);
+    }
+}
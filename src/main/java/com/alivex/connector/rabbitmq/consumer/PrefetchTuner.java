@@ -0,0 +1,150 @@
+package com.alivex.connector.rabbitmq.consumer;
+
+import com.rabbitmq.client.Channel;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Adjust prefetch count of a consumer channel to keep its workers busy without piling up unacked messages.
+ * Consumer report processing time and delivery gap, time from a consumer running out of message to next delivery.
+ * Shortest gap of an interval estimate round trip of an ack to broker and next message back, by Little's law
+ * prefetch of concurrency * (1 + round trip / processing time) cover the round trip.
+ * Prefetch is set with global qos, it is the only qos applied by broker to a consumer that is already running.
+ */
+class PrefetchTuner {
+
+    private static final Logger LOG = Logger.getLogger(PrefetchTuner.class.getName());
+    private static final long TUNE_INTERVAL_MS = 1000;
+    private static final double SMOOTHING = 0.3;
+
+    //Basic qos is a synchronous call to broker, it is not run on shared consumer scheduler.
+    private static final ScheduledExecutorService TUNER =
+            Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("rabbitmq-consumer-prefetch"));
+
+    private final Channel channel;
+    private final int concurrency;
+    private final int min;
+    private final int max;
+    private final LongAdder processedCount = new LongAdder();
+    private final LongAdder processNanos = new LongAdder();
+    private final AtomicLong idleSince = new AtomicLong();
+    private final AtomicLong minGapNanos = new AtomicLong(Long.MAX_VALUE);
+    private final ScheduledFuture<?> tuneTask;
+
+    //Accessed by tuner thread only.
+    private double averageProcessNanos;
+    private double roundTripNanos;
+
+    private volatile int prefetchCount;
+
+    PrefetchTuner(Channel channel, int concurrency, int min, int max) {
+        this.channel = channel;
+        this.concurrency = concurrency;
+        this.min = min;
+        this.max = max;
+        this.prefetchCount = min;
+        this.tuneTask = TUNER.scheduleWithFixedDelay(this::tuneQuietly, TUNE_INTERVAL_MS, TUNE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Set initial prefetch count to channel.
+     * @throws IOException
+     */
+    void init() throws IOException {
+        channel.basicQos(prefetchCount, true);
+    }
+
+    /**
+     * @param wasIdle true when consumer had no message in process before this delivery.
+     */
+    void delivered(boolean wasIdle) {
+
+        if (!wasIdle) {
+            return;
+        }
+
+        long since = idleSince.getAndSet(0);
+        if (since != 0) {
+            long gap = System.nanoTime() - since;
+            minGapNanos.accumulateAndGet(gap, Math::min);
+        }
+    }
+
+    void processed(long nanos) {
+        processNanos.add(nanos);
+        processedCount.increment();
+    }
+
+    /**
+     * Consumer has no message in process.
+     */
+    void idle() {
+        idleSince.set(System.nanoTime());
+    }
+
+    int getPrefetchCount() {
+        return prefetchCount;
+    }
+
+    void close() {
+        tuneTask.cancel(false);
+    }
+
+    private void tuneQuietly() {
+
+        try {
+            tune();
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to tune prefetch count", e);
+        }
+    }
+
+    private void tune() throws IOException {
+
+        long count = processedCount.sumThenReset();
+        long nanos = processNanos.sumThenReset();
+        long gap = minGapNanos.getAndSet(Long.MAX_VALUE);
+
+        if (count == 0 || !channel.isOpen()) {
+            return;
+        }
+
+        double processNanosOfInterval = (double) nanos / count;
+        averageProcessNanos = averageProcessNanos == 0 ? processNanosOfInterval : smooth(averageProcessNanos, processNanosOfInterval);
+        if (gap != Long.MAX_VALUE) {
+            roundTripNanos = roundTripNanos == 0 ? gap : smooth(roundTripNanos, gap);
+        }
+
+        if (roundTripNanos == 0) {
+            return;
+        }
+
+        int target = (int) Math.ceil(concurrency * (1 + roundTripNanos / Math.max(averageProcessNanos, 1)));
+        target = Math.max(min, Math.min(max, target));
+
+        //Ignore small change, every change cost a round trip to broker.
+        int current = prefetchCount;
+        if (Math.abs(target - current) < Math.max(1, current / 5)) {
+            return;
+        }
+
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.log(Level.FINE, "Change prefetch count from {0} to {1}, process time:{2}ns, round trip:{3}ns",
+                    new Object[]{current, target, (long) averageProcessNanos, (long) roundTripNanos});
+        }
+
+        channel.basicQos(target, true);
+        prefetchCount = target;
+    }
+
+    private static double smooth(double average, double sample) {
+        return average + SMOOTHING * (sample - average);
+    }
+}
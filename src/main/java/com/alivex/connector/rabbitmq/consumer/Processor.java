@@ -1,5 +1,7 @@
 package com.alivex.connector.rabbitmq.consumer;
 
+import com.rabbitmq.client.AMQP;
+
 
 public interface Processor {
 
@@ -9,4 +11,14 @@ public interface Processor {
      * @param data
      */
     public void process(byte[] data) throws RuntimeException;
+
+    /**
+     * Process array of byte with its message properties, it is what consumer call.
+     * If not override properties is ignored and process(data) is called.
+     * @param data
+     * @param properties may be null.
+     */
+    public default void process(byte[] data, AMQP.BasicProperties properties) throws RuntimeException {
+        process(data);
+    }
 }
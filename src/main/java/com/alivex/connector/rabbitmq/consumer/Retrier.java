@@ -0,0 +1,258 @@
+package com.alivex.connector.rabbitmq.consumer;
+
+import com.alivex.connector.rabbitmq.ConfirmTracker;
+import com.alivex.connector.rabbitmq.ConfirmTracker.Confirmation;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.Envelope;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Apply retry policy of a consumer to a failed message.
+ * A copy with incremented retry count is published as mandatory on a confirm mode channel of consumer connection,
+ * original delivery is acked only once broker confirm the copy. When the copy is nack, returned or not confirmed in time,
+ * original is requeued so message is never lost. Publish and settle run on retry scheduler, never on a consumer thread.
+ */
+class Retrier {
+
+    private static final Logger LOG = Logger.getLogger(Retrier.class.getName());
+    private static final String DEFAULT_EXCHANGE = "";
+    private static final long CONFIRM_TIMEOUT = 30000;
+
+    //Publish sequence number of the copy, used to match a returned copy with its confirm.
+    static final String RETRY_SEQUENCE_HEADER = "x-retry-seq";
+
+    private final RetryPolicy policy;
+    private final String queueName;
+    private final Acknowledger acknowledger;
+    private final Connection connection;
+    private final ConfirmTracker confirmTracker = new ConfirmTracker();
+    private final Set<Long> returned = ConcurrentHashMap.newKeySet();
+    private Channel publishChannel;
+    private volatile boolean closed;
+
+    Retrier(RetryPolicy policy, String queueName, Acknowledger acknowledger, Connection connection) {
+        this.policy = policy;
+        this.queueName = queueName;
+        this.acknowledger = acknowledger;
+        this.connection = connection;
+    }
+
+    /**
+     * Declare a delay queue per tier, expired message is dead-lettered through default exchange back to original queue.
+     * @param channel
+     * @throws IOException
+     */
+    void declareDelayQueues(Channel channel) throws IOException {
+
+        if (!policy.isDelayQueue()) {
+            return;
+        }
+
+        Set<String> names = new LinkedHashSet<>();
+        for (int attempt = 1; attempt <= policy.getMaxAttempts(); attempt++) {
+
+            String name = policy.delayQueueName(queueName, attempt);
+            if (!names.add(name)) {
+                continue;
+            }
+
+            Map<String, Object> arguments = new HashMap<>();
+            arguments.put("x-message-ttl", policy.getDelay(attempt));
+            arguments.put("x-dead-letter-exchange", DEFAULT_EXCHANGE);
+            arguments.put("x-dead-letter-routing-key", queueName);
+            channel.queueDeclare(name, true, false, false, arguments);
+        }
+    }
+
+    void retry(Envelope envelope, AMQP.BasicProperties properties, byte[] body) {
+
+        long deliveryTag = envelope.getDeliveryTag();
+        int attempt = getRetryCount(properties) + 1;
+
+        if (attempt > policy.getMaxAttempts()) {
+            deadLetter(deliveryTag, properties, body);
+            return;
+        }
+
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.log(Level.FINE, "Retry message, queue:{0}, attempt:{1}", new Object[]{queueName, attempt});
+        }
+
+        AMQP.BasicProperties retryProperties = withHeader(properties, RetryPolicy.RETRY_COUNT_HEADER, attempt);
+
+        if (policy.isDelayQueue()) {
+            schedule(DEFAULT_EXCHANGE, policy.delayQueueName(queueName, attempt), retryProperties, body, deliveryTag, 0);
+            return;
+        }
+
+        schedule(DEFAULT_EXCHANGE, queueName, retryProperties, body, deliveryTag, policy.getDelay(attempt));
+    }
+
+    private void deadLetter(long deliveryTag, AMQP.BasicProperties properties, byte[] body) {
+
+        LOG.log(Level.WARNING, "Message is dead-lettered after {0} retries, queue:{1}", new Object[]{policy.getMaxAttempts(), queueName});
+
+        if (policy.getDeadLetterExchange() == null) {
+            try {
+                acknowledger.reject(deliveryTag, false);
+            } catch (IOException e) {
+                //Message stay unacked and is redelivered by broker when channel is closed.
+                LOG.log(Level.SEVERE, "Failed to dead-letter message.", e);
+            }
+            return;
+        }
+
+        schedule(policy.getDeadLetterExchange(), policy.getDeadLetterRoutingKey(), properties, body, deliveryTag, 0);
+    }
+
+    private void schedule(String exchange, String routingKey, AMQP.BasicProperties properties, byte[] body, long deliveryTag, long delay) {
+        RetryScheduler.get().schedule(() -> republish(exchange, routingKey, properties, body, deliveryTag), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void republish(String exchange, String routingKey, AMQP.BasicProperties properties, byte[] body, long deliveryTag) {
+
+        //Consumer channel is closed, broker already requeue the original.
+        if (closed) {
+            return;
+        }
+
+        Confirmation confirmation;
+        try {
+            confirmation = publish(exchange, routingKey, properties, body);
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.SEVERE, "Failed to retry message, original is requeued.", e);
+            settle(deliveryTag, false);
+            return;
+        }
+
+        confirmTracker.expireAfter(confirmation, CONFIRM_TIMEOUT);
+        confirmation.thenAcceptAsync(ack -> {
+
+            boolean isReturned = returned.remove(confirmation.getSequenceNumber());
+            if (!ack || isReturned) {
+                LOG.log(Level.SEVERE, "Retry copy is not confirmed by broker, original is requeued. exchange:{0}, routingKey:{1}, returned:{2}",
+                        new Object[]{exchange, routingKey, isReturned});
+            }
+            settle(deliveryTag, ack && !isReturned);
+
+        }, RetryScheduler.get());
+    }
+
+    private synchronized Confirmation publish(String exchange, String routingKey, AMQP.BasicProperties properties, byte[] body) throws IOException {
+
+        Channel channel = getPublishChannel();
+        long seqNo = channel.getNextPublishSeqNo();
+        Confirmation confirmation = confirmTracker.register(seqNo);
+
+        try {
+            channel.basicPublish(exchange, routingKey, true, withHeader(properties, RETRY_SEQUENCE_HEADER, seqNo), body);
+        } catch (IOException | RuntimeException e) {
+            confirmTracker.fail(confirmation);
+            throw e;
+        }
+
+        return confirmation;
+    }
+
+    /**
+     * A channel closed by broker is replaced, a channel of a recovering connection is recovered by client library.
+     */
+    private Channel getPublishChannel() throws IOException {
+
+        if (publishChannel != null && (publishChannel.isOpen() || !connection.isOpen())) {
+            return publishChannel;
+        }
+
+        Channel channel = connection.createChannel();
+        if (channel == null) {
+            throw new IOException("No channel available for retry, channel max is reached");
+        }
+
+        channel.confirmSelect();
+        channel.addConfirmListener(confirmTracker);
+        channel.addReturnListener(this::handleReturn);
+        channel.addShutdownListener(e -> {
+            confirmTracker.failAll();
+            returned.clear();
+        });
+
+        publishChannel = channel;
+        return channel;
+    }
+
+    private void handleReturn(int replyCode, String replyText, String exchange, String routingKey, AMQP.BasicProperties properties, byte[] body) {
+
+        //Broker send return of a mandatory message before its confirm.
+        Object seqNo = properties == null || properties.getHeaders() == null ? null : properties.getHeaders().get(RETRY_SEQUENCE_HEADER);
+        if (seqNo instanceof Number) {
+            returned.add(((Number) seqNo).longValue());
+        }
+    }
+
+    private void settle(long deliveryTag, boolean confirmed) {
+
+        try {
+            acknowledger.settleRepublished(deliveryTag, confirmed);
+        } catch (IOException | RuntimeException e) {
+            //Message stay unacked and is redelivered by broker when channel is closed.
+            LOG.log(Level.SEVERE, "Failed to settle retried message.", e);
+        }
+    }
+
+    /**
+     * Stop retrying and close retry channel, unsettled original is requeued by broker when consumer channel is closed.
+     */
+    synchronized void close() {
+
+        closed = true;
+        if (publishChannel == null || !publishChannel.isOpen()) {
+            return;
+        }
+
+        try {
+            publishChannel.close();
+        } catch (Exception e) {
+            LOG.log(Level.INFO, "Failed to close retry channel", e);
+        }
+    }
+
+    /**
+     * @return retry count of header, max attempts when header is malformed so message is dead-lettered instead of failing again.
+     */
+    private int getRetryCount(AMQP.BasicProperties properties) {
+
+        Object count = properties == null || properties.getHeaders() == null ? null : properties.getHeaders().get(RetryPolicy.RETRY_COUNT_HEADER);
+        if (count == null) {
+            return 0;
+        }
+
+        try {
+            int retryCount = count instanceof Number ? ((Number) count).intValue() : Integer.parseInt(count.toString().trim());
+            return Math.min(Math.max(retryCount, 0), policy.getMaxAttempts());
+        } catch (NumberFormatException e) {
+            LOG.log(Level.WARNING, "Malformed {0} header of message, queue:{1}, value:{2}", new Object[]{RetryPolicy.RETRY_COUNT_HEADER, queueName, count});
+            return policy.getMaxAttempts();
+        }
+    }
+
+    private static AMQP.BasicProperties withHeader(AMQP.BasicProperties properties, String name, Object value) {
+
+        if (properties == null) {
+            properties = new AMQP.BasicProperties();
+        }
+
+        Map<String, Object> headers = properties.getHeaders() == null ? new HashMap<>() : new HashMap<>(properties.getHeaders());
+        headers.put(name, value);
+        return properties.builder().headers(headers).build();
+    }
+}
@@ -0,0 +1,115 @@
+package com.alivex.connector.rabbitmq.consumer;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * How a message is retried when processor throw an exception other than RejectAndDontRequeueException.
+ * Number of attempt is counted in x-retry-count header of message, message is retried until every attempt is used
+ * then it is dead-lettered. Failed message is acked once broker confirm its republished copy so it does not hold a prefetch slot.
+ */
+public class RetryPolicy implements Serializable {
+
+    public static final String RETRY_COUNT_HEADER = "x-retry-count";
+
+    private final long[] delays;
+    private final boolean delayQueue;
+    private String deadLetterExchange;
+    private String deadLetterRoutingKey;
+
+    private RetryPolicy(long[] delays, boolean delayQueue) {
+        this.delays = delays;
+        this.delayQueue = delayQueue;
+    }
+
+    /**
+     * Republish failed message to a delay queue per tier, one tier per attempt.
+     * Delay queue named {queue}.retry.{delay} is declared with message ttl of its delay and dead-lettered back to original queue,
+     * so a waiting message does not hold a prefetch slot of consumer.
+     * @param delaysMs delay in milliseconds of each attempt, for example 1000, 10000, 60000.
+     * @return
+     */
+    public static RetryPolicy delayTiers(long... delaysMs) {
+        return new RetryPolicy(check(delaysMs), true);
+    }
+
+    /**
+     * Wait in consumer then republish failed message to original queue, backoff is doubled on every attempt up to max backoff.
+     * Failed message hold its prefetch slot while it wait, use delay tiers for long backoff.
+     * @param maxAttempts
+     * @param backoffMs
+     * @param maxBackoffMs
+     * @return
+     */
+    public static RetryPolicy requeue(int maxAttempts, long backoffMs, long maxBackoffMs) {
+
+        if (maxAttempts < 1 || backoffMs < 0 || maxBackoffMs < backoffMs) {
+            throw new IllegalArgumentException("Max attempts must be greater than zero and 0 <= backoff <= max backoff");
+        }
+
+        long[] delays = new long[maxAttempts];
+        long delay = backoffMs;
+        for (int i = 0; i < maxAttempts; i++) {
+            delays[i] = delay;
+            delay = Math.min(delay * 2, maxBackoffMs);
+        }
+
+        return new RetryPolicy(delays, false);
+    }
+
+    /**
+     * Publish message to given exchange when every attempt is used,
+     * If not specify message is rejected without requeue and dead-letter exchange of queue apply.
+     * @param exchange
+     * @param routingKey
+     * @return
+     */
+    public RetryPolicy deadLetter(String exchange, String routingKey) {
+        this.deadLetterExchange = exchange;
+        this.deadLetterRoutingKey = routingKey;
+        return this;
+    }
+
+    public int getMaxAttempts() {
+        return delays.length;
+    }
+
+    /**
+     * @param attempt start from 1.
+     * @return delay in milliseconds before given attempt.
+     */
+    public long getDelay(int attempt) {
+        return delays[attempt - 1];
+    }
+
+    public boolean isDelayQueue() {
+        return delayQueue;
+    }
+
+    public String getDeadLetterExchange() {
+        return deadLetterExchange;
+    }
+
+    public String getDeadLetterRoutingKey() {
+        return deadLetterRoutingKey;
+    }
+
+    String delayQueueName(String queueName, int attempt) {
+        return queueName + ".retry." + getDelay(attempt);
+    }
+
+    private static long[] check(long[] delaysMs) {
+
+        if (delaysMs.length == 0) {
+            throw new IllegalArgumentException("At least one delay is required");
+        }
+
+        for (long delay : delaysMs) {
+            if (delay < 1) {
+                throw new IllegalArgumentException("Delay must be greater than zero");
+            }
+        }
+
+        return Arrays.copyOf(delaysMs, delaysMs.length);
+    }
+}
@@ -0,0 +1,22 @@
+package com.alivex.connector.rabbitmq.consumer;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Single thread shared by every consumer to wait out retry backoff and republish failed message.
+ * Republish may block while connection is blocked by broker, so it is kept off consumer scheduler.
+ */
+final class RetryScheduler {
+
+    private static final ScheduledExecutorService SCHEDULER =
+            Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("rabbitmq-consumer-retry"));
+
+    private RetryScheduler() {
+
+    }
+
+    static ScheduledExecutorService get() {
+        return SCHEDULER;
+    }
+}
@@ -0,0 +1,94 @@
+package com.alivex.connector.rabbitmq.consumer;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Run tasks one at a time in submission order on top of a shared executor.
+ * When shared executor reject a drain, for example a bounded executor is full or it is shutdown,
+ * every queued task is given back through its rejection so the lane is never stuck.
+ */
+class SerialExecutor {
+
+    private static final Logger LOG = Logger.getLogger(SerialExecutor.class.getName());
+
+    private final Executor executor;
+    private final Queue<Task> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    SerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @param task
+     * @param rejection run instead of task when task cannot be run by shared executor.
+     */
+    void execute(Runnable task, Runnable rejection) {
+        tasks.offer(new Task(task, rejection));
+        schedule();
+    }
+
+    private void schedule() {
+
+        if (tasks.isEmpty() || !running.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            running.set(false);
+            LOG.log(Level.SEVERE, "Consumer executor rejected task, queued deliveries are rejected", e);
+            rejectQueued();
+        }
+    }
+
+    private void drain() {
+
+        try {
+
+            Task task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.task.run();
+                } catch (RuntimeException e) {
+                    LOG.log(Level.SEVERE, "Failed to run consumer task", e);
+                }
+            }
+
+        } finally {
+            running.set(false);
+            //Task may be offered after last poll but before running flag is cleared.
+            schedule();
+        }
+    }
+
+    private void rejectQueued() {
+
+        Task task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.rejection.run();
+            } catch (RuntimeException e) {
+                LOG.log(Level.SEVERE, "Failed to reject consumer task", e);
+            }
+        }
+    }
+
+    private static class Task {
+
+        private final Runnable task;
+        private final Runnable rejection;
+
+        private Task(Runnable task, Runnable rejection) {
+            this.task = task;
+            this.rejection = rejection;
+        }
+    }
+}
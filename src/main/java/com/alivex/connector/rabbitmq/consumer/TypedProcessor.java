@@ -0,0 +1,12 @@
+package com.alivex.connector.rabbitmq.consumer;
+
+
+public interface TypedProcessor<T> {
+
+    /**
+     * Process message object decoded by codec of consumer.
+     * Throw any runtime exception will result in automatic nack and close channel.
+     * @param value
+     */
+    public void process(T value) throws RuntimeException;
+}
@@ -0,0 +1,29 @@
+package com.alivex.connector.rabbitmq.exception;
+
+/**
+ * Publish is refused without being written to channel, caller may retry later or shed the load.
+ */
+public class PublishRejectedException extends RuntimeException {
+
+    public enum Reason {
+        /**
+         * Publisher already has max in-flight messages waiting for confirm.
+         */
+        WINDOW_FULL,
+        /**
+         * Broker send connection.blocked because of memory or disk alarm.
+         */
+        CONNECTION_BLOCKED
+    }
+
+    private final Reason reason;
+
+    public PublishRejectedException(Reason reason) {
+        super("Publish rejected, reason:" + reason);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,28 @@
+
+package com.alivex.connector.rabbitmq.exception;
+
+import com.alivex.connector.rabbitmq.consumer.Delivery;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Reject and don't requeue only some deliveries of a batch, the rest of a batch are ack.
+ */
+public class RejectDeliveriesException extends RejectAndDontRequeueException {
+
+    private final Collection<Delivery> deliveries;
+
+    public RejectDeliveriesException(String message, Collection<Delivery> deliveries) {
+        super(message);
+        this.deliveries = Collections.unmodifiableCollection(deliveries);
+    }
+
+    public RejectDeliveriesException(Throwable cause, Collection<Delivery> deliveries) {
+        super(cause);
+        this.deliveries = Collections.unmodifiableCollection(deliveries);
+    }
+
+    public Collection<Delivery> getDeliveries() {
+        return deliveries;
+    }
+}
@@ -0,0 +1,56 @@
+package com.alivex.connector.rabbitmq.metrics;
+
+/**
+ * Metrics SPI of publisher and consumer.
+ * Implementation is invoke on publish and consume hot path from many threads,
+ * it must be thread-safe and must not block.
+ */
+public interface ConnectorMetrics {
+
+    /**
+     * Default metrics that record nothing.
+     */
+    public static final ConnectorMetrics NOOP = new NoopConnectorMetrics();
+
+    /**
+     * Time spent in a publish call writing a message to channel.
+     * @param nanos
+     */
+    public void recordPublish(long nanos);
+
+    /**
+     * Time from publish of a message to broker confirm of it.
+     * @param nanos
+     */
+    public void recordConfirm(long nanos);
+
+    public void recordNack();
+
+    public void recordReturn();
+
+    public void recordConfirmTimeout();
+
+    /**
+     * Change of number of message publish but not yet confirmed.
+     * @param delta
+     */
+    public void recordInFlight(int delta);
+
+    /**
+     * Time spent in processor.
+     * @param nanos
+     */
+    public void recordProcess(long nanos);
+
+    public void recordAck(int count);
+
+    public void recordReject(int count);
+
+    /**
+     * Duplicate message acked without calling processor.
+     * Default does nothing so implementation written before dedup keep compiling.
+     */
+    public default void recordDuplicate() {
+
+    }
+}
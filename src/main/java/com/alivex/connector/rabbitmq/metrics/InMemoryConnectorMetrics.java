@@ -0,0 +1,148 @@
+package com.alivex.connector.rabbitmq.metrics;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Default metrics implementation, keep every latency in a lock-free histogram and every count in memory.
+ * Share one instance between builders to get metrics of a whole application.
+ */
+public class InMemoryConnectorMetrics implements ConnectorMetrics, Serializable {
+
+    private final LatencyHistogram publishLatency = new LatencyHistogram();
+    private final LatencyHistogram confirmLatency = new LatencyHistogram();
+    private final LatencyHistogram processLatency = new LatencyHistogram();
+    private final LongAdder nackCount = new LongAdder();
+    private final LongAdder returnCount = new LongAdder();
+    private final LongAdder confirmTimeoutCount = new LongAdder();
+    private final LongAdder inFlightCount = new LongAdder();
+    private final LongAdder ackCount = new LongAdder();
+    private final LongAdder rejectCount = new LongAdder();
+    private final LongAdder duplicateCount = new LongAdder();
+
+    @Override
+    public void recordPublish(long nanos) {
+        publishLatency.record(nanos);
+    }
+
+    @Override
+    public void recordConfirm(long nanos) {
+        confirmLatency.record(nanos);
+    }
+
+    @Override
+    public void recordNack() {
+        nackCount.increment();
+    }
+
+    @Override
+    public void recordReturn() {
+        returnCount.increment();
+    }
+
+    @Override
+    public void recordConfirmTimeout() {
+        confirmTimeoutCount.increment();
+    }
+
+    @Override
+    public void recordInFlight(int delta) {
+        inFlightCount.add(delta);
+    }
+
+    @Override
+    public void recordProcess(long nanos) {
+        processLatency.record(nanos);
+    }
+
+    @Override
+    public void recordAck(int count) {
+        ackCount.add(count);
+    }
+
+    @Override
+    public void recordReject(int count) {
+        rejectCount.add(count);
+    }
+
+    @Override
+    public void recordDuplicate() {
+        duplicateCount.increment();
+    }
+
+    public LatencyHistogram getPublishLatency() {
+        return publishLatency;
+    }
+
+    public LatencyHistogram getConfirmLatency() {
+        return confirmLatency;
+    }
+
+    public LatencyHistogram getProcessLatency() {
+        return processLatency;
+    }
+
+    public long getNackCount() {
+        return nackCount.sum();
+    }
+
+    public long getReturnCount() {
+        return returnCount.sum();
+    }
+
+    public long getConfirmTimeoutCount() {
+        return confirmTimeoutCount.sum();
+    }
+
+    public long getInFlightCount() {
+        return inFlightCount.sum();
+    }
+
+    public long getAckCount() {
+        return ackCount.sum();
+    }
+
+    public long getRejectCount() {
+        return rejectCount.sum();
+    }
+
+    public long getDuplicateCount() {
+        return duplicateCount.sum();
+    }
+
+    /**
+     * Summary of every metric, latency in microseconds.
+     * @return
+     */
+    public String report() {
+
+        return "publish " + percentiles(publishLatency)
+                + ", confirm " + percentiles(confirmLatency)
+                + ", process " + percentiles(processLatency)
+                + ", inFlight=" + getInFlightCount()
+                + ", nack=" + getNackCount()
+                + ", return=" + getReturnCount()
+                + ", confirmTimeout=" + getConfirmTimeoutCount()
+                + ", ack=" + getAckCount()
+                + ", reject=" + getRejectCount()
+                + ", duplicate=" + getDuplicateCount();
+    }
+
+    @Override
+    public String toString() {
+        return report();
+    }
+
+    private String percentiles(LatencyHistogram histogram) {
+
+        return "[count=" + histogram.getCount()
+                + ", p50=" + toMicros(histogram.getValueAtPercentile(50))
+                + ", p99=" + toMicros(histogram.getValueAtPercentile(99))
+                + ", p999=" + toMicros(histogram.getValueAtPercentile(99.9)) + "]";
+    }
+
+    private long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
@@ -0,0 +1,46 @@
+package com.alivex.connector.rabbitmq.metrics;
+
+import java.io.Serializable;
+
+class NoopConnectorMetrics implements ConnectorMetrics, Serializable {
+
+    @Override
+    public void recordPublish(long nanos) {
+    }
+
+    @Override
+    public void recordConfirm(long nanos) {
+    }
+
+    @Override
+    public void recordNack() {
+    }
+
+    @Override
+    public void recordReturn() {
+    }
+
+    @Override
+    public void recordConfirmTimeout() {
+    }
+
+    @Override
+    public void recordInFlight(int delta) {
+    }
+
+    @Override
+    public void recordProcess(long nanos) {
+    }
+
+    @Override
+    public void recordAck(int count) {
+    }
+
+    @Override
+    public void recordReject(int count) {
+    }
+
+    @Override
+    public void recordDuplicate() {
+    }
+}
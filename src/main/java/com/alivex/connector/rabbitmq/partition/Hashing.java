@@ -0,0 +1,78 @@
+package com.alivex.connector.rabbitmq.partition;
+
+/**
+ * Stable 64-bit hash and jump consistent hash, the same key give the same partition on every JVM and every run.
+ */
+public final class Hashing {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Hashing() {
+
+    }
+
+    /**
+     * FNV-1a over utf-16 chars of key, no byte array is allocated.
+     * @param key
+     * @return
+     */
+    public static long hash64(CharSequence key) {
+
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+
+        return mix(hash);
+    }
+
+    public static long hash64(byte[] key) {
+
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : key) {
+            hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+        }
+
+        return mix(hash);
+    }
+
+    /**
+     * Jump consistent hash of Lamping and Veach, map a key to one of buckets without any lookup table.
+     * When buckets grow from n to n + 1 only 1 / (n + 1) of keys move, and they all move to the new bucket.
+     * @param key
+     * @param buckets
+     * @return bucket from 0 to buckets - 1
+     */
+    public static int jumpConsistentHash(long key, int buckets) {
+
+        if (buckets < 1) {
+            throw new IllegalArgumentException("Buckets must be greater than zero");
+        }
+
+        long b = -1;
+        long j = 0;
+        while (j < buckets) {
+            b = j;
+            key = key * 2862933555777941757L + 1;
+            j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+
+        return (int) b;
+    }
+
+    /**
+     * Finalizer of murmur3, spread every input bit over every output bit so nearby keys does not land in nearby buckets.
+     */
+    private static long mix(long hash) {
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,49 @@
+package com.alivex.connector.rabbitmq.partition;
+
+import com.rabbitmq.client.Channel;
+import java.io.IOException;
+
+/**
+ * Naming and declaration of partition queues, partition i of base name order is a queue named order.i.
+ * Partitioned publisher and partitioned consumer must use the same base name and number of partitions.
+ */
+public final class Partitions {
+
+    private Partitions() {
+
+    }
+
+    public static String name(String baseName, int partition) {
+        return baseName + "." + partition;
+    }
+
+    /**
+     * @param key
+     * @param partitions
+     * @return partition of key, from 0 to partitions - 1.
+     */
+    public static int partitionOf(CharSequence key, int partitions) {
+        return Hashing.jumpConsistentHash(Hashing.hash64(key), partitions);
+    }
+
+    /**
+     * Declare durable partition queues and bind each one to exchange with its own name as routing key.
+     * Queue is not bound when exchange is default exchange, message is routed by queue name.
+     * @param channel
+     * @param exchange
+     * @param baseName
+     * @param partitions
+     * @throws IOException
+     */
+    public static void declare(Channel channel, String exchange, String baseName, int partitions) throws IOException {
+
+        for (int i = 0; i < partitions; i++) {
+
+            String name = name(baseName, i);
+            channel.queueDeclare(name, true, false, false, null);
+            if (!exchange.isEmpty()) {
+                channel.queueBind(name, exchange, name);
+            }
+        }
+    }
+}
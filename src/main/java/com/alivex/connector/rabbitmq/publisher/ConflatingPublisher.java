@@ -0,0 +1,270 @@
+package com.alivex.connector.rabbitmq.publisher;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Publish only the latest value of each key, for streams such as price or status where a newer value supersede older ones.
+ * Value is kept in a map by key and replaced in place until it is flushed, flush happen every interval or as soon as
+ * number of pending key reach max pending. A value is published at most one interval after it is given.
+ * Every value get a version, a value whose publish failed is put back for next flush unless a newer version of its key
+ * is pending or has been sent, so it is never published after a newer value of its key.
+ * Flush use tryPublish, while in-flight window is full or connection is blocked values stay pending and keep conflating.
+ * Values still unsent when channel is closed are dropped and counted, see getDroppedCount.
+ */
+public class ConflatingPublisher {
+
+    private static final Logger LOG = Logger.getLogger(ConflatingPublisher.class.getName());
+
+    private final Publisher publisher;
+    private final int maxPending;
+    private final Map<String, Value> pending = new ConcurrentHashMap<>();
+    private final Map<String, Sent> sent = new ConcurrentHashMap<>();
+    private final AtomicLong versions = new AtomicLong();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final LongAdder conflatedCount = new LongAdder();
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final Set<CompletableFuture<Boolean>> inFlight = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    //Own flusher thread, a publisher waiting on its channel does not hold back flush of others.
+    private final ScheduledExecutorService flusher;
+
+    ConflatingPublisher(Publisher publisher, long flushIntervalMs, int maxPending) {
+        this.publisher = publisher;
+        this.maxPending = maxPending;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(ConflatingPublisher::newFlusherThread);
+        this.flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void publish(String key, String json) {
+        publish(key, json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Replace pending value of key, value is published on next flush.
+     * @param key
+     * @param data
+     */
+    public void publish(String key, byte[] data) {
+
+        Value value = new Value(data, versions.incrementAndGet());
+        pending.merge(key, value, (current, given) -> {
+            conflatedCount.increment();
+            return newer(current, given);
+        });
+
+        if (pending.size() >= maxPending && flushRequested.compareAndSet(false, true)) {
+            flush();
+        }
+    }
+
+    /**
+     * Publish every pending value now without waiting for broker confirm, run on flusher thread.
+     */
+    public void flush() {
+
+        try {
+            flusher.execute(this::flushQuietly);
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to request flush of conflating publisher, it is closed", e);
+        }
+    }
+
+    /**
+     * @return number of key with a value not yet published.
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * @return number of value replaced by a newer one before it was published.
+     */
+    public long getConflatedCount() {
+        return conflatedCount.sum();
+    }
+
+    public long getPublishedCount() {
+        return publishedCount.sum();
+    }
+
+    /**
+     * @return number of value not published because channel was closed before it was confirmed.
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    public boolean isChannelOpen() {
+        return publisher.isChannelOpen();
+    }
+
+    /**
+     * Stop periodic flush, publish pending values and wait up to 5 seconds for their confirm then close channel of publisher.
+     */
+    public void closeChannel() {
+        closeChannel(5000);
+    }
+
+    /**
+     * Stop periodic flush, publish pending values and wait for their confirm then close channel of publisher.
+     * Values not confirmed in time or still pending are dropped, logged and counted.
+     * @param timeoutMs maximum time to wait for flush and confirm of pending values.
+     */
+    public void closeChannel(long timeoutMs) {
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        try {
+            flusher.submit(() -> flushPending(false)).get(timeoutMs, TimeUnit.MILLISECONDS);
+            CompletableFuture.allOf(inFlight.toArray(new CompletableFuture[0]))
+                    .get(Math.max(TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()), 1), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            LOG.log(Level.WARNING, "Conflating publisher is closed before {0} values are confirmed", inFlight.size());
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to flush conflating publisher before close", e);
+        }
+
+        flusher.shutdownNow();
+
+        //Failed value seeing closed drops itself, value put back before is dropped here.
+        closed = true;
+        pending.keySet().forEach(this::drop);
+        if (droppedCount.sum() > 0) {
+            LOG.log(Level.WARNING, "Conflating publisher dropped {0} values not published before close", droppedCount.sum());
+        }
+
+        publisher.closeChannel();
+    }
+
+    private void flushQuietly() {
+
+        try {
+            flushPending(true);
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to flush conflating publisher", e);
+        }
+    }
+
+    /**
+     * @param failFast use tryPublish and stop at first rejected value, remaining values wait for next flush.
+     */
+    private void flushPending(boolean failFast) {
+
+        flushRequested.set(false);
+
+        Iterator<String> keys = pending.keySet().iterator();
+        while (keys.hasNext()) {
+
+            String key = keys.next();
+            Value value = pending.remove(key);
+            if (value == null) {
+                continue;
+            }
+
+            sent.compute(key, (k, current) -> current == null ? new Sent(value.version) : current.add(value.version));
+
+            CompletableFuture<Boolean> future = failFast ? publisher.tryPublish(value.data) : publisher.publishAsync(value.data);
+            //Close wait for completion handler, not only the confirm, so a value is counted before close return.
+            CompletableFuture<Boolean> completed = future.whenComplete((isConfirm, e) -> complete(key, value, Boolean.TRUE.equals(isConfirm)));
+            inFlight.add(completed);
+            completed.whenComplete((isConfirm, e) -> inFlight.remove(completed));
+
+            if (future.isCompletedExceptionally()) {
+                //Window is full or connection is blocked, rejected value is already put back.
+                return;
+            }
+        }
+    }
+
+    /**
+     * Failed value is put back unless a newer version of key is pending or has been sent since,
+     * a newer version that fail is put back by its own completion. Sent version of key is forgotten once nothing is in flight.
+     */
+    private void complete(String key, Value value, boolean isConfirm) {
+
+        if (isConfirm) {
+            publishedCount.increment();
+        }
+
+        sent.computeIfPresent(key, (k, current) -> {
+
+            if (!isConfirm && value.version >= current.latestVersion) {
+                pending.merge(key, value, ConflatingPublisher::newer);
+            } else if (!isConfirm && LOG.isLoggable(Level.FINE)) {
+                LOG.log(Level.FINE, "Drop failed value of key {0}, a newer value has been sent", key);
+            }
+
+            return --current.inFlight == 0 ? null : current;
+        });
+
+        if (!isConfirm && closed) {
+            drop(key);
+        }
+    }
+
+    private void drop(String key) {
+
+        if (pending.remove(key) != null) {
+            droppedCount.increment();
+        }
+    }
+
+    private static Value newer(Value current, Value given) {
+        return given.version > current.version ? given : current;
+    }
+
+    private static Thread newFlusherThread(Runnable r) {
+
+        Thread thread = new Thread(r, "rabbitmq-conflating-publisher");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static final class Value {
+
+        private final byte[] data;
+        private final long version;
+
+        private Value(byte[] data, long version) {
+            this.data = data;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Latest version of a key handed to publisher and number of its values not yet confirmed, guarded by compute of sent map.
+     */
+    private static final class Sent {
+
+        private long latestVersion;
+        private int inFlight;
+
+        private Sent(long version) {
+            this.latestVersion = version;
+            this.inFlight = 1;
+        }
+
+        private Sent add(long version) {
+            latestVersion = Math.max(latestVersion, version);
+            inFlight++;
+            return this;
+        }
+    }
+}
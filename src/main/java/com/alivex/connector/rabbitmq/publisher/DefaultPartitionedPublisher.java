@@ -0,0 +1,72 @@
+package com.alivex.connector.rabbitmq.publisher;
+
+import com.rabbitmq.client.AMQP;
+import com.alivex.connector.rabbitmq.partition.Partitions;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Route message to routing key of its partition through per-message publish of an underlying publisher.
+ */
+class DefaultPartitionedPublisher implements PartitionedPublisher, Serializable {
+
+    private final Publisher publisher;
+    private final String exchange;
+    private final String[] partitionNames;
+
+    DefaultPartitionedPublisher(Publisher publisher, String exchange, String baseName, int partitions) {
+
+        this.publisher = publisher;
+        this.exchange = exchange;
+        this.partitionNames = new String[partitions];
+        for (int i = 0; i < partitions; i++) {
+            partitionNames[i] = Partitions.name(baseName, i);
+        }
+    }
+
+    @Override
+    public boolean publish(String key, String json) {
+        return publish(key, null, json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public boolean publish(String key, byte[] data) {
+        return publish(key, null, data);
+    }
+
+    @Override
+    public boolean publish(String key, AMQP.BasicProperties properties, byte[] data) {
+        return publisher.basicPublish(exchange, partitionNames[partitionOf(key)], properties, data);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> publishAsync(String key, byte[] data) {
+        return publishAsync(key, null, data);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> publishAsync(String key, AMQP.BasicProperties properties, byte[] data) {
+        return publisher.publishAsync(exchange, partitionNames[partitionOf(key)], properties, data);
+    }
+
+    @Override
+    public int partitionOf(String key) {
+        return Partitions.partitionOf(key, partitionNames.length);
+    }
+
+    @Override
+    public int getPartitionCount() {
+        return partitionNames.length;
+    }
+
+    @Override
+    public boolean isChannelOpen() {
+        return publisher.isChannelOpen();
+    }
+
+    @Override
+    public void closeChannel() {
+        publisher.closeChannel();
+    }
+}
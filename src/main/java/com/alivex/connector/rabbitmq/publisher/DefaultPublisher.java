@@ -1,21 +1,40 @@
 package com.alivex.connector.rabbitmq.publisher;
 
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.BlockedListener;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.Recoverable;
+import com.rabbitmq.client.RecoveryListener;
 import com.rabbitmq.client.ReturnListener;
 import com.rabbitmq.client.ShutdownListener;
 import com.alivex.connector.rabbitmq.ConfirmResponseConfigurer;
+import com.alivex.connector.rabbitmq.ConfirmTracker;
+import com.alivex.connector.rabbitmq.ConfirmTracker.Confirmation;
 import com.alivex.connector.rabbitmq.ConnectionIdConfigurer;
 import com.alivex.connector.rabbitmq.ConnectionManager;
 import com.alivex.connector.rabbitmq.DefaultConfirmListener;
 import com.alivex.connector.rabbitmq.DefaultReturnListener;
 import com.alivex.connector.rabbitmq.DefaultShutdownListener;
+import com.alivex.connector.rabbitmq.compression.Compression;
+import com.alivex.connector.rabbitmq.exception.PublishRejectedException;
+import com.alivex.connector.rabbitmq.exception.PublishRejectedException.Reason;
+import com.alivex.connector.rabbitmq.metrics.ConnectorMetrics;
+import com.alivex.connector.rabbitmq.publisher.RouteCache.Route;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
 import java.util.UUID;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import com.alivex.connector.rabbitmq.OperationIdConfigurer;
@@ -26,8 +45,17 @@ public class DefaultPublisher implements Publisher, Serializable {
 
     private static final Logger LOG = Logger.getLogger(DefaultPublisher.class.getName());
 
+    private static final int DEFAULT_TIMEOUT = 200;
+    private static final int DEFAULT_BATCH_TIMEOUT = 5000;
+    private static final int REPLAY_TIMEOUT = 5000;
+
     private final String EXCHANGE_NAME;
     private final String ROUTING_KEY;
+    private transient Route defaultRoute;
+    private transient RouteCache routeCache;
+    private final int maxBatchSize;
+    private final int confirmTimeout;
+    private final ConnectorMetrics metrics;
 
     private final ConnectionManager connectionManager;
     private final ShutdownListener shutdownListener;
@@ -35,37 +63,432 @@ public class DefaultPublisher implements Publisher, Serializable {
     private final ConfirmListener confirmListener;
 
     private String id;
-    private Channel channel;
-    private final BlockingQueue<Boolean> futureResult = new ArrayBlockingQueue<>(1);
+
+    //Channel, confirms and connection listeners belong to a running instance and are not serialized,
+    //a deserialized publisher open a new channel on first publish.
+    private transient volatile Channel channel;
+    private transient ConfirmTracker confirmTracker;
+    private transient Object publishLock;
+
+    //Permit is taken before write and give back when confirm complete, null when in-flight is unlimited.
+    private final int maxInFlight;
+    private transient Semaphore inFlightPermits;
+    private final BlockedListener blockedListener = new ConnectionBlockedListener();
+    private final RecoveryListener recoveryListener = new SpoolRecoveryListener();
+    private transient Connection listenerConnection;
+    private transient volatile boolean blocked;
+
+    //Null when spool is not enabled, spool is not serialized the same as spool directory of builder.
+    private transient PublishSpool spool;
+
+    private final Compression compression;
+    private final int compressionThreshold;
+    private final String contentType;
+
+    //Null when neither content type nor compression is set.
+    private transient AMQP.BasicProperties properties;
+    private transient AMQP.BasicProperties compressedProperties;
 
     DefaultPublisher(String EXCHANGE_NAME,
                      String ROUTING_KEY,
                      ConnectionManager connectionManager,
                      ShutdownListener shutdownListener,
                      ReturnListener returnListener,
-                     ConfirmListener confirmListener) {
+                     ConfirmListener confirmListener,
+                     int maxBatchSize,
+                     int maxInFlight,
+                     int confirmTimeout,
+                     PublishSpool spool,
+                     Compression compression,
+                     int compressionThreshold,
+                     String contentType,
+                     RouteCache routeCache,
+                     ConnectorMetrics metrics) {
 
         this.EXCHANGE_NAME = EXCHANGE_NAME;
         this.ROUTING_KEY = ROUTING_KEY;
+        this.routeCache = routeCache;
+        this.maxBatchSize = maxBatchSize;
+        this.maxInFlight = maxInFlight;
+        this.confirmTimeout = confirmTimeout;
+        this.spool = spool;
+        this.compression = compression;
+        this.compressionThreshold = compressionThreshold;
+        this.contentType = contentType;
+        this.metrics = metrics;
         this.connectionManager = connectionManager;
         this.shutdownListener = shutdownListener;
         this.returnListener = returnListener;
         this.confirmListener = confirmListener;
+        initState();
+    }
+
+    private void initState() {
+
+        defaultRoute = new Route(EXCHANGE_NAME, ROUTING_KEY);
+        properties = contentType == null ? null : new AMQP.BasicProperties.Builder().contentType(contentType).build();
+        compressedProperties = new AMQP.BasicProperties.Builder().contentType(contentType).contentEncoding(compression.getContentEncoding()).build();
+        inFlightPermits = maxInFlight > 0 ? new Semaphore(maxInFlight) : null;
+        confirmTracker = new ConfirmTracker(metrics);
+        publishLock = new Object();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+
+        in.defaultReadObject();
+        initState();
+        routeCache = new RouteCache(connectionManager);
     }
 
     @Override
     public boolean basicPublish(String json) {
-        return publishData(json, 200);
+        return publishData(defaultRoute, null, encode(json), DEFAULT_TIMEOUT);
     }
     
     @Override
     public boolean basicPublish(String json, int timeout) {
-        return publishData(json, timeout);
+        return publishData(defaultRoute, null, encode(json), timeout);
+    }
+
+    @Override
+    public boolean basicPublish(byte[] data) {
+        return publishData(defaultRoute, null, data, DEFAULT_TIMEOUT);
+    }
+
+    @Override
+    public boolean basicPublish(byte[] data, int timeout) {
+        return publishData(defaultRoute, null, data, timeout);
+    }
+
+    @Override
+    public boolean basicPublish(byte[] data, int offset, int length) {
+        return publishData(defaultRoute, null, toBody(data, offset, length), DEFAULT_TIMEOUT);
+    }
+
+    @Override
+    public boolean basicPublish(ByteBuffer data) {
+        return publishData(defaultRoute, null, toBody(data), DEFAULT_TIMEOUT);
+    }
+
+    @Override
+    public boolean basicPublish(ByteBuffer data, int timeout) {
+        return publishData(defaultRoute, null, toBody(data), timeout);
+    }
+
+    @Override
+    public List<Boolean> basicPublishBatch(List<String> jsons) {
+        return publishBatchData(jsons, DEFAULT_BATCH_TIMEOUT);
+    }
+
+    @Override
+    public List<Boolean> basicPublishBatch(List<String> jsons, int timeout) {
+        return publishBatchData(jsons, timeout);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> publishAsync(String json) {
+        return publishAsyncData(defaultRoute, null, encode(json), confirmTimeout);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> publishAsync(String json, int timeout) {
+        return publishAsyncData(defaultRoute, null, encode(json), timeout);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> publishAsync(byte[] data) {
+        return publishAsyncData(defaultRoute, null, data, confirmTimeout);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> publishAsync(byte[] data, int timeout) {
+        return publishAsyncData(defaultRoute, null, data, timeout);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> tryPublish(String json) {
+        return tryPublishData(encode(json));
     }
 
-    private boolean publishData(String json, int timeout) {
+    @Override
+    public CompletableFuture<Boolean> tryPublish(byte[] data) {
+        return tryPublishData(data);
+    }
+
+    @Override
+    public boolean basicPublish(String exchange, String routingKey, AMQP.BasicProperties properties, byte[] data) {
+        return basicPublish(exchange, routingKey, properties, data, DEFAULT_TIMEOUT);
+    }
+
+    @Override
+    public boolean basicPublish(String exchange, String routingKey, AMQP.BasicProperties properties, byte[] data, int timeout) {
+
+        Route route = route(exchange, routingKey);
+        return route != null && publishData(route, properties, data, timeout);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> publishAsync(String exchange, String routingKey, AMQP.BasicProperties properties, byte[] data) {
+        return publishAsync(exchange, routingKey, properties, data, confirmTimeout);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> publishAsync(String exchange, String routingKey, AMQP.BasicProperties properties, byte[] data, int timeout) {
+
+        Route route = route(exchange, routingKey);
+        return route == null ? CompletableFuture.completedFuture(false) : publishAsyncData(route, properties, data, timeout);
+    }
+
+    /**
+     * @return interned route, null when exchange does not exist.
+     */
+    private Route route(String exchange, String routingKey) {
+
+        try {
+            return routeCache.get(exchange, routingKey);
+        } catch (Exception e) {
+            LOG.log(Level.SEVERE, "Failed to publish data to broker", e);
+            return null;
+        }
+    }
+
+    private CompletableFuture<Boolean> tryPublishData(byte[] body) {
+
+        if (blocked) {
+            return rejected(Reason.CONNECTION_BLOCKED);
+        }
+
+        try {
+
+            Confirmation confirmation = send(defaultRoute, null, body, 0);
+            confirmTracker.expireAfter(confirmation, confirmTimeout);
+            return confirmation;
+
+        } catch (PublishRejectedException e) {
+            return rejected(e.getReason());
+        } catch (Exception e) {
+            LOG.log(Level.SEVERE, "Failed to publish data to broker", e);
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+
+    private CompletableFuture<Boolean> rejected(Reason reason) {
+
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.log(Level.FINE, "Publish rejected, reason:{0}", reason);
+        }
+
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        future.completeExceptionally(new PublishRejectedException(reason));
+        return future;
+    }
+
+    private CompletableFuture<Boolean> publishAsyncData(Route route, AMQP.BasicProperties properties, byte[] body, int timeout) {
+
+        try {
+
+            Confirmation confirmation = send(route, properties, body, DEFAULT_TIMEOUT);
+            confirmTracker.expireAfter(confirmation, timeout);
+            return confirmation;
+
+        } catch (PublishRejectedException e) {
+            LOG.log(Level.WARNING, "Publish rejected, reason:{0}", e.getReason());
+            return CompletableFuture.completedFuture(false);
+        } catch (Exception e) {
+            LOG.log(Level.SEVERE, "Failed to publish data to broker", e);
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+
+    private boolean publishData(Route route, AMQP.BasicProperties properties, byte[] body, int timeout) {
 
         Boolean isConfirm = false;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        try {
+
+            //Timer wheel complete confirmation as false when timeout is reached, late ack is then ignored.
+            //Time spent waiting for in-flight window count toward timeout.
+            Confirmation confirmation = send(route, properties, body, timeout);
+            confirmTracker.expireAfter(confirmation, remainingMillis(deadline));
+            isConfirm = confirmation.get();
+
+            if (confirmation.isExpired()) {
+                LOG.log(Level.WARNING, "Timeout waiting for publisher confirm, sequence number:{0}", confirmation.getSequenceNumber());
+            }
+
+            //Message nack or not confirmed in time is kept in spool and replayed.
+            isConfirm |= spool != null;
+
+        } catch (SpooledException e) {
+            LOG.log(Level.WARNING, "Failed to publish data to broker, message is kept in spool for replay", e.getCause());
+            isConfirm = true;
+        } catch (PublishRejectedException e) {
+            LOG.log(Level.WARNING, "Publish rejected, reason:{0}", e.getReason());
+        } catch (Exception e) {
+            LOG.log(Level.SEVERE, "Failed to publish data to broker", e);
+        }
+
+        return isConfirm;
+    }
+
+    /**
+     * @return milliseconds left before deadline, at least 1 so a confirm is never waited for without timeout.
+     */
+    private static long remainingMillis(long deadline) {
+        return Math.max(TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()), 1);
+    }
+
+    private List<Boolean> publishBatchData(List<String> jsons, int timeout) {
+
+        List<Boolean> results = new ArrayList<>(jsons.size());
+
+        for (int from = 0; from < jsons.size(); from += maxBatchSize) {
+            int to = Math.min(from + maxBatchSize, jsons.size());
+            results.addAll(publishBatchChunk(jsons.subList(from, to), timeout));
+        }
+
+        return results;
+    }
+
+    /**
+     * Write a whole chunk to channel then wait once for all confirms of the chunk,
+     * waiting for in-flight window and for confirms share one timeout.
+     */
+    private List<Boolean> publishBatchChunk(List<String> jsons, int timeout) {
+
+        List<Confirmation> confirmations = new ArrayList<>(jsons.size());
+        List<Confirmation> outstanding = new ArrayList<>(jsons.size());
+        BitSet spooled = new BitSet();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        for (String json : jsons) {
+            try {
+
+                Confirmation confirmation = send(defaultRoute, null, encode(json), remainingMillis(deadline));
+                confirmTracker.expireAfter(confirmation, remainingMillis(deadline));
+                confirmations.add(confirmation);
+                outstanding.add(confirmation);
+
+            } catch (SpooledException e) {
+                LOG.log(Level.WARNING, "Failed to publish data to broker, message is kept in spool for replay", e.getCause());
+                spooled.set(confirmations.size());
+                confirmations.add(null);
+            } catch (PublishRejectedException e) {
+                LOG.log(Level.WARNING, "Publish rejected, reason:{0}", e.getReason());
+                confirmations.add(null);
+            } catch (Exception e) {
+                LOG.log(Level.SEVERE, "Failed to publish data to broker", e);
+                confirmations.add(null);
+            }
+        }
+
+        try {
+
+            CompletableFuture.allOf(outstanding.toArray(new CompletableFuture<?>[outstanding.size()])).get(remainingMillis(deadline), TimeUnit.MILLISECONDS);
+
+        } catch (TimeoutException e) {
+            //Timer wheel resolution may be behind deadline, stop waiting now.
+            outstanding.forEach(confirmTracker::expire);
+        } catch (Exception e) {
+            LOG.log(Level.SEVERE, "Failed to wait for publisher confirm of batch", e);
+        }
+
+        List<Boolean> results = new ArrayList<>(confirmations.size());
+        int expiredCount = 0;
+        for (int i = 0; i < confirmations.size(); i++) {
+
+            Confirmation confirmation = confirmations.get(i);
+            if (confirmation == null) {
+                results.add(spooled.get(i));
+                continue;
+            }
+
+            if (confirmation.isExpired()) {
+                expiredCount++;
+            }
+            results.add(confirmation.getNow(false) || spool != null);
+        }
+
+        if (expiredCount > 0) {
+            LOG.log(Level.WARNING, "Timeout waiting for publisher confirm of batch, size:{0}, timeout count:{1}", new Object[]{jsons.size(), expiredCount});
+        }
+
+        return results;
+    }
+
+    /**
+     * Take an in-flight permit then publish data without waiting for confirm, permit is give back when confirm complete.
+     * @param body
+     * @param permitTimeout maximum time in milliseconds to wait for in-flight window, 0 to not wait.
+     * @throws PublishRejectedException when in-flight window is still full after permit timeout.
+     */
+    private Confirmation send(Route route, AMQP.BasicProperties properties, byte[] body, long permitTimeout) throws IOException {
+
+        if (inFlightPermits == null) {
+            return write(route, properties, body);
+        }
+
+        if (!acquirePermit(permitTimeout)) {
+            throw new PublishRejectedException(Reason.WINDOW_FULL);
+        }
+
+        Confirmation confirmation;
+        try {
+            confirmation = write(route, properties, body);
+        } catch (IOException | RuntimeException e) {
+            inFlightPermits.release();
+            throw e;
+        }
+
+        confirmation.whenComplete((isConfirm, e) -> inFlightPermits.release());
+        return confirmation;
+    }
+
+    private boolean acquirePermit(long permitTimeout) {
+
+        if (permitTimeout <= 0) {
+            return inFlightPermits.tryAcquire();
+        }
+
+        try {
+            return inFlightPermits.tryAcquire(permitTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Publish data without waiting for confirm, sequence number and publish must be atomic per channel
+     * so a confirm always pair with the right message.
+     * When spool is enabled, data is recorded before send and kept for replay when send fail,
+     * a running replay is waited for so a new message is never send ahead of older unconfirmed ones.
+     * @throws SpooledException when send fail after data is recorded.
+     */
+    private Confirmation write(Route route, AMQP.BasicProperties properties, byte[] body) throws IOException {
+
+        //Compress outside publish lock, spool keep original data and compress again on replay.
+        byte[] payload = compress(properties, body);
+        AMQP.BasicProperties propertiesToUse = propertiesOf(properties, body, payload);
+
+        synchronized (publishLock) {
+
+            if (spool == null) {
+                return write(route.getExchange(), route.getRoutingKey(), propertiesToUse, payload, null);
+            }
+
+            spool.awaitReplay();
+            SpoolRecord record = spool.append(route.getExchange(), route.getRoutingKey(), body);
+            try {
+                return write(route.getExchange(), route.getRoutingKey(), propertiesToUse, payload, record);
+            } catch (IOException | RuntimeException e) {
+                throw new SpooledException(e);
+            }
+        }
+    }
+
+    private Confirmation write(String exchange, String routingKey, AMQP.BasicProperties properties, byte[] body, SpoolRecord record) throws IOException {
 
         try {
 
@@ -73,33 +496,156 @@ public class DefaultPublisher implements Publisher, Serializable {
                 createChannel();
             }
 
-            if (LOG.isLoggable(Level.FINE)) {
-                LOG.log(Level.FINE, "Publish data:{0}", new Object[]{json});
+            Confirmation confirmation = confirmTracker.register(channel.getNextPublishSeqNo());
+            try {
+                channel.basicPublish(exchange, routingKey, true, properties, body);
+            } catch (IOException | RuntimeException e) {
+                confirmTracker.fail(confirmation);
+                throw e;
+            }
+
+            metrics.recordPublish(System.nanoTime() - confirmation.getPublishNanos());
+            if (record != null) {
+                confirmation.thenAccept(isConfirm -> spool.complete(record, isConfirm));
+            }
+            return confirmation;
+
+        } catch (IOException | RuntimeException e) {
+            if (record != null) {
+                record.release();
             }
+            throw e;
+        }
+    }
+
+    /**
+     * Send a spooled record again, called on replay with publish lock held.
+     * Record take a permit of in-flight window like any publish, a record not confirmed in time is given back for next replay.
+     * @param record
+     * @return false when record cannot be send, replay is then stopped.
+     */
+    private boolean replay(SpoolRecord record) {
+
+        if (inFlightPermits != null && !acquirePermit(REPLAY_TIMEOUT)) {
+            LOG.log(Level.WARNING, "In-flight window is full, replay of spooled message is postponed to next recovery");
+            return false;
+        }
+
+        try {
 
-            channel.basicPublish(EXCHANGE_NAME, ROUTING_KEY, true, null, json.getBytes(StandardCharsets.UTF_8.name()));
+            byte[] body = record.readBody();
+            byte[] payload = compress(null, body);
 
-            Boolean poll = futureResult.poll(timeout, TimeUnit.MILLISECONDS);
-            if (poll != null) {
-                isConfirm = poll;
+            Confirmation confirmation = write(record.getExchange(), record.getRoutingKey(), propertiesOf(null, body, payload), payload, record);
+            if (inFlightPermits != null) {
+                confirmation.whenComplete((isConfirm, e) -> inFlightPermits.release());
             }
+            confirmTracker.expireAfter(confirmation, REPLAY_TIMEOUT);
+            return true;
 
         } catch (Exception e) {
-            LOG.log(Level.SEVERE, "Failed to publish data to broker", e);
+            if (inFlightPermits != null) {
+                inFlightPermits.release();
+            }
+            LOG.log(Level.WARNING, "Failed to replay spooled message, replay is postponed to next recovery", e);
+            return false;
         }
+    }
 
-        return isConfirm;
+    /**
+     * Replay spool holding publish lock, new publish of this publisher wait until replay is done.
+     */
+    private void replaySpool() {
+
+        synchronized (publishLock) {
+            spool.replay(this::replay);
+        }
+    }
+
+    /**
+     * @return compressed data, or data itself when compression is disabled, data is smaller than threshold or already encoded.
+     */
+    private byte[] compress(AMQP.BasicProperties properties, byte[] body) {
+
+        if (compression == Compression.NONE || body.length < compressionThreshold) {
+            return body;
+        }
+
+        if (properties != null && properties.getContentEncoding() != null) {
+            return body;
+        }
+
+        return compression.compress(body);
+    }
+
+    /**
+     * Properties of publisher are used when message has none, otherwise content type and encoding are added to message properties.
+     */
+    private AMQP.BasicProperties propertiesOf(AMQP.BasicProperties messageProperties, byte[] body, byte[] payload) {
+
+        boolean compressed = payload != body;
+        if (messageProperties == null) {
+            return compressed ? compressedProperties : properties;
+        }
+
+        boolean addContentType = contentType != null && messageProperties.getContentType() == null;
+        if (!compressed && !addContentType) {
+            return messageProperties;
+        }
+
+        AMQP.BasicProperties.Builder builder = messageProperties.builder();
+        if (addContentType) {
+            builder.contentType(contentType);
+        }
+        if (compressed) {
+            builder.contentEncoding(compression.getContentEncoding());
+        }
+        return builder.build();
+    }
+
+    private byte[] encode(String json) {
+
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.log(Level.FINE, "Publish data:{0}", new Object[]{json});
+        }
+
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Amqp client write a body array as a whole, a slice is copied only when it does not cover an entire array.
+     */
+    private byte[] toBody(byte[] data, int offset, int length) {
+
+        if (offset == 0 && length == data.length) {
+            return data;
+        }
+
+        return Arrays.copyOfRange(data, offset, offset + length);
+    }
+
+    private byte[] toBody(ByteBuffer data) {
+
+        if (data.hasArray() && data.arrayOffset() + data.position() == 0 && data.remaining() == data.array().length) {
+            return data.array();
+        }
+
+        byte[] body = new byte[data.remaining()];
+        data.duplicate().get(body);
+        return body;
     }
 
     @Override
     public boolean isChannelOpen() {
 
         try {
-            
-            if (channel == null) {
-                createChannel();
+
+            synchronized (publishLock) {
+                if (channel == null) {
+                    createChannel();
+                }
             }
-            
+
         } catch (IOException iOException) {
             LOG.log(Level.WARNING, "Failed to open channel", iOException);
         }
@@ -110,17 +656,35 @@ public class DefaultPublisher implements Publisher, Serializable {
     @Override
     public void closeChannel() {
 
+        synchronized (publishLock) {
+            removeConnectionListeners();
+        }
+
         closeChannel(channel);
         LOG.log(Level.INFO, "Publisher id:{0} is successfully close", id);
     }
     
     private void createChannel() throws IOException {
-        channel = createChannel(futureResult, getId());
+
+        channel = createChannel(confirmTracker, getId());
+
+        //Replay before first publish on new channel so spooled message keep their order.
+        if (spool != null) {
+            replaySpool();
+        }
     }
 
-    private Channel createChannel(final BlockingQueue<Boolean> futureResult, String publisherId) throws IOException {
+    private Channel createChannel(final ConfirmTracker confirmTracker, String publisherId) throws IOException {
 
-        Channel publishChannel = connectionManager.getPublisherConnection().createChannel();
+        //Sharded connection manager may return a different connection on every call, keep the one channel belong to.
+        Connection connection = connectionManager.getPublisherConnection();
+        Channel publishChannel = connection.createChannel();
+        publishChannel.confirmSelect();
+        addConnectionListeners(connection);
+
+        //Sequence number start over after channel shutdown or recovery, outstanding confirm will never arrive.
+        publishChannel.addShutdownListener(e -> confirmTracker.failAll());
+        publishChannel.addReturnListener((replyCode, replyText, exchange, routingKey, properties, body) -> metrics.recordReturn());
 
         if (shutdownListener instanceof DefaultShutdownListener) {
             setDefaultShutdownListenerToChannel(publishChannel, publisherId);
@@ -129,28 +693,61 @@ public class DefaultPublisher implements Publisher, Serializable {
         }
 
         if (returnListener instanceof DefaultReturnListener) {
-            setDefaultReturnListenerToChannel(publishChannel, connectionManager.getPublisherConnection().getId(), publisherId);
+            setDefaultReturnListenerToChannel(publishChannel, connection.getId(), publisherId);
         } else {
             setUserDefineReturnListenerToChannel(publishChannel);
         }
 
         if (confirmListener instanceof DefaultConfirmListener) {
-            setDefaultConfirmListenerToChanel(publishChannel, futureResult, publisherId);
+            setDefaultConfirmListenerToChanel(publishChannel, confirmTracker, publisherId);
         } else {
-            setUserDefineConfirmListenerToChanel(publishChannel);
+            setUserDefineConfirmListenerToChanel(publishChannel, confirmTracker);
         }
 
         return publishChannel;
     }
 
-    private void setDefaultConfirmListenerToChanel(Channel channel, final BlockingQueue<Boolean> futureResult, String operatioId) {
-        ((ConfirmResponseConfigurer) confirmListener).responseTo(futureResult);
+    /**
+     * Follow connection.blocked and recovery of the connection channel belong to, listeners are move when channel is create on another connection.
+     */
+    private void addConnectionListeners(Connection connection) {
+
+        if (connection == listenerConnection) {
+            return;
+        }
+
+        removeConnectionListeners();
+
+        blocked = false;
+        connection.addBlockedListener(blockedListener);
+        if (spool != null && connection instanceof Recoverable) {
+            ((Recoverable) connection).addRecoveryListener(recoveryListener);
+        }
+        listenerConnection = connection;
+    }
+
+    private void removeConnectionListeners() {
+
+        if (listenerConnection == null) {
+            return;
+        }
+
+        listenerConnection.removeBlockedListener(blockedListener);
+        if (spool != null && listenerConnection instanceof Recoverable) {
+            ((Recoverable) listenerConnection).removeRecoveryListener(recoveryListener);
+        }
+        listenerConnection = null;
+    }
+
+    private void setDefaultConfirmListenerToChanel(Channel channel, final ConfirmTracker confirmTracker, String operatioId) {
+        ((ConfirmResponseConfigurer) confirmListener).responseTo(confirmTracker);
         ((OperationIdConfigurer) confirmListener).setOperationId(operatioId);
         channel.addConfirmListener(confirmListener);
     }
 
-    private void setUserDefineConfirmListenerToChanel(Channel channel) {
+    private void setUserDefineConfirmListenerToChanel(Channel channel, final ConfirmTracker confirmTracker) {
         channel.addConfirmListener(confirmListener);
+        channel.addConfirmListener(confirmTracker);
     }
 
     private void setDefaultReturnListenerToChannel(Channel channel, String connectionId, String operationId) {
@@ -178,7 +775,7 @@ public class DefaultPublisher implements Publisher, Serializable {
 
     private void closeChannel(Channel channel) {
         
-        if (!channel.isOpen()) {
+        if (channel == null || !channel.isOpen()) {
             return;
         }
 
@@ -198,4 +795,45 @@ public class DefaultPublisher implements Publisher, Serializable {
         id = generateRandomId();
         return id;
     }
+
+    private class ConnectionBlockedListener implements BlockedListener, Serializable {
+
+        @Override
+        public void handleBlocked(String reason) throws IOException {
+            blocked = true;
+            LOG.log(Level.WARNING, "Publisher connection is blocked by broker, publisher id:{0}, reason:{1}", new Object[]{id, reason});
+        }
+
+        @Override
+        public void handleUnblocked() throws IOException {
+            blocked = false;
+            LOG.log(Level.INFO, "Publisher connection is unblocked, publisher id:{0}", id);
+        }
+    }
+
+    /**
+     * Channel is recovered before recovery listener is invoke, spool is replayed on the recovered channel by recovery thread.
+     */
+    private class SpoolRecoveryListener implements RecoveryListener, Serializable {
+
+        @Override
+        public void handleRecovery(Recoverable recoverable) {
+            replaySpool();
+        }
+
+        @Override
+        public void handleRecoveryStarted(Recoverable recoverable) {
+
+        }
+    }
+
+    /**
+     * Send failed after message is recorded in spool, message is replayed later.
+     */
+    private static class SpooledException extends IOException {
+
+        private SpooledException(Exception cause) {
+            super(cause);
+        }
+    }
 }
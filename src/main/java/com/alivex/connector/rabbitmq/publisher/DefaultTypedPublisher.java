@@ -0,0 +1,86 @@
+package com.alivex.connector.rabbitmq.publisher;
+
+import com.alivex.connector.rabbitmq.codec.Codec;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Encode message object with codec then publish it through a publisher that set content type of codec.
+ * @param <T>
+ */
+class DefaultTypedPublisher<T> implements TypedPublisher<T>, Serializable {
+
+    private static final Logger LOG = Logger.getLogger(DefaultTypedPublisher.class.getName());
+    private final Publisher publisher;
+    private final Codec<T> codec;
+
+    DefaultTypedPublisher(Publisher publisher, Codec<T> codec) {
+        this.publisher = publisher;
+        this.codec = codec;
+    }
+
+    @Override
+    public boolean publish(T value) {
+
+        byte[] data = encode(value);
+        return data != null && publisher.basicPublish(data);
+    }
+
+    @Override
+    public boolean publish(T value, int timeout) {
+
+        byte[] data = encode(value);
+        return data != null && publisher.basicPublish(data, timeout);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> publishAsync(T value) {
+
+        byte[] data = encode(value);
+        return data == null ? CompletableFuture.completedFuture(false) : publisher.publishAsync(data);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> publishAsync(T value, int timeout) {
+
+        byte[] data = encode(value);
+        return data == null ? CompletableFuture.completedFuture(false) : publisher.publishAsync(data, timeout);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> tryPublish(T value) {
+
+        byte[] data = encode(value);
+        return data == null ? CompletableFuture.completedFuture(false) : publisher.tryPublish(data);
+    }
+
+    @Override
+    public boolean isChannelOpen() {
+        return publisher.isChannelOpen();
+    }
+
+    @Override
+    public void closeChannel() {
+        publisher.closeChannel();
+    }
+
+    /**
+     * @return encoded data, null when codec failed.
+     */
+    private byte[] encode(T value) {
+
+        EncodeBuffer buffer = EncodeBuffer.get();
+        try {
+            codec.encode(value, buffer);
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.SEVERE, "Failed to encode message, content type:" + codec.getContentType(), e);
+            buffer.release();
+            return null;
+        }
+
+        return buffer.release();
+    }
+}
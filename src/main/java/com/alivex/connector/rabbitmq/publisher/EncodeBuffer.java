@@ -0,0 +1,44 @@
+package com.alivex.connector.rabbitmq.publisher;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Output buffer reused by codec of every typed publisher on a thread.
+ * Amqp client write a body array as a whole, so encoded data is copied once to an array of exact size.
+ */
+final class EncodeBuffer extends ByteArrayOutputStream {
+
+    private static final int INITIAL_SIZE = 8 * 1024;
+
+    //A buffer grown by a large message is not kept, it would hold memory for the life of thread.
+    private static final int MAX_RETAINED_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<EncodeBuffer> BUFFERS = ThreadLocal.withInitial(EncodeBuffer::new);
+
+    private EncodeBuffer() {
+        super(INITIAL_SIZE);
+    }
+
+    /**
+     * @return empty buffer of current thread.
+     */
+    static EncodeBuffer get() {
+
+        EncodeBuffer buffer = BUFFERS.get();
+        buffer.reset();
+        return buffer;
+    }
+
+    /**
+     * Copy encoded data out and drop buffer of current thread when it grew too large.
+     * @return
+     */
+    byte[] release() {
+
+        byte[] data = toByteArray();
+        if (buf.length > MAX_RETAINED_SIZE) {
+            BUFFERS.remove();
+        }
+        return data;
+    }
+}
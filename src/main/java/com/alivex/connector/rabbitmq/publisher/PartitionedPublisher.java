@@ -0,0 +1,33 @@
+package com.alivex.connector.rabbitmq.publisher;
+
+import com.rabbitmq.client.AMQP;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Publish message to one of partitions selected by jump consistent hash of message key.
+ * Messages of the same key always go to the same partition, adding a partition move only a minimal set of keys.
+ */
+public interface PartitionedPublisher {
+
+    public boolean publish(String key, String json);
+    public boolean publish(String key, byte[] data);
+    public boolean publish(String key, AMQP.BasicProperties properties, byte[] data);
+
+    /**
+     * Publish message to partition of key without waiting for broker confirm.
+     * @param key
+     * @param data
+     * @return future completed with true when broker ack, false when broker nack or publish failed.
+     */
+    public CompletableFuture<Boolean> publishAsync(String key, byte[] data);
+    public CompletableFuture<Boolean> publishAsync(String key, AMQP.BasicProperties properties, byte[] data);
+
+    /**
+     * @param key
+     * @return partition of key, from 0 to partition count - 1.
+     */
+    public int partitionOf(String key);
+    public int getPartitionCount();
+    public boolean isChannelOpen();
+    public void closeChannel();
+}
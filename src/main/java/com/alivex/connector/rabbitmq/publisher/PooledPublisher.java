@@ -0,0 +1,373 @@
+package com.alivex.connector.rabbitmq.publisher;
+
+import com.rabbitmq.client.AMQP;
+import com.alivex.connector.rabbitmq.ConfirmTracker.Confirmation;
+import com.alivex.connector.rabbitmq.exception.PublishRejectedException;
+import com.alivex.connector.rabbitmq.exception.PublishRejectedException.Reason;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Thread-safe publisher backed by a pool of channels on publisher connection.
+ * Every pooled channel has its own confirm tracking, a request thread lease a channel only while writing a message
+ * and wait for confirm after lease is released, a batch keep its channel until its confirms arrive.
+ * Waiting for a lease count toward timeout of publish.
+ * Broken channel is replaced when a lease validate it.
+ */
+public class PooledPublisher implements Publisher, Serializable {
+
+    private static final Logger LOG = Logger.getLogger(PooledPublisher.class.getName());
+
+    private static final int DEFAULT_TIMEOUT = 200;
+    private static final int DEFAULT_BATCH_TIMEOUT = 5000;
+
+    //Channels are not serialized, a deserialized pool open channels from builder on demand.
+    private final PublisherBuilder builder;
+    private final String contentType;
+    private final int maxSize;
+    private transient ConcurrentLinkedQueue<DefaultPublisher> idlePublishers;
+    private transient Semaphore leases;
+    private volatile boolean closed;
+
+    PooledPublisher(int minSize, int maxSize, PublisherBuilder builder, String contentType) {
+
+        this.builder = builder;
+        this.contentType = contentType;
+        this.maxSize = maxSize;
+        initState();
+
+        for (int i = 0; i < minSize; i++) {
+            DefaultPublisher publisher = builder.buildDefaultPublisher(contentType);
+            if (publisher.isChannelOpen()) {
+                idlePublishers.offer(publisher);
+            }
+        }
+    }
+
+    private void initState() {
+        idlePublishers = new ConcurrentLinkedQueue<>();
+        leases = new Semaphore(maxSize);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+
+        in.defaultReadObject();
+        initState();
+    }
+
+    @Override
+    public boolean basicPublish(String json) {
+        return basicPublish(json, DEFAULT_TIMEOUT);
+    }
+
+    @Override
+    public boolean basicPublish(String json, int timeout) {
+        return publishAndWait(timeout, (publisher, remaining) -> publisher.publishAsync(json, remaining));
+    }
+
+    @Override
+    public boolean basicPublish(byte[] data) {
+        return basicPublish(data, DEFAULT_TIMEOUT);
+    }
+
+    @Override
+    public boolean basicPublish(byte[] data, int timeout) {
+        return publishAndWait(timeout, (publisher, remaining) -> publisher.publishAsync(data, remaining));
+    }
+
+    @Override
+    public boolean basicPublish(byte[] data, int offset, int length) {
+
+        byte[] body = offset == 0 && length == data.length ? data : Arrays.copyOfRange(data, offset, offset + length);
+        return basicPublish(body, DEFAULT_TIMEOUT);
+    }
+
+    @Override
+    public boolean basicPublish(ByteBuffer data) {
+        return basicPublish(data, DEFAULT_TIMEOUT);
+    }
+
+    @Override
+    public boolean basicPublish(ByteBuffer data, int timeout) {
+
+        byte[] body = new byte[data.remaining()];
+        data.duplicate().get(body);
+        return basicPublish(body, timeout);
+    }
+
+    /**
+     * A batch wait for its confirms on the channel it is written to, channel is leased for the whole batch.
+     */
+    @Override
+    public List<Boolean> basicPublishBatch(List<String> jsons) {
+        return basicPublishBatch(jsons, DEFAULT_BATCH_TIMEOUT);
+    }
+
+    @Override
+    public List<Boolean> basicPublishBatch(List<String> jsons, int timeout) {
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        return withLease(timeout, () -> Collections.nCopies(jsons.size(), false),
+                publisher -> publisher.basicPublishBatch(jsons, remainingMillis(deadline)));
+    }
+
+    /**
+     * A channel is leased only while writing a message, confirm is tracked by the channel after lease is released.
+     */
+    @Override
+    public CompletableFuture<Boolean> publishAsync(String json) {
+        return withLease(DEFAULT_TIMEOUT, PooledPublisher::failed, publisher -> publisher.publishAsync(json));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> publishAsync(byte[] data) {
+        return withLease(DEFAULT_TIMEOUT, PooledPublisher::failed, publisher -> publisher.publishAsync(data));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> publishAsync(String json, int timeout) {
+        return withLease(DEFAULT_TIMEOUT, PooledPublisher::failed, publisher -> publisher.publishAsync(json, timeout));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> publishAsync(byte[] data, int timeout) {
+        return withLease(DEFAULT_TIMEOUT, PooledPublisher::failed, publisher -> publisher.publishAsync(data, timeout));
+    }
+
+    /**
+     * Rejected with window full when every channel of pool is leased, pool never wait in tryPublish.
+     */
+    @Override
+    public CompletableFuture<Boolean> tryPublish(String json) {
+        return withTryLease(publisher -> publisher.tryPublish(json));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> tryPublish(byte[] data) {
+        return withTryLease(publisher -> publisher.tryPublish(data));
+    }
+
+    @Override
+    public boolean basicPublish(String exchange, String routingKey, AMQP.BasicProperties properties, byte[] data) {
+        return basicPublish(exchange, routingKey, properties, data, DEFAULT_TIMEOUT);
+    }
+
+    @Override
+    public boolean basicPublish(String exchange, String routingKey, AMQP.BasicProperties properties, byte[] data, int timeout) {
+        return publishAndWait(timeout, (publisher, remaining) -> publisher.publishAsync(exchange, routingKey, properties, data, remaining));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> publishAsync(String exchange, String routingKey, AMQP.BasicProperties properties, byte[] data) {
+        return withLease(DEFAULT_TIMEOUT, PooledPublisher::failed, publisher -> publisher.publishAsync(exchange, routingKey, properties, data));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> publishAsync(String exchange, String routingKey, AMQP.BasicProperties properties, byte[] data, int timeout) {
+        return withLease(DEFAULT_TIMEOUT, PooledPublisher::failed, publisher -> publisher.publishAsync(exchange, routingKey, properties, data, timeout));
+    }
+
+    /**
+     * Lease a channel only to write a message then wait for its confirm after lease is released,
+     * so other threads can publish on the channel meanwhile. Waiting for lease count toward timeout.
+     * @param timeout in milliseconds for both lease and confirm.
+     * @param publish write a message with remaining timeout.
+     * @return true when broker ack within timeout.
+     */
+    private boolean publishAndWait(int timeout, BiFunction<DefaultPublisher, Integer, CompletableFuture<Boolean>> publish) {
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        CompletableFuture<Boolean> future = withLease(timeout, PooledPublisher::failed, publisher -> publish.apply(publisher, remainingMillis(deadline)));
+
+        try {
+
+            //Confirmation is completed as false by timer wheel when timeout is reached.
+            boolean isConfirm = future.get();
+            if (future instanceof Confirmation && ((Confirmation) future).isExpired()) {
+                LOG.log(Level.WARNING, "Timeout waiting for publisher confirm, sequence number:{0}", ((Confirmation) future).getSequenceNumber());
+            }
+            return isConfirm;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.log(Level.WARNING, "Interrupted while waiting for publisher confirm", e);
+        } catch (ExecutionException e) {
+            LOG.log(Level.SEVERE, "Failed to publish data to broker", e.getCause());
+        }
+
+        return false;
+    }
+
+    private static int remainingMillis(long deadline) {
+        return (int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+    }
+
+    /**
+     * Run action on a leased channel, lease is released when action return.
+     * @param leaseTimeout maximum time in milliseconds to wait for a channel.
+     * @param unavailable result when no channel can be leased.
+     * @param action
+     * @return
+     */
+    private <R> R withLease(long leaseTimeout, Supplier<R> unavailable, Function<DefaultPublisher, R> action) {
+
+        DefaultPublisher publisher = lease(leaseTimeout);
+        if (publisher == null) {
+            return unavailable.get();
+        }
+
+        try {
+            return action.apply(publisher);
+        } finally {
+            release(publisher);
+        }
+    }
+
+    private CompletableFuture<Boolean> withTryLease(Function<DefaultPublisher, CompletableFuture<Boolean>> action) {
+
+        DefaultPublisher publisher;
+        try {
+            publisher = tryLease();
+        } catch (PublishRejectedException e) {
+            return rejected(e);
+        }
+
+        if (publisher == null) {
+            return failed();
+        }
+
+        try {
+            return action.apply(publisher);
+        } finally {
+            release(publisher);
+        }
+    }
+
+    private static CompletableFuture<Boolean> failed() {
+        return CompletableFuture.completedFuture(false);
+    }
+
+    private CompletableFuture<Boolean> rejected(PublishRejectedException e) {
+
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
+    @Override
+    public boolean isChannelOpen() {
+
+        DefaultPublisher publisher = lease(DEFAULT_TIMEOUT);
+        if (publisher == null) {
+            return false;
+        }
+
+        release(publisher);
+        return true;
+    }
+
+    @Override
+    public void closeChannel() {
+
+        closed = true;
+
+        DefaultPublisher publisher;
+        while ((publisher = idlePublishers.poll()) != null) {
+            publisher.closeChannel();
+        }
+
+        LOG.log(Level.INFO, "Pooled publisher is successfully close");
+    }
+
+    /**
+     * Lease an open channel from pool, create a new one when no idle channel and pool is not full.
+     * @param timeout maximum time in milliseconds to wait for a channel when every channel of pool is leased.
+     * @return publisher of leased channel, null when pool is closed, timeout is reached or channel cannot be opened.
+     */
+    private DefaultPublisher lease(long timeout) {
+
+        if (closed) {
+            LOG.log(Level.WARNING, "Failed to lease channel, pool is closed");
+            return null;
+        }
+
+        try {
+            if (!leases.tryAcquire(Math.max(timeout, 0), TimeUnit.MILLISECONDS)) {
+                LOG.log(Level.WARNING, "Timeout waiting for channel lease, timeout:{0}", timeout);
+                return null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.log(Level.WARNING, "Interrupted while waiting for channel lease", e);
+            return null;
+        }
+
+        return takeIdleOrCreate();
+    }
+
+    /**
+     * Lease a channel only when one is available right away.
+     * @return publisher of leased channel, null when pool is closed or channel cannot be opened.
+     * @throws PublishRejectedException when every channel of pool is leased.
+     */
+    private DefaultPublisher tryLease() {
+
+        if (closed) {
+            return null;
+        }
+
+        if (!leases.tryAcquire()) {
+            throw new PublishRejectedException(Reason.WINDOW_FULL);
+        }
+
+        return takeIdleOrCreate();
+    }
+
+    private DefaultPublisher takeIdleOrCreate() {
+
+        DefaultPublisher publisher;
+        while ((publisher = idlePublishers.poll()) != null) {
+
+            if (publisher.isChannelOpen()) {
+                return publisher;
+            }
+
+            LOG.log(Level.FINE, "Replace broken channel in publisher pool");
+            publisher.closeChannel();
+        }
+
+        publisher = builder.buildDefaultPublisher(contentType);
+        if (publisher.isChannelOpen()) {
+            return publisher;
+        }
+
+        leases.release();
+        return null;
+    }
+
+    private void release(DefaultPublisher publisher) {
+
+        if (closed) {
+            publisher.closeChannel();
+        } else {
+            idlePublishers.offer(publisher);
+        }
+
+        leases.release();
+    }
+}
@@ -0,0 +1,237 @@
+package com.alivex.connector.rabbitmq.publisher;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Local spool of unconfirmed publishes, a message is recorded before it is send and marked confirmed on broker ack.
+ * Unconfirmed message is replayed in order when a publisher open its channel or its connection is recovered.
+ * Spool is share by every publisher build from the same builder, one replay run at a time
+ * and new message wait for a running replay so it is not send ahead of older unconfirmed ones.
+ *
+ * Segment is memory-mapped and never forced to disk, it survive a crash of application but not of operating system.
+ * Delivery is at-least-once, a message whose ack is lost is published again on replay.
+ */
+class PublishSpool {
+
+    private static final Logger LOG = Logger.getLogger(PublishSpool.class.getName());
+
+    private final Path directory;
+    private final int segmentSize;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final ConcurrentNavigableMap<Long, SpoolRecord> pendingRecords = new ConcurrentSkipListMap<>();
+    private final ReentrantLock replayLock = new ReentrantLock();
+
+    private SpoolSegment activeSegment;
+    private long nextId;
+
+    private PublishSpool(Path directory, int segmentSize, FileChannel lockChannel, FileLock lock) {
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.lockChannel = lockChannel;
+        this.lock = lock;
+    }
+
+    /**
+     * Open spool directory and load unconfirmed records left by previous run.
+     * @param directory
+     * @param segmentSize
+     * @throws IOException when directory cannot be used or is already used by another process.
+     */
+    static PublishSpool open(Path directory, int segmentSize) throws IOException {
+
+        Files.createDirectories(directory);
+        FileChannel lockChannel = FileChannel.open(directory.resolve("spool.lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException("Spool directory " + directory + " is already used by another spool");
+        }
+
+        PublishSpool spool = new PublishSpool(directory, segmentSize, lockChannel, lock);
+        spool.load();
+        return spool;
+    }
+
+    private void load() throws IOException {
+
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "spool-*.log")) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+
+        for (Path file : files) {
+
+            SpoolSegment segment = SpoolSegment.open(file);
+            List<SpoolRecord> records = segment.scan(segment.getFirstId());
+            for (SpoolRecord record : records) {
+                pendingRecords.put(record.getId(), record);
+            }
+
+            nextId = Math.max(nextId, segment.getFirstId() + segment.getRecordCount());
+
+            if (segment.isDeletable()) {
+                segment.delete();
+            }
+        }
+
+        if (!pendingRecords.isEmpty()) {
+            LOG.log(Level.INFO, "Publish spool {0} has {1} unconfirmed message from previous run", new Object[]{directory, pendingRecords.size()});
+        }
+    }
+
+    /**
+     * Record a message about to be send, record is own by caller until complete or release.
+     * @param exchange
+     * @param routingKey
+     * @param body
+     * @return
+     * @throws IOException when a new segment cannot be created.
+     */
+    synchronized SpoolRecord append(String exchange, String routingKey, byte[] body) throws IOException {
+
+        byte[] exchangeBytes = exchange.getBytes(StandardCharsets.UTF_8);
+        byte[] routingKeyBytes = routingKey.getBytes(StandardCharsets.UTF_8);
+
+        int position = activeSegment == null ? -1 : activeSegment.append(exchangeBytes, routingKeyBytes, body);
+        if (position < 0) {
+            rollSegment(SpoolSegment.recordSize(exchangeBytes, routingKeyBytes, body));
+            position = activeSegment.append(exchangeBytes, routingKeyBytes, body);
+        }
+
+        SpoolRecord record = new SpoolRecord(nextId++, activeSegment, position, exchange, routingKey, true);
+        pendingRecords.put(record.getId(), record);
+        return record;
+    }
+
+    private void rollSegment(int recordSize) throws IOException {
+
+        if (activeSegment != null) {
+            activeSegment.seal();
+            deleteIfConfirmed(activeSegment);
+        }
+
+        activeSegment = SpoolSegment.create(directory, nextId, Math.max(segmentSize, recordSize));
+    }
+
+    /**
+     * Mark record confirmed when broker ack, otherwise give it back for replay.
+     * @param record
+     * @param ack
+     */
+    void complete(SpoolRecord record, boolean ack) {
+
+        if (!ack) {
+            record.release();
+            return;
+        }
+
+        if (pendingRecords.remove(record.getId()) == null) {
+            return;
+        }
+
+        SpoolSegment segment = record.getSegment();
+        segment.markConfirmed(record.getPosition());
+        if (segment.getPendingCount().decrementAndGet() == 0) {
+            synchronized (this) {
+                deleteIfConfirmed(segment);
+            }
+        }
+    }
+
+    private void deleteIfConfirmed(SpoolSegment segment) {
+
+        if (!segment.isDeletable()) {
+            return;
+        }
+
+        try {
+            segment.delete();
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.log(Level.FINE, "Delete confirmed spool segment {0}", segment.getFile());
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to delete confirmed spool segment " + segment.getFile(), e);
+        }
+    }
+
+    /**
+     * Replay every unconfirmed record not already in flight, in log order, on caller thread.
+     * Replay stop at first record the publisher fail to send, the rest wait for next replay.
+     * Wait when another publisher is already replaying, records it has sent are in flight and skipped.
+     * @param publisher send a record and return false when it cannot be send.
+     */
+    void replay(Predicate<SpoolRecord> publisher) {
+
+        if (pendingRecords.isEmpty()) {
+            return;
+        }
+
+        replayLock.lock();
+        int count = 0;
+        try {
+
+            for (SpoolRecord record : pendingRecords.values()) {
+
+                if (!record.claim()) {
+                    continue;
+                }
+
+                if (!publisher.test(record)) {
+                    record.release();
+                    break;
+                }
+                count++;
+            }
+
+        } finally {
+            replayLock.unlock();
+        }
+
+        if (count > 0) {
+            LOG.log(Level.INFO, "Replay {0} unconfirmed message from publish spool {1}", new Object[]{count, directory});
+        }
+    }
+
+    /**
+     * Wait until a running replay is done, return right away on replaying thread.
+     */
+    void awaitReplay() {
+
+        if (replayLock.isLocked()) {
+            replayLock.lock();
+            replayLock.unlock();
+        }
+    }
+
+    int getPendingCount() {
+        return pendingRecords.size();
+    }
+}
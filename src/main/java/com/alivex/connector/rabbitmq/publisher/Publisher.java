@@ -1,5 +1,10 @@
 package com.alivex.connector.rabbitmq.publisher;
 
+import com.rabbitmq.client.AMQP;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 
 /**
  * Publish json data interface
@@ -9,6 +14,76 @@ public interface Publisher {
 
     public boolean basicPublish(String json);
     public boolean basicPublish(String json, int timeout);
+
+    /**
+     * Publish serialized data as is, without string encoding.
+     * An array is send without copy when the whole array is used.
+     * @param data
+     * @return
+     */
+    public boolean basicPublish(byte[] data);
+    public boolean basicPublish(byte[] data, int timeout);
+    public boolean basicPublish(byte[] data, int offset, int length);
+
+    /**
+     * Publish remaining bytes of buffer, position of buffer is not changed.
+     * @param data
+     * @return
+     */
+    public boolean basicPublish(ByteBuffer data);
+    public boolean basicPublish(ByteBuffer data, int timeout);
+
+    /**
+     * Publish a batch of json data and wait once for broker confirm of the whole batch.
+     * A batch larger than max batch size of publisher is split and each part wait for its own confirm.
+     * If not specify timeout of each part is 5 seconds, it include waiting for in-flight window.
+     * @param jsons
+     * @return confirm result of each message in the same order as jsons, false when nack or timeout.
+     */
+    public List<Boolean> basicPublishBatch(List<String> jsons);
+    public List<Boolean> basicPublishBatch(List<String> jsons, int timeout);
+
+    /**
+     * Publish json data without waiting for broker confirm.
+     * Many messages can be in flight on the same channel, each future complete when its own confirm arrive.
+     * @param json
+     * @return future completed with true when broker ack, false when broker nack or publish failed.
+     */
+    public CompletableFuture<Boolean> publishAsync(String json);
+    public CompletableFuture<Boolean> publishAsync(byte[] data);
+
+    /**
+     * Publish json data without waiting for broker confirm, future is completed with false when confirm does not arrive within timeout.
+     * @param json
+     * @param timeout in milliseconds.
+     * @return
+     */
+    public CompletableFuture<Boolean> publishAsync(String json, int timeout);
+    public CompletableFuture<Boolean> publishAsync(byte[] data, int timeout);
+
+    /**
+     * Publish json data without waiting for in-flight window or broker confirm.
+     * Fail fast with PublishRejectedException when in-flight window is full or connection is blocked by broker.
+     * @param json
+     * @return future completed with true when broker ack, false when broker nack or publish failed, exceptionally when rejected.
+     */
+    public CompletableFuture<Boolean> tryPublish(String json);
+    public CompletableFuture<Boolean> tryPublish(byte[] data);
+
+    /**
+     * Publish data to given exchange and routing key instead of those of publisher, on the same channel.
+     * Exchange is checked once on a temporary channel, publish to a missing exchange return false and does not close publisher channel.
+     * Content type and compression of publisher are added to properties when they are not set.
+     * @param exchange
+     * @param routingKey
+     * @param properties may be null.
+     * @param data
+     * @return
+     */
+    public boolean basicPublish(String exchange, String routingKey, AMQP.BasicProperties properties, byte[] data);
+    public boolean basicPublish(String exchange, String routingKey, AMQP.BasicProperties properties, byte[] data, int timeout);
+    public CompletableFuture<Boolean> publishAsync(String exchange, String routingKey, AMQP.BasicProperties properties, byte[] data);
+    public CompletableFuture<Boolean> publishAsync(String exchange, String routingKey, AMQP.BasicProperties properties, byte[] data, int timeout);
     public boolean isChannelOpen();
     public void closeChannel();
 }
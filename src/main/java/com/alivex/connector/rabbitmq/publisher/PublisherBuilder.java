@@ -8,7 +8,13 @@ import com.alivex.connector.rabbitmq.ConnectionManager;
 import com.alivex.connector.rabbitmq.DefaultConfirmListener;
 import com.alivex.connector.rabbitmq.DefaultReturnListener;
 import com.alivex.connector.rabbitmq.DefaultShutdownListener;
+import com.alivex.connector.rabbitmq.codec.Codec;
+import com.alivex.connector.rabbitmq.compression.Compression;
+import com.alivex.connector.rabbitmq.metrics.ConnectorMetrics;
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 
 
 public class PublisherBuilder implements Serializable {
@@ -19,6 +25,18 @@ public class PublisherBuilder implements Serializable {
     private ReturnListener returnListener;
     private ShutdownListener shutdownListener;
     private ConnectionManager connectionManager;
+    private int maxBatchSize = 1000;
+    private int maxInFlight;
+    private int confirmTimeout;
+    private transient Path spoolDirectory;
+    private int spoolSegmentSize;
+    private transient PublishSpool spool;
+    private transient RouteCache routeCache;
+    private Compression compression = Compression.NONE;
+    private int compressionThreshold;
+    private int poolMinSize;
+    private int poolMaxSize;
+    private ConnectorMetrics metrics = ConnectorMetrics.NOOP;
 
     public PublisherBuilder() {
 
@@ -78,18 +96,253 @@ public class PublisherBuilder implements Serializable {
         return this;
     }
     
+    /**
+     * Maximum number of message written to channel before waiting for confirm in basicPublishBatch,
+     * If not specify default is 1000.
+     * @param maxBatchSize
+     * @return
+     */
+    public PublisherBuilder maxBatchSize(int maxBatchSize) {
+
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Max batch size must be greater than zero");
+        }
+
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    /**
+     * Maximum number of message waiting for confirm per publisher, a publish wait for room in the window up to its timeout.
+     * tryPublish does not wait and is rejected when window is full.
+     * If not specify in-flight message is unlimited.
+     * @param maxInFlight
+     * @return
+     */
+    public PublisherBuilder maxInFlight(int maxInFlight) {
+
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Max in-flight must be greater than zero");
+        }
+
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * Timeout in milliseconds of publishAsync and tryPublish, future is completed with false when confirm does not arrive in time.
+     * Timeout is track by a shared timer wheel, no thread is parked per message.
+     * If not specify future wait until confirm arrive or channel is shutdown.
+     * @param confirmTimeout
+     * @return
+     */
+    public PublisherBuilder confirmTimeout(int confirmTimeout) {
+
+        if (confirmTimeout < 0) {
+            throw new IllegalArgumentException("Confirm timeout must not be negative");
+        }
+
+        this.confirmTimeout = confirmTimeout;
+        return this;
+    }
+
+    /**
+     * Record every publish in a local spool before send and replay unconfirmed message in order
+     * when channel is opened or connection is recovered, require automatic recovery to ride out broker failover.
+     * Spool is share by every publisher build from this builder, a directory can be used by one process at a time.
+     * basicPublish and basicPublishBatch return true once message is recorded, a message not confirmed is replayed later.
+     * Segment size is 64MB.
+     * @param directory
+     * @return
+     */
+    public PublisherBuilder spool(Path directory) {
+        return spool(directory, 64 * 1024 * 1024);
+    }
+
+    /**
+     * @param directory
+     * @param segmentSize in bytes of each memory-mapped segment file.
+     * @return
+     */
+    public PublisherBuilder spool(Path directory, int segmentSize) {
+
+        if (segmentSize < 1024) {
+            throw new IllegalArgumentException("Spool segment size must be at least 1024 bytes");
+        }
+
+        this.spoolDirectory = directory;
+        this.spoolSegmentSize = segmentSize;
+        return this;
+    }
+
+    /**
+     * Compress message of 1024 bytes or larger, see compression(Compression, int).
+     * @param compression
+     * @return
+     */
+    public PublisherBuilder compression(Compression compression) {
+        return compression(compression, 1024);
+    }
+
+    /**
+     * Compress message before send and set content-encoding property, default consumer decompress it before calling processor.
+     * Message smaller than threshold is send as is, compressing a small message cost more than it save.
+     * If not specify message is not compressed.
+     * @param compression
+     * @param threshold minimum size in bytes of message to compress.
+     * @return
+     */
+    public PublisherBuilder compression(Compression compression, int threshold) {
+
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Compression threshold must not be negative");
+        }
+
+        this.compression = compression;
+        this.compressionThreshold = threshold;
+        return this;
+    }
+
+    /**
+     * Record publish latency, confirm latency, nack, return, confirm timeout and in-flight count,
+     * If not specify nothing is recorded. Metrics is share by every publisher build from this builder.
+     * @param metrics
+     * @return
+     */
+    public PublisherBuilder metrics(ConnectorMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Build a thread-safe publisher backed by a pool of channels instead of a single channel.
+     * A pool open min channels when it is built and never open more than max channels.
+     * @param min
+     * @param max
+     * @return
+     */
+    public PublisherBuilder pooled(int min, int max) {
+
+        if (min < 0 || max < 1 || min > max) {
+            throw new IllegalArgumentException("Pool size must be 0 <= min <= max and max greater than zero");
+        }
+
+        this.poolMinSize = min;
+        this.poolMaxSize = max;
+        return this;
+    }
+
     public Publisher build() {
+        return build((String) null);
+    }
+
+    /**
+     * Build a publisher of message object, object is encoded by codec and content type of codec is set to every message.
+     * Pool, spool and compression settings of this builder apply as well.
+     * @param <T>
+     * @param codec
+     * @return
+     */
+    public <T> TypedPublisher<T> build(Codec<T> codec) {
+        return new DefaultTypedPublisher<>(build(codec.getContentType()), codec);
+    }
+
+    /**
+     * Build a publisher that spread messages over partitions by key, partition i is routed with routing key {routingKey}.i
+     * to exchange of this builder. Use default exchange to publish straight to partition queues named {routingKey}.i.
+     * Order of messages of a key is preserved when they are published one after another from a single channel publisher.
+     * Settings of this builder apply, a pool lets many threads publish to partitions over a few channels.
+     * @param partitions
+     * @return
+     */
+    public PartitionedPublisher buildPartitioned(int partitions) {
+
+        if (partitions < 1) {
+            throw new IllegalArgumentException("Partitions must be greater than zero");
+        }
+
+        return new DefaultPartitionedPublisher(build(), exchange, routingKey, partitions);
+    }
+
+    /**
+     * Build a publisher that keep only the latest value of each key and publish pending values every flush interval,
+     * or as soon as number of pending key reach max pending.
+     * @param flushIntervalMs maximum delay before a value is published.
+     * @param maxPending
+     * @return
+     */
+    public ConflatingPublisher buildConflating(long flushIntervalMs, int maxPending) {
+
+        if (flushIntervalMs < 1 || maxPending < 1) {
+            throw new IllegalArgumentException("Flush interval and max pending must be greater than zero");
+        }
+
+        return new ConflatingPublisher(build(), flushIntervalMs, maxPending);
+    }
+
+    private Publisher build(String contentType) {
+
+        if (isPooled()) {
+            return new PooledPublisher(poolMinSize, poolMaxSize, this, contentType);
+        }
+
+        return buildDefaultPublisher(contentType);
+    }
+
+    DefaultPublisher buildDefaultPublisher(String contentType) {
 
         //If not specify custom listener, default lister will be assign by create new instance every time this method invoke for thread-safety.
         ShutdownListener shutdownListenerToUse = shutdownListener == null ? new DefaultShutdownListener() : shutdownListener;
         ConfirmListener confirmListenerToUse = confirmListener == null ? new DefaultConfirmListener(): confirmListener;
         ReturnListener returnListenerToUse = returnListener == null ? new DefaultReturnListener() : returnListener;
         
-        return new DefaultPublisher(exchange, 
+        return new DefaultPublisher(exchange,
                                     routingKey,
                                     connectionManager,
                                     shutdownListenerToUse,
                                     returnListenerToUse,
-                                    confirmListenerToUse);
+                                    confirmListenerToUse,
+                                    maxBatchSize,
+                                    maxInFlight,
+                                    confirmTimeout,
+                                    getSpool(),
+                                    compression,
+                                    compressionThreshold,
+                                    contentType,
+                                    getRouteCache(),
+                                    metrics);
+    }
+
+    /**
+     * Route cache is shared by every publisher of this builder so an exchange is validated once.
+     */
+    private synchronized RouteCache getRouteCache() {
+
+        if (routeCache == null) {
+            routeCache = new RouteCache(connectionManager);
+        }
+
+        return routeCache;
+    }
+
+    private synchronized PublishSpool getSpool() {
+
+        if (spoolDirectory == null) {
+            return null;
+        }
+
+        if (spool == null) {
+            try {
+                spool = PublishSpool.open(spoolDirectory, spoolSegmentSize);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open publish spool " + spoolDirectory, e);
+            }
+        }
+
+        return spool;
+    }
+
+    private boolean isPooled() {
+        return poolMaxSize > 0;
     }
 }
@@ -0,0 +1,140 @@
+package com.alivex.connector.rabbitmq.publisher;
+
+import com.rabbitmq.client.Channel;
+import com.alivex.connector.rabbitmq.ConnectionManager;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Intern routes of per-message publish and validate their exchange once, shared by every publisher of a builder.
+ * Publish to a missing exchange make broker close publish channel, every outstanding confirm of the channel would fail.
+ * Exchange is checked with a passive declare on a temporary channel instead, an existing exchange is cached for good
+ * while a missing one is remembered for one second, so publishing to it fail fast without a channel per message
+ * and an exchange declared later is accepted. Routing key cannot be validated, unroutable message is returned to publisher.
+ */
+class RouteCache {
+
+    private static final Logger LOG = Logger.getLogger(RouteCache.class.getName());
+    private static final String DEFAULT_EXCHANGE = "";
+
+    //Route is no longer interned past this size, an unbounded routing key space would hold memory forever.
+    private static final int MAX_ROUTES = 10_000;
+    private static final long MISSING_EXCHANGE_TTL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final ConnectionManager connectionManager;
+    private final Map<String, Boolean> validExchanges = new ConcurrentHashMap<>();
+
+    //Exchange found missing and time it is checked again.
+    private final Map<String, Long> missingExchanges = new ConcurrentHashMap<>();
+
+    //Keyed by exchange then routing key, lookup does not allocate.
+    private final Map<String, Map<String, Route>> routes = new ConcurrentHashMap<>();
+    private final AtomicInteger routeCount = new AtomicInteger();
+
+    RouteCache(ConnectionManager connectionManager) {
+        this.connectionManager = connectionManager;
+    }
+
+    /**
+     * @param exchange
+     * @param routingKey
+     * @return interned route
+     * @throws IOException when exchange does not exist or cannot be checked.
+     */
+    Route get(String exchange, String routingKey) throws IOException {
+
+        Map<String, Route> exchangeRoutes = routes.get(exchange);
+        Route route = exchangeRoutes == null ? null : exchangeRoutes.get(routingKey);
+        if (route != null) {
+            return route;
+        }
+
+        validate(exchange);
+        route = new Route(exchange, routingKey);
+
+        if (routeCount.get() >= MAX_ROUTES) {
+            return route;
+        }
+
+        Route cached = routes.computeIfAbsent(exchange, k -> new ConcurrentHashMap<>()).putIfAbsent(routingKey, route);
+        if (cached != null) {
+            return cached;
+        }
+
+        routeCount.incrementAndGet();
+        return route;
+    }
+
+    private void validate(String exchange) throws IOException {
+
+        if (DEFAULT_EXCHANGE.equals(exchange) || validExchanges.containsKey(exchange)) {
+            return;
+        }
+
+        Long recheckNanos = missingExchanges.get(exchange);
+        if (recheckNanos != null) {
+            if (System.nanoTime() - recheckNanos < 0) {
+                throw new IOException("Exchange " + exchange + " does not exist");
+            }
+            missingExchanges.remove(exchange, recheckNanos);
+        }
+
+        Channel channel = connectionManager.getPublisherConnection().createChannel();
+        try {
+            channel.exchangeDeclarePassive(exchange);
+        } catch (IOException e) {
+            if (missingExchanges.size() < MAX_ROUTES) {
+                missingExchanges.put(exchange, System.nanoTime() + MISSING_EXCHANGE_TTL_NANOS);
+            }
+            throw new IOException("Exchange " + exchange + " does not exist", e);
+        } finally {
+            closeQuietly(channel);
+        }
+
+        validExchanges.put(exchange, Boolean.TRUE);
+
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.log(Level.FINE, "Exchange {0} is validated", exchange);
+        }
+    }
+
+    private void closeQuietly(Channel channel) {
+
+        if (!channel.isOpen()) {
+            return;
+        }
+
+        try {
+            channel.close();
+        } catch (Exception e) {
+            LOG.log(Level.FINE, "Failed to close route validation channel", e);
+        }
+    }
+
+    /**
+     * Exchange and routing key of a message.
+     */
+    static final class Route {
+
+        private final String exchange;
+        private final String routingKey;
+
+        Route(String exchange, String routingKey) {
+            this.exchange = exchange;
+            this.routingKey = routingKey;
+        }
+
+        String getExchange() {
+            return exchange;
+        }
+
+        String getRoutingKey() {
+            return routingKey;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.alivex.connector.rabbitmq.publisher;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Unconfirmed message of publish spool, keep only its position in segment, payload is read back on replay.
+ */
+class SpoolRecord {
+
+    private final long id;
+    private final SpoolSegment segment;
+    private final int position;
+    private final String exchange;
+    private final String routingKey;
+
+    //Set while a publisher has the record on a channel waiting for confirm, so one record is never replayed twice at a time.
+    private final AtomicBoolean inFlight;
+
+    SpoolRecord(long id, SpoolSegment segment, int position, String exchange, String routingKey, boolean inFlight) {
+        this.id = id;
+        this.segment = segment;
+        this.position = position;
+        this.exchange = exchange;
+        this.routingKey = routingKey;
+        this.inFlight = new AtomicBoolean(inFlight);
+    }
+
+    boolean claim() {
+        return inFlight.compareAndSet(false, true);
+    }
+
+    void release() {
+        inFlight.set(false);
+    }
+
+    byte[] readBody() {
+        return segment.readBody(position);
+    }
+
+    long getId() {
+        return id;
+    }
+
+    SpoolSegment getSegment() {
+        return segment;
+    }
+
+    int getPosition() {
+        return position;
+    }
+
+    String getExchange() {
+        return exchange;
+    }
+
+    String getRoutingKey() {
+        return routingKey;
+    }
+}
@@ -0,0 +1,186 @@
+package com.alivex.connector.rabbitmq.publisher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Memory-mapped append-only file of publish spool.
+ * Record layout: state(1) length(4) exchangeLength(2) exchange routingKeyLength(2) routingKey bodyLength(4) body.
+ * State is written last so a record cut by a crash is never read back, a zero state mark end of segment.
+ */
+class SpoolSegment {
+
+    static final byte STATE_END = 0;
+    static final byte STATE_PENDING = 1;
+    static final byte STATE_CONFIRMED = 2;
+
+    private static final int HEADER_SIZE = 5;
+
+    private final long firstId;
+    private final Path file;
+    private final FileChannel fileChannel;
+    private final MappedByteBuffer buffer;
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private int writePosition;
+    private int recordCount;
+    private boolean sealed;
+    private boolean deleted;
+
+    private SpoolSegment(long firstId, Path file, FileChannel fileChannel, MappedByteBuffer buffer) {
+        this.firstId = firstId;
+        this.file = file;
+        this.fileChannel = fileChannel;
+        this.buffer = buffer;
+    }
+
+    static SpoolSegment create(Path directory, long firstId, int capacity) throws IOException {
+
+        Path file = directory.resolve(String.format("spool-%020d.log", firstId));
+        FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new SpoolSegment(firstId, file, fileChannel, fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+    }
+
+    static SpoolSegment open(Path file) throws IOException {
+
+        String name = file.getFileName().toString();
+        long firstId = Long.parseLong(name.substring("spool-".length(), name.length() - ".log".length()));
+
+        FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        SpoolSegment segment = new SpoolSegment(firstId, file, fileChannel, fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, fileChannel.size()));
+        segment.sealed = true;
+        return segment;
+    }
+
+    static int recordSize(byte[] exchange, byte[] routingKey, byte[] body) {
+        return HEADER_SIZE + 2 + exchange.length + 2 + routingKey.length + 4 + body.length;
+    }
+
+    /**
+     * Must be called by one thread at a time.
+     * @return position of record, -1 when segment has no room left.
+     */
+    int append(byte[] exchange, byte[] routingKey, byte[] body) {
+
+        int size = recordSize(exchange, routingKey, body);
+        if (writePosition + size > buffer.capacity()) {
+            return -1;
+        }
+
+        int position = writePosition;
+        ByteBuffer record = buffer.duplicate();
+        record.position(position + 1);
+        record.putInt(size - HEADER_SIZE);
+        record.putShort((short) exchange.length).put(exchange);
+        record.putShort((short) routingKey.length).put(routingKey);
+        record.putInt(body.length).put(body);
+
+        buffer.put(position, STATE_PENDING);
+        writePosition += size;
+        pendingCount.incrementAndGet();
+        return position;
+    }
+
+    void markConfirmed(int position) {
+        buffer.put(position, STATE_CONFIRMED);
+    }
+
+    byte[] readBody(int position) {
+
+        ByteBuffer record = buffer.duplicate();
+        record.position(position + HEADER_SIZE);
+        record.position(record.position() + 2 + record.getShort(record.position()));
+        record.position(record.position() + 2 + record.getShort(record.position()));
+
+        byte[] body = new byte[record.getInt()];
+        record.get(body);
+        return body;
+    }
+
+    /**
+     * Read back every pending record of a segment left by previous run.
+     * @param nextId id of first record of this segment
+     * @return pending records in log order
+     */
+    List<SpoolRecord> scan(long nextId) {
+
+        List<SpoolRecord> records = new ArrayList<>();
+        ByteBuffer record = buffer.duplicate();
+        int position = 0;
+
+        while (position + HEADER_SIZE <= record.capacity() && record.get(position) != STATE_END) {
+
+            byte state = record.get(position);
+            int length = record.getInt(position + 1);
+
+            if (state == STATE_PENDING) {
+                record.position(position + HEADER_SIZE);
+                String exchange = readString(record);
+                String routingKey = readString(record);
+                records.add(new SpoolRecord(nextId, this, position, exchange, routingKey, false));
+                pendingCount.incrementAndGet();
+            }
+
+            nextId++;
+            recordCount++;
+            position += HEADER_SIZE + length;
+        }
+
+        return records;
+    }
+
+    private static String readString(ByteBuffer record) {
+
+        byte[] value = new byte[record.getShort()];
+        record.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return true when segment no longer receive record and every record is confirmed.
+     */
+    boolean isDeletable() {
+        return sealed && !deleted && pendingCount.get() == 0;
+    }
+
+    void seal() {
+        sealed = true;
+    }
+
+    /**
+     * Mapped buffer is release by garbage collector, file is removed right away where platform allow it.
+     */
+    void delete() throws IOException {
+
+        deleted = true;
+        fileChannel.close();
+        Files.deleteIfExists(file);
+    }
+
+    long getFirstId() {
+        return firstId;
+    }
+
+    /**
+     * @return number of record read by scan, confirmed or not.
+     */
+    int getRecordCount() {
+        return recordCount;
+    }
+
+    AtomicInteger getPendingCount() {
+        return pendingCount;
+    }
+
+    Path getFile() {
+        return file;
+    }
+}
@@ -0,0 +1,30 @@
+package com.alivex.connector.rabbitmq.publisher;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Publish message object, object is serialized by codec of publisher and content type is set to every message.
+ * @param <T> type of message object
+ */
+public interface TypedPublisher<T> {
+
+    public boolean publish(T value);
+    public boolean publish(T value, int timeout);
+
+    /**
+     * Publish message object without waiting for broker confirm.
+     * @param value
+     * @return future completed with true when broker ack, false when broker nack, publish or encoding failed.
+     */
+    public CompletableFuture<Boolean> publishAsync(T value);
+    public CompletableFuture<Boolean> publishAsync(T value, int timeout);
+
+    /**
+     * Publish message object without waiting for in-flight window or broker confirm.
+     * @param value
+     * @return future completed exceptionally with PublishRejectedException when in-flight window is full or connection is blocked.
+     */
+    public CompletableFuture<Boolean> tryPublish(T value);
+    public boolean isChannelOpen();
+    public void closeChannel();
+}
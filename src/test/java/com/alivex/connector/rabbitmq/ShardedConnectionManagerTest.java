@@ -0,0 +1,74 @@
+package com.alivex.connector.rabbitmq;
+
+import com.alivex.connector.rabbitmq.simulator.SimulatedBroker;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeoutException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class ShardedConnectionManagerTest {
+
+    private SimulatedBroker broker;
+
+    @Before
+    public void setUp() {
+        broker = new SimulatedBroker();
+    }
+
+    @After
+    public void tearDown() {
+        broker.close();
+    }
+
+    @Test
+    public void openedConnectionsAreClosedWhenOpenFail() throws Exception {
+
+        //Two publisher connections open, second consumer connection fail.
+        FailingFactory factory = new FailingFactory(broker, 3);
+        ShardedConnectionManager connectionManager = new ShardedConnectionManager(factory, 2, 2);
+
+        try {
+            connectionManager.open();
+            fail("Open must fail when a connection cannot be opened");
+        } catch (IOException expected) {
+        }
+
+        assertEquals(3, factory.opened.size());
+        for (Connection connection : factory.opened) {
+            assertFalse(connection.isOpen());
+        }
+    }
+
+    private static class FailingFactory extends ConnectionFactory {
+
+        private final SimulatedBroker broker;
+        private final int failAt;
+        private final List<Connection> opened = new CopyOnWriteArrayList<>();
+
+        private FailingFactory(SimulatedBroker broker, int failAt) {
+            this.broker = broker;
+            this.failAt = failAt;
+        }
+
+        @Override
+        public Connection newConnection(String clientProvidedName) throws IOException, TimeoutException {
+
+            if (opened.size() == failAt) {
+                throw new IOException("Connection refused");
+            }
+
+            Connection connection = broker.newConnection(clientProvidedName);
+            opened.add(connection);
+            return connection;
+        }
+    }
+}
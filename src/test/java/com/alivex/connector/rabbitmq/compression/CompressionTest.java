@@ -0,0 +1,128 @@
+package com.alivex.connector.rabbitmq.compression;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompressionTest {
+
+    @Test
+    public void roundTrip() throws IOException {
+
+        byte[] data = new byte[100_000];
+        new Random(1).nextBytes(data);
+        Arrays.fill(data, 0, 50_000, (byte) 'a');
+
+        for (Compression compression : Compression.values()) {
+            assertArrayEquals(compression.name(), data, compression.decompress(compression.compress(data)));
+        }
+    }
+
+    @Test
+    public void gzipIsReadableByStandardReader() throws IOException {
+
+        byte[] data = "{\"id\":1}".getBytes("UTF-8");
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(Compression.GZIP.compress(data)))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[256];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            assertArrayEquals(data, out.toByteArray());
+        }
+    }
+
+    @Test
+    public void payloadAboveMaxSizeIsRejected() throws IOException {
+
+        //A few kilobytes that inflate to 16 MB.
+        byte[] bomb = new byte[16 * 1024 * 1024];
+
+        for (Compression compression : Arrays.asList(Compression.DEFLATE, Compression.GZIP)) {
+
+            byte[] compressed = compression.compress(bomb);
+            assertArrayEquals(bomb, compression.decompress(compressed, bomb.length));
+
+            try {
+                compression.decompress(compressed, bomb.length - 1);
+                fail(compression + " payload above max size must be rejected");
+            } catch (ZipException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void truncatedGzipHeaderIsRejected() {
+
+        //Header with FEXTRA flag followed by extra field length of every size around end of payload.
+        for (int extraLength = 0; extraLength < 32; extraLength++) {
+
+            byte[] data = new byte[20];
+            data[0] = 0x1f;
+            data[1] = (byte) 0x8b;
+            data[2] = 8;
+            data[3] = 4;
+            data[10] = (byte) extraLength;
+
+            try {
+                Compression.GZIP.decompress(data);
+                fail("Truncated gzip payload must be rejected, extra length:" + extraLength);
+            } catch (ZipException expected) {
+            } catch (IOException | RuntimeException e) {
+                fail("Unexpected failure " + e + ", extra length:" + extraLength);
+            }
+        }
+    }
+
+    @Test
+    public void buffersArePooledAcrossThreadsWithinBound() throws Exception {
+
+        byte[] data = new byte[10_000];
+        new Random(2).nextBytes(data);
+        Arrays.fill(data, 0, 5_000, (byte) 'a');
+
+        int threads = 64;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int n = 0; n < 50; n++) {
+                        for (Compression compression : Compression.values()) {
+                            assertArrayEquals(data, compression.decompress(compression.compress(data)));
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertNull(failure.get());
+        assertTrue(CompressionBuffers.pooledCount() <= Runtime.getRuntime().availableProcessors() * 2);
+    }
+}
@@ -0,0 +1,93 @@
+package com.alivex.connector.rabbitmq.consumer;
+
+import com.alivex.connector.rabbitmq.publisher.Publisher;
+import com.alivex.connector.rabbitmq.publisher.PublisherBuilder;
+import com.alivex.connector.rabbitmq.simulator.Await;
+import com.alivex.connector.rabbitmq.simulator.SimulatedBroker;
+import com.alivex.connector.rabbitmq.simulator.SimulatedConnectionManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConsumerGroupTest {
+
+    private SimulatedBroker broker;
+    private SimulatedConnectionManager connectionManager;
+    private Publisher publisher;
+
+    @Before
+    public void setUp() {
+        broker = new SimulatedBroker();
+        broker.declareQueue("q");
+        connectionManager = new SimulatedConnectionManager(broker);
+        publisher = new PublisherBuilder()
+                .exchange("")
+                .routingKey("q")
+                .connectionManager(connectionManager)
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        publisher.closeChannel();
+        broker.close();
+    }
+
+    private ConsumerBuilder builder(Processor processor) {
+        return new ConsumerBuilder()
+                .queueName("q")
+                .qos(5)
+                .processor(processor)
+                .connectionManager(connectionManager);
+    }
+
+    @Test
+    public void groupScaleUpOnBacklogAndDownWhenIdle() throws Exception {
+
+        AtomicInteger processed = new AtomicInteger();
+        ConsumerGroup group = builder(data -> {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+            processed.incrementAndGet();
+        }).buildGroup(1, 4, 50);
+
+        List<String> backlog = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            backlog.add("m" + i);
+        }
+        assertEquals(500, publisher.basicPublishBatch(backlog).stream().filter(Boolean::booleanValue).count());
+
+        //Backlog of 500 message take 2.5 seconds for one consumer, far above two intervals.
+        assertTrue("Group did not scale up", Await.until(() -> group.getSize() > 1, 2000));
+        assertTrue(Await.until(() -> processed.get() == 500, 5000));
+
+        //Queue is empty and consumers are idle, group shrink one consumer at a time back to min.
+        assertTrue("Group did not scale down", Await.until(() -> group.getSize() == 1, 5000));
+        assertEquals(1, broker.getConsumerCount("q"));
+
+        group.closeChannel();
+        assertEquals(0, broker.getConsumerCount("q"));
+    }
+
+    @Test
+    public void emptyGroupAddConsumerWhenMessageArrive() throws Exception {
+
+        AtomicInteger processed = new AtomicInteger();
+        ConsumerGroup group = builder(data -> processed.incrementAndGet()).buildGroup(0, 2, 50);
+        assertEquals(0, group.getSize());
+
+        publisher.basicPublishBatch(Arrays.asList("a", "b", "c"));
+        assertTrue(Await.until(() -> processed.get() == 3, 2000));
+        assertTrue(group.getSize() >= 1);
+
+        group.closeChannel();
+    }
+}
@@ -0,0 +1,312 @@
+package com.alivex.connector.rabbitmq.consumer;
+
+import com.alivex.connector.rabbitmq.exception.RejectAndDontRequeueException;
+import com.alivex.connector.rabbitmq.metrics.InMemoryConnectorMetrics;
+import com.alivex.connector.rabbitmq.publisher.Publisher;
+import com.alivex.connector.rabbitmq.publisher.PublisherBuilder;
+import com.alivex.connector.rabbitmq.simulator.Await;
+import com.alivex.connector.rabbitmq.simulator.SimulatedBroker;
+import com.alivex.connector.rabbitmq.simulator.SimulatedConnectionManager;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Consumer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DefaultConsumerTest {
+
+    private SimulatedBroker broker;
+    private SimulatedConnectionManager connectionManager;
+    private InMemoryConnectorMetrics metrics;
+    private Publisher publisher;
+
+    @Before
+    public void setUp() {
+        broker = new SimulatedBroker();
+        broker.declareQueue("q");
+        connectionManager = new SimulatedConnectionManager(broker);
+        metrics = new InMemoryConnectorMetrics();
+        publisher = new PublisherBuilder()
+                .exchange("")
+                .routingKey("q")
+                .connectionManager(connectionManager)
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        publisher.closeChannel();
+        broker.close();
+    }
+
+    private ConsumerBuilder builder(Processor processor) {
+        return new ConsumerBuilder()
+                .queueName("q")
+                .qos(20)
+                .processor(processor)
+                .connectionManager(connectionManager)
+                .metrics(metrics);
+    }
+
+    private void publish(int count) {
+        for (int i = 0; i < count; i++) {
+            assertTrue(publisher.basicPublish("m" + i));
+        }
+    }
+
+    @Test
+    public void processedMessagesAreAcked() throws Exception {
+
+        AtomicInteger processed = new AtomicInteger();
+        Consumer consumer = builder(data -> processed.incrementAndGet()).build();
+
+        publish(100);
+        assertTrue(Await.until(() -> processed.get() == 100, 2000));
+        assertTrue(Await.until(() -> metrics.getAckCount() == 100, 2000));
+
+        //Unacked message would be requeue on close.
+        ((DefaultConsumer) consumer).closeChannel();
+        assertEquals(0, broker.getMessageCount("q"));
+    }
+
+    @Test
+    public void cumulativeAckCoverEveryMessage() throws Exception {
+
+        AtomicInteger processed = new AtomicInteger();
+        Consumer consumer = builder(data -> processed.incrementAndGet()).ackBatch(8, 20).build();
+
+        publish(101);
+        assertTrue(Await.until(() -> metrics.getAckCount() == 101, 2000));
+
+        ((DefaultConsumer) consumer).closeChannel();
+        assertEquals(101, processed.get());
+        assertEquals(0, broker.getMessageCount("q"));
+    }
+
+    @Test
+    public void rejectedMessageIsNotRequeued() throws Exception {
+
+        AtomicInteger calls = new AtomicInteger();
+        Consumer consumer = builder(data -> {
+            calls.incrementAndGet();
+            throw new RejectAndDontRequeueException(new IllegalArgumentException("bad message"));
+        }).build();
+
+        publish(3);
+        assertTrue(Await.until(() -> metrics.getRejectCount() == 3, 2000));
+
+        ((DefaultConsumer) consumer).closeChannel();
+        assertEquals(3, calls.get());
+        assertEquals(0, broker.getMessageCount("q"));
+    }
+
+    @Test
+    public void unackedMessagesAreRedeliveredAfterConnectionRecovery() throws Exception {
+
+        Set<String> processed = ConcurrentHashMap.newKeySet();
+        Consumer consumer = builder(data -> processed.add(new String(data, StandardCharsets.UTF_8))).build();
+
+        publish(50);
+        broker.closeConnections(true);
+        publish(50);
+
+        assertTrue(Await.until(() -> processed.size() == 50, 2000));
+        ((DefaultConsumer) consumer).closeChannel();
+    }
+
+    @Test
+    public void deliveryRejectedByExecutorIsRequeued() throws Exception {
+
+        //Single thread and no queue, lanes are rejected whenever the thread is busy.
+        ExecutorService executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new SynchronousQueue<>());
+        Set<String> processed = ConcurrentHashMap.newKeySet();
+        Consumer consumer = builder(data -> {
+            processed.add(new String(data, StandardCharsets.UTF_8));
+            sleep(1);
+        }).concurrency(4).executor(executor).build();
+
+        publish(200);
+        assertTrue(Await.until(() -> processed.size() == 200, 5000));
+
+        ((DefaultConsumer) consumer).closeChannel();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void failedMessageIsDeadLetteredAfterEveryAttempt() throws Exception {
+
+        broker.declareQueue("q.dead");
+        AtomicInteger calls = new AtomicInteger();
+        Consumer consumer = builder(data -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("always fail");
+        }).retry(RetryPolicy.requeue(2, 10, 10).deadLetter("", "q.dead")).build();
+
+        publish(5);
+        assertTrue(Await.until(() -> broker.getMessageCount("q.dead") == 5, 5000));
+        //Original is acked once its copy is confirmed, two retries and a dead-letter per message.
+        assertTrue(Await.until(() -> metrics.getAckCount() == 15, 2000));
+
+        ((DefaultConsumer) consumer).closeChannel();
+        assertEquals(15, calls.get());
+        assertEquals(0, broker.getMessageCount("q"));
+    }
+
+    @Test
+    public void originalIsRequeuedWhenRetryCopyIsUnroutable() throws Exception {
+
+        AtomicInteger calls = new AtomicInteger();
+        Consumer consumer = builder(data -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("always fail");
+        }).retry(RetryPolicy.requeue(1, 10, 10).deadLetter("", "q.missing")).build();
+
+        publish(1);
+        //Dead-letter copy is returned, original come back with the same retry count instead of being lost.
+        assertTrue(Await.until(() -> calls.get() >= 4, 5000));
+
+        ((DefaultConsumer) consumer).closeChannel();
+        assertEquals(1, broker.getMessageCount("q"));
+    }
+
+    @Test
+    public void malformedRetryCountIsDeadLettered() throws Exception {
+
+        broker.declareQueue("q.dead");
+        AtomicInteger calls = new AtomicInteger();
+        Consumer consumer = builder(data -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("always fail");
+        }).retry(RetryPolicy.requeue(2, 10, 10).deadLetter("", "q.dead")).build();
+
+        Map<String, Object> headers = new HashMap<>();
+        headers.put(RetryPolicy.RETRY_COUNT_HEADER, "not a number");
+        assertTrue(publisher.basicPublish("", "q", new AMQP.BasicProperties.Builder().headers(headers).build(), "m".getBytes(StandardCharsets.UTF_8)));
+
+        assertTrue(Await.until(() -> broker.getMessageCount("q.dead") == 1, 2000));
+        assertTrue(Await.until(() -> metrics.getAckCount() == 1, 2000));
+
+        ((DefaultConsumer) consumer).closeChannel();
+        assertEquals(1, calls.get());
+        assertEquals(0, broker.getMessageCount("q"));
+    }
+
+    @Test
+    public void adaptivePrefetchIsRaisedAndAppliedByBroker() throws Exception {
+
+        AtomicInteger processed = new AtomicInteger();
+        CountDownLatch gate = new CountDownLatch(1);
+        AtomicBoolean hold = new AtomicBoolean();
+        DefaultConsumer consumer = (DefaultConsumer) builder(data -> {
+            if (hold.get()) {
+                await(gate);
+            }
+            processed.incrementAndGet();
+        }).adaptiveQos(1, 10).build();
+        assertEquals(1, consumer.getPrefetchCount());
+
+        //Consumer finish each message long before next one arrive, prefetch is raised to cover the gap.
+        int published = 0;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (consumer.getPrefetchCount() == 1 && System.currentTimeMillis() < deadline) {
+            publish(1);
+            published++;
+            sleep(2);
+        }
+
+        int prefetch = consumer.getPrefetchCount();
+        assertTrue("Prefetch was not raised", prefetch > 1);
+        int total = published;
+        assertTrue(Await.until(() -> processed.get() == total, 2000));
+
+        //While processor is held broker deliver up to new prefetch count, the rest stay ready in queue.
+        hold.set(true);
+        publish(30);
+        assertTrue(Await.until(() -> broker.getMessageCount("q") == 30 - prefetch, 2000));
+        sleep(50);
+        assertEquals(30 - prefetch, broker.getMessageCount("q"));
+
+        gate.countDown();
+        assertTrue(Await.until(() -> processed.get() == total + 30, 2000));
+        consumer.closeChannel();
+    }
+
+    @Test
+    public void duplicateIsAckedWithoutProcessing() throws Exception {
+
+        List<String> processed = new CopyOnWriteArrayList<>();
+        AtomicBoolean failOnce = new AtomicBoolean(true);
+        Consumer consumer = builder(new Processor() {
+            @Override
+            public void process(byte[] data) {
+                process(data, null);
+            }
+
+            @Override
+            public void process(byte[] data, AMQP.BasicProperties properties) {
+                String body = new String(data, StandardCharsets.UTF_8);
+                if (body.equals("c") && failOnce.getAndSet(false)) {
+                    throw new IllegalStateException("first attempt fail");
+                }
+                processed.add(body);
+            }
+        }).deduplicate(DedupPolicy.byMessageId().capacity(1000)).build();
+
+        publishWithId("a", "a");
+        publishWithId("a", "a");
+        publishWithId("b", "b");
+        publishWithId(null, "no id");
+        publishWithId(null, "no id");
+        //Id of a failed message is not remembered, it is processed when redelivered after recovery.
+        publishWithId("c", "c");
+        assertTrue(Await.until(() -> processed.size() == 4 && !failOnce.get(), 2000));
+        broker.closeConnections(true);
+
+        assertTrue(Await.until(() -> processed.size() == 5, 2000));
+        assertTrue(Await.until(() -> metrics.getAckCount() == 6, 2000));
+        assertEquals(Arrays.asList("a", "b", "no id", "no id", "c"), processed);
+        assertEquals(1, metrics.getDuplicateCount());
+
+        ((DefaultConsumer) consumer).closeChannel();
+        assertEquals(0, broker.getMessageCount("q"));
+    }
+
+    private void publishWithId(String messageId, String body) {
+        AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder().messageId(messageId).build();
+        assertTrue(publisher.basicPublish("", "q", properties, body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
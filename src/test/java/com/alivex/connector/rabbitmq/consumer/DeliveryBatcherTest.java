@@ -0,0 +1,132 @@
+package com.alivex.connector.rabbitmq.consumer;
+
+import com.alivex.connector.rabbitmq.exception.RejectDeliveriesException;
+import com.alivex.connector.rabbitmq.metrics.InMemoryConnectorMetrics;
+import com.alivex.connector.rabbitmq.publisher.Publisher;
+import com.alivex.connector.rabbitmq.publisher.PublisherBuilder;
+import com.alivex.connector.rabbitmq.simulator.Await;
+import com.alivex.connector.rabbitmq.simulator.SimulatedBroker;
+import com.alivex.connector.rabbitmq.simulator.SimulatedConnectionManager;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DeliveryBatcherTest {
+
+    private SimulatedBroker broker;
+    private SimulatedConnectionManager connectionManager;
+    private InMemoryConnectorMetrics metrics;
+    private Publisher publisher;
+
+    @Before
+    public void setUp() {
+        broker = new SimulatedBroker();
+        broker.declareQueue("q");
+        connectionManager = new SimulatedConnectionManager(broker);
+        metrics = new InMemoryConnectorMetrics();
+        publisher = new PublisherBuilder()
+                .exchange("")
+                .routingKey("q")
+                .connectionManager(connectionManager)
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        publisher.closeChannel();
+        broker.close();
+    }
+
+    private ConsumerBuilder builder(BatchProcessor processor) {
+        return new ConsumerBuilder()
+                .queueName("q")
+                .qos(50)
+                .batchProcessor(processor, 10, 20)
+                .connectionManager(connectionManager)
+                .metrics(metrics);
+    }
+
+    private void publish(int count) {
+        for (int i = 0; i < count; i++) {
+            assertTrue(publisher.basicPublish("m" + i));
+        }
+    }
+
+    @Test
+    public void processedBatchesAreAcked() throws Exception {
+
+        AtomicInteger processed = new AtomicInteger();
+        DefaultConsumer consumer = (DefaultConsumer) builder(deliveries -> processed.addAndGet(deliveries.size())).build();
+
+        publish(35);
+        assertTrue(Await.until(() -> metrics.getAckCount() == 35, 2000));
+
+        consumer.closeChannel();
+        assertEquals(35, processed.get());
+        assertEquals(0, broker.getMessageCount("q"));
+    }
+
+    @Test
+    public void onlyRejectedDeliveriesAreRejected() throws Exception {
+
+        DefaultConsumer consumer = (DefaultConsumer) builder(deliveries -> {
+            List<Delivery> rejected = new ArrayList<>();
+            for (Delivery delivery : deliveries) {
+                if (new String(delivery.getBody(), StandardCharsets.UTF_8).endsWith("0")) {
+                    rejected.add(delivery);
+                }
+            }
+            if (!rejected.isEmpty()) {
+                throw new RejectDeliveriesException("bad message", rejected);
+            }
+        }).build();
+
+        publish(20);
+        assertTrue(Await.until(() -> metrics.getAckCount() == 18 && metrics.getRejectCount() == 2, 2000));
+
+        consumer.closeChannel();
+        assertEquals(0, broker.getMessageCount("q"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void retryCannotBeUsedWithBatchProcessor() throws Exception {
+        builder(deliveries -> { }).retry(RetryPolicy.requeue(3, 10, 100)).build();
+    }
+
+    @Test
+    public void closeWaitForRunningBatch() throws Exception {
+
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger processed = new AtomicInteger();
+        DefaultConsumer consumer = (DefaultConsumer) builder(deliveries -> {
+            started.countDown();
+            sleep(300);
+            processed.addAndGet(deliveries.size());
+        }).build();
+
+        publish(10);
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+
+        assertTrue(consumer.cancelAndClose(5000));
+        assertEquals(10, processed.get());
+        assertEquals(10, metrics.getAckCount());
+        assertEquals(0, broker.getMessageCount("q"));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.alivex.connector.rabbitmq.consumer;
+
+import com.alivex.connector.rabbitmq.metrics.InMemoryConnectorMetrics;
+import com.alivex.connector.rabbitmq.partition.Partitions;
+import com.alivex.connector.rabbitmq.publisher.PartitionedPublisher;
+import com.alivex.connector.rabbitmq.publisher.PublisherBuilder;
+import com.alivex.connector.rabbitmq.simulator.Await;
+import com.alivex.connector.rabbitmq.simulator.SimulatedBroker;
+import com.alivex.connector.rabbitmq.simulator.SimulatedConnectionManager;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PartitionedConsumerTest {
+
+    private static final int PARTITIONS = 4;
+
+    private SimulatedBroker broker;
+    private SimulatedConnectionManager connectionManager;
+    private InMemoryConnectorMetrics metrics;
+    private PartitionedPublisher publisher;
+
+    @Before
+    public void setUp() {
+        broker = new SimulatedBroker();
+        for (int i = 0; i < PARTITIONS; i++) {
+            broker.declareQueue(Partitions.name("p", i));
+        }
+        connectionManager = new SimulatedConnectionManager(broker);
+        metrics = new InMemoryConnectorMetrics();
+        publisher = new PublisherBuilder()
+                .exchange("")
+                .routingKey("p")
+                .connectionManager(connectionManager)
+                .buildPartitioned(PARTITIONS);
+    }
+
+    @After
+    public void tearDown() {
+        publisher.closeChannel();
+        broker.close();
+    }
+
+    private ConsumerBuilder builder(Processor processor) {
+        return new ConsumerBuilder()
+                .queueName("p")
+                .qos(5)
+                .processor(processor)
+                .connectionManager(connectionManager)
+                .metrics(metrics);
+    }
+
+    @Test
+    public void messagesOfKeyGoToItsPartitionInOrder() throws Exception {
+
+        int[] expected = new int[PARTITIONS];
+        for (int seq = 0; seq < 10; seq++) {
+            for (int key = 0; key < 20; key++) {
+                assertTrue(publisher.publish("key" + key, "key" + key + ":" + seq));
+                if (seq == 0) {
+                    expected[Partitions.partitionOf("key" + key, PARTITIONS)] += 10;
+                }
+            }
+        }
+
+        for (int i = 0; i < PARTITIONS; i++) {
+            assertEquals(expected[i], broker.getMessageCount(Partitions.name("p", i)));
+        }
+
+        Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+        PartitionedConsumer consumer = builder(data -> {
+            String[] value = new String(data, StandardCharsets.UTF_8).split(":");
+            received.computeIfAbsent(value[0], k -> new CopyOnWriteArrayList<>()).add(Integer.parseInt(value[1]));
+        }).buildPartitioned(PARTITIONS);
+
+        assertTrue(Await.until(() -> metrics.getAckCount() == 200, 2000));
+        consumer.closeChannel();
+
+        assertEquals(20, received.size());
+        for (List<Integer> sequence : received.values()) {
+            for (int i = 0; i < sequence.size(); i++) {
+                assertEquals(i, (int) sequence.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void closeDrainEveryPartitionUnderOneTimeout() throws Exception {
+
+        CountDownLatch started = new CountDownLatch(PARTITIONS);
+        AtomicInteger processed = new AtomicInteger();
+        PartitionedConsumer consumer = builder(data -> {
+            started.countDown();
+            sleep(200);
+            processed.incrementAndGet();
+        }).qos(1).buildPartitioned(PARTITIONS);
+
+        for (int i = 0; i < PARTITIONS; i++) {
+            publisher.publish(keyOfPartition(i), "m");
+        }
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+
+        //Partitions drain in parallel, closing one after another would take at least 800 ms.
+        long start = System.nanoTime();
+        consumer.closeChannel();
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue("Close took " + elapsedMs + " ms", elapsedMs < 600);
+        assertEquals(PARTITIONS, processed.get());
+        assertEquals(PARTITIONS, metrics.getAckCount());
+        for (int i = 0; i < PARTITIONS; i++) {
+            assertEquals(0, broker.getMessageCount(Partitions.name("p", i)));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void batchProcessorCannotBeUsedWithPartitions() throws Exception {
+        new ConsumerBuilder()
+                .queueName("p")
+                .batchProcessor(deliveries -> { }, 10, 10)
+                .connectionManager(connectionManager)
+                .buildPartitioned(PARTITIONS);
+    }
+
+    private static String keyOfPartition(int partition) {
+
+        for (int i = 0; ; i++) {
+            if (Partitions.partitionOf("key" + i, PARTITIONS) == partition) {
+                return "key" + i;
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.alivex.connector.rabbitmq.publisher;
+
+import com.alivex.connector.rabbitmq.consumer.ConsumerBuilder;
+import com.alivex.connector.rabbitmq.consumer.DefaultConsumer;
+import com.alivex.connector.rabbitmq.simulator.Await;
+import com.alivex.connector.rabbitmq.simulator.SimulatedBroker;
+import com.alivex.connector.rabbitmq.simulator.SimulatedConnectionManager;
+import com.rabbitmq.client.Consumer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConflatingPublisherTest {
+
+    private SimulatedBroker broker;
+    private SimulatedConnectionManager connectionManager;
+
+    @Before
+    public void setUp() {
+        broker = new SimulatedBroker();
+        broker.declareQueue("q");
+        connectionManager = new SimulatedConnectionManager(broker);
+    }
+
+    @After
+    public void tearDown() {
+        broker.close();
+    }
+
+    private ConflatingPublisher build() {
+        return new PublisherBuilder()
+                .exchange("")
+                .routingKey("q")
+                .connectionManager(connectionManager)
+                .buildConflating(5, 1000);
+    }
+
+    @Test
+    public void failedValueIsNeverPublishedAfterNewerOne() throws Exception {
+
+        Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+        Consumer consumer = new ConsumerBuilder()
+                .queueName("q")
+                .processor(data -> {
+                    String[] value = new String(data, StandardCharsets.UTF_8).split(":");
+                    received.computeIfAbsent(value[0], k -> new CopyOnWriteArrayList<>()).add(Integer.parseInt(value[1]));
+                })
+                .connectionManager(connectionManager)
+                .build();
+
+        ConflatingPublisher publisher = build();
+        broker.setNackRate(0.5);
+        for (int version = 0; version < 100; version++) {
+            for (int key = 0; key < 10; key++) {
+                publisher.publish("k" + key, "k" + key + ":" + version);
+            }
+            Thread.sleep(1);
+        }
+
+        broker.setNackRate(0);
+        assertTrue(Await.until(() -> publisher.getPendingCount() == 0 && received.size() == 10
+                && received.values().stream().allMatch(versions -> versions.get(versions.size() - 1) == 99), 5000));
+
+        for (List<Integer> versions : received.values()) {
+            for (int i = 1; i < versions.size(); i++) {
+                assertTrue("Older value published after newer one " + versions, versions.get(i) > versions.get(i - 1));
+            }
+        }
+
+        publisher.closeChannel();
+        ((DefaultConsumer) consumer).closeChannel();
+    }
+
+    @Test
+    public void valuesStayPendingWhileConnectionIsBlocked() throws Exception {
+
+        ConflatingPublisher publisher = build();
+        publisher.publish("k", "k:first");
+        assertTrue(Await.until(() -> broker.getMessageCount("q") == 1, 1000));
+
+        //Give blocked notification time to reach publisher connection.
+        broker.block("low on memory");
+        Thread.sleep(50);
+
+        for (int version = 0; version < 10; version++) {
+            publisher.publish("k", "k:" + version);
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, publisher.getPendingCount());
+        assertEquals(1, broker.getMessageCount("q"));
+
+        broker.unblock();
+        assertTrue(Await.until(() -> broker.getMessageCount("q") == 2, 2000));
+        assertEquals(0, publisher.getPendingCount());
+
+        publisher.closeChannel();
+    }
+
+    @Test
+    public void closeWaitsForConfirmOfPendingValues() throws Exception {
+
+        ConflatingPublisher publisher = new PublisherBuilder()
+                .exchange("")
+                .routingKey("q")
+                .connectionManager(connectionManager)
+                .buildConflating(60_000, 1000);
+
+        broker.setConfirmLatency(200);
+        for (int key = 0; key < 3; key++) {
+            publisher.publish("k" + key, "k" + key + ":0");
+        }
+
+        publisher.closeChannel();
+        assertEquals(3, publisher.getPublishedCount());
+        assertEquals(0, publisher.getDroppedCount());
+        assertEquals(3, broker.getMessageCount("q"));
+    }
+
+    @Test
+    public void valuesNotConfirmedBeforeCloseTimeoutAreDropped() throws Exception {
+
+        ConflatingPublisher publisher = new PublisherBuilder()
+                .exchange("")
+                .routingKey("q")
+                .connectionManager(connectionManager)
+                .buildConflating(60_000, 1000);
+
+        broker.setConfirmLatency(1000);
+        for (int key = 0; key < 3; key++) {
+            publisher.publish("k" + key, "k" + key + ":0");
+        }
+
+        publisher.closeChannel(100);
+        assertTrue(Await.until(() -> publisher.getDroppedCount() == 3, 2000));
+        assertEquals(0, publisher.getPendingCount());
+        assertEquals(0, publisher.getPublishedCount());
+    }
+}
@@ -0,0 +1,309 @@
+package com.alivex.connector.rabbitmq.publisher;
+
+import com.alivex.connector.rabbitmq.compression.Compression;
+import com.alivex.connector.rabbitmq.exception.PublishRejectedException;
+import com.alivex.connector.rabbitmq.metrics.InMemoryConnectorMetrics;
+import com.alivex.connector.rabbitmq.simulator.Await;
+import com.alivex.connector.rabbitmq.simulator.SimulatedBroker;
+import com.alivex.connector.rabbitmq.simulator.SimulatedConnectionManager;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DefaultPublisherTest {
+
+    private SimulatedBroker broker;
+    private SimulatedConnectionManager connectionManager;
+    private InMemoryConnectorMetrics metrics;
+
+    @Before
+    public void setUp() {
+        broker = new SimulatedBroker();
+        broker.declareQueue("q");
+        connectionManager = new SimulatedConnectionManager(broker);
+        metrics = new InMemoryConnectorMetrics();
+    }
+
+    @After
+    public void tearDown() {
+        broker.close();
+    }
+
+    private PublisherBuilder builder() {
+        return new PublisherBuilder()
+                .exchange("")
+                .routingKey("q")
+                .connectionManager(connectionManager)
+                .metrics(metrics);
+    }
+
+    @Test
+    public void ackedPublishIsConfirmedAndEnqueued() throws Exception {
+
+        Publisher publisher = builder().build();
+
+        assertTrue(publisher.basicPublish("{}"));
+        assertTrue(publisher.publishAsync("{}".getBytes()).get(1, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(true, true, true), publisher.basicPublishBatch(Arrays.asList("a", "b", "c")));
+        assertEquals(5, broker.getMessageCount("q"));
+        assertEquals(0, metrics.getInFlightCount());
+
+        publisher.closeChannel();
+    }
+
+    @Test
+    public void nackedPublishIsNotConfirmed() throws Exception {
+
+        Publisher publisher = builder().build();
+        broker.setNackRate(1);
+
+        assertFalse(publisher.basicPublish("{}"));
+        assertFalse(publisher.publishAsync("{}").get(1, TimeUnit.SECONDS));
+        assertEquals(2, metrics.getNackCount());
+        assertEquals(0, broker.getMessageCount("q"));
+
+        publisher.closeChannel();
+    }
+
+    @Test
+    public void confirmTimeoutCompleteAsFalse() throws Exception {
+
+        Publisher publisher = builder().build();
+        broker.setConfirmLatency(2000);
+
+        long start = System.nanoTime();
+        assertFalse(publisher.basicPublish("{}", 50));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        assertEquals(1, metrics.getConfirmTimeoutCount());
+
+        publisher.closeChannel();
+    }
+
+    @Test
+    public void blockedConnectionRejectTryPublish() throws Exception {
+
+        Publisher publisher = builder().build();
+        assertTrue(publisher.basicPublish("{}"));
+
+        broker.block("low on memory");
+        assertTrue(Await.until(() -> isRejected(publisher.tryPublish("{}")), 1000));
+
+        broker.unblock();
+        assertTrue(Await.until(() -> !isRejected(publisher.tryPublish("{}")), 1000));
+        assertTrue(publisher.basicPublish("{}", 1000));
+
+        publisher.closeChannel();
+    }
+
+    @Test
+    public void publishContinueAfterConnectionRecovery() throws Exception {
+
+        Publisher publisher = builder().build();
+        assertTrue(publisher.basicPublish("{}"));
+
+        broker.closeConnections(true);
+
+        assertTrue(Await.until(() -> publisher.basicPublish("{}"), 1000));
+        publisher.closeChannel();
+    }
+
+    @Test
+    public void sendFailureIsNotCountedAsConfirmTimeout() throws Exception {
+
+        Publisher publisher = builder().build();
+        assertTrue(publisher.basicPublish("{}"));
+
+        //Channel error is not recovered, publish on closed channel fail to send.
+        broker.closeChannels();
+        assertTrue(Await.until(() -> !publisher.publishAsync("{}").join(), 1000));
+
+        assertEquals(0, metrics.getConfirmTimeoutCount());
+        assertEquals(0, metrics.getInFlightCount());
+    }
+
+    @Test
+    public void pooledPublisherReplaceBrokenChannel() throws Exception {
+
+        Publisher publisher = builder().pooled(1, 2).build();
+        assertTrue(publisher.basicPublish("{}"));
+
+        broker.closeChannels();
+
+        assertTrue(Await.until(() -> publisher.basicPublish("{}"), 1000));
+        publisher.closeChannel();
+    }
+
+    @Test
+    public void pooledPublisherDoesNotWaitPastTimeout() throws Exception {
+
+        Publisher publisher = builder().pooled(1, 1).build();
+        broker.setConfirmLatency(3000);
+
+        //Batch keep its channel until confirm arrive, pool is exhausted meanwhile.
+        CompletableFuture<List<Boolean>> batch = CompletableFuture.supplyAsync(() -> publisher.basicPublishBatch(Arrays.asList("a"), 5000));
+        Thread.sleep(100);
+
+        long start = System.nanoTime();
+        assertFalse(publisher.basicPublish("{}", 100));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+
+        assertEquals(Arrays.asList(true), batch.get(5, TimeUnit.SECONDS));
+        publisher.closeChannel();
+    }
+
+    @Test
+    public void pooledPublisherWaitForConfirmWithoutHoldingChannel() throws Exception {
+
+        Publisher publisher = builder().pooled(1, 1).build();
+        broker.setConfirmLatency(300);
+
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(CompletableFuture.supplyAsync(() -> publisher.basicPublish("{}", 2000)));
+        }
+
+        for (CompletableFuture<Boolean> result : results) {
+            assertTrue(result.get(1, TimeUnit.SECONDS));
+        }
+        publisher.closeChannel();
+    }
+
+    @Test
+    public void waitForWindowCountTowardPublishTimeout() throws Exception {
+
+        Publisher publisher = builder().maxInFlight(1).build();
+        broker.setConfirmLatency(2000);
+
+        //First round warm up expiry path, only the last one is measured.
+        long elapsedMs = 0;
+        for (int round = 0; round < 3; round++) {
+
+            //Hold the only permit until its confirm expire.
+            CompletableFuture<Boolean> first = publisher.publishAsync("{}", 200);
+
+            long start = System.nanoTime();
+            assertFalse(publisher.basicPublish("{}", 300));
+            elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertFalse(first.get(1, TimeUnit.SECONDS));
+        }
+
+        //Waiting a full timeout for permit and again for confirm would take about 500 ms.
+        assertTrue("Publish took " + elapsedMs + " ms", elapsedMs < 420);
+
+        publisher.closeChannel();
+    }
+
+    @Test
+    public void batchDoesNotWaitPastItsTimeout() throws Exception {
+
+        Publisher publisher = builder().build();
+        broker.setConfirmLatency(5000);
+
+        long start = System.nanoTime();
+        assertEquals(Arrays.asList(false, false, false), publisher.basicPublishBatch(Arrays.asList("a", "b", "c"), 200));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue("Batch took " + elapsedMs + " ms", elapsedMs < 1000);
+        assertEquals(0, metrics.getInFlightCount());
+
+        publisher.closeChannel();
+    }
+
+    @Test
+    public void publisherWithOpenChannelCanBeSerialized() throws Exception {
+
+        Publisher publisher = builder().maxInFlight(10).compression(Compression.GZIP, 16).build();
+        assertTrue(publisher.basicPublish("{}"));
+        assertTrue(publisher.basicPublish("", "q", null, "{}".getBytes()));
+
+        Publisher copy = roundTrip(publisher);
+        assertTrue(copy instanceof DefaultPublisher);
+
+        publisher.closeChannel();
+    }
+
+    @Test
+    public void pooledPublisherCanBeSerialized() throws Exception {
+
+        Publisher publisher = builder().pooled(1, 2).build();
+        assertTrue(publisher.basicPublish("{}"));
+
+        Publisher copy = roundTrip(publisher);
+        assertTrue(copy instanceof PooledPublisher);
+
+        publisher.closeChannel();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void publishToMissingExchangeFailFastWithoutLeakingChannel() throws Exception {
+
+        Publisher publisher = builder().build();
+        byte[] data = "{}".getBytes();
+        assertTrue(publisher.basicPublish("", "q", null, data));
+        int openChannels = broker.getChannelCount();
+        int createdChannels = broker.getCreatedChannelCount();
+
+        for (int i = 0; i < 100; i++) {
+            assertFalse(publisher.basicPublish("missing", "k", null, data));
+            assertFalse(publisher.publishAsync("missing", "k", null, data).get(1, TimeUnit.SECONDS));
+        }
+
+        //Missing exchange is checked once, publish channel stay open.
+        assertEquals(openChannels, broker.getChannelCount());
+        assertEquals(createdChannels + 1, broker.getCreatedChannelCount());
+        assertTrue(publisher.basicPublish("", "q", null, data));
+
+        //Exchange declared later is accepted once missing result expire.
+        broker.declareExchange("missing", "direct");
+        broker.bindQueue("q", "missing", "k");
+        assertTrue(Await.until(() -> publisher.basicPublish("missing", "k", null, data), 3000));
+        assertEquals(openChannels, broker.getChannelCount());
+
+        publisher.closeChannel();
+    }
+
+    static <T> T roundTrip(T object) throws Exception {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (T) in.readObject();
+        }
+    }
+
+    /**
+     * Rejection complete future right away, a publish accepted before blocked notification is hold by broker instead.
+     */
+    private static boolean isRejected(CompletableFuture<Boolean> future) {
+
+        if (!future.isCompletedExceptionally()) {
+            return false;
+        }
+
+        try {
+            future.join();
+            return false;
+        } catch (CompletionException e) {
+            return e.getCause() instanceof PublishRejectedException
+                    && ((PublishRejectedException) e.getCause()).getReason() == PublishRejectedException.Reason.CONNECTION_BLOCKED;
+        }
+    }
+}
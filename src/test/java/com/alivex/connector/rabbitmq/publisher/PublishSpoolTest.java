@@ -0,0 +1,147 @@
+package com.alivex.connector.rabbitmq.publisher;
+
+import com.alivex.connector.rabbitmq.consumer.ConsumerBuilder;
+import com.alivex.connector.rabbitmq.consumer.DefaultConsumer;
+import com.alivex.connector.rabbitmq.simulator.Await;
+import com.alivex.connector.rabbitmq.simulator.SimulatedBroker;
+import com.alivex.connector.rabbitmq.simulator.SimulatedConnectionManager;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PublishSpoolTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SimulatedBroker broker;
+    private SimulatedConnectionManager connectionManager;
+    private List<String> received;
+    private DefaultConsumer consumer;
+
+    @Before
+    public void setUp() {
+        broker = new SimulatedBroker();
+        broker.declareQueue("q");
+        connectionManager = new SimulatedConnectionManager(broker);
+        received = new CopyOnWriteArrayList<>();
+    }
+
+    @After
+    public void tearDown() {
+
+        if (consumer != null) {
+            consumer.closeChannel();
+        }
+        broker.close();
+    }
+
+    private PublisherBuilder builder(Path directory) {
+        return new PublisherBuilder()
+                .exchange("")
+                .routingKey("q")
+                .connectionManager(connectionManager)
+                .spool(directory, 64 * 1024);
+    }
+
+    private void consume() throws IOException {
+        consumer = (DefaultConsumer) new ConsumerBuilder()
+                .queueName("q")
+                .processor(data -> received.add(new String(data, StandardCharsets.UTF_8)))
+                .connectionManager(connectionManager)
+                .build();
+    }
+
+    @Test
+    public void nackedMessageIsKeptAndReplayedOnRecovery() throws Exception {
+
+        Publisher publisher = builder(folder.newFolder().toPath()).build();
+        broker.setNackRate(1);
+
+        //Message is kept in spool, publish report it as accepted.
+        assertTrue(publisher.basicPublish("first"));
+        assertEquals(0, broker.getMessageCount("q"));
+
+        broker.setNackRate(0);
+        broker.closeConnections(true);
+        assertTrue(Await.until(() -> broker.getMessageCount("q") == 1, 2000));
+
+        assertTrue(publisher.basicPublish("second"));
+        consume();
+        assertTrue(Await.until(() -> received.size() == 2, 2000));
+        assertEquals(Arrays.asList("first", "second"), received);
+
+        //Confirmed record is not replayed again.
+        broker.closeConnections(true);
+        Thread.sleep(100);
+        assertEquals(2, received.size());
+
+        publisher.closeChannel();
+    }
+
+    @Test
+    public void failedSendIsKeptAndReplayedBeforeNextPublish() throws Exception {
+
+        PublisherBuilder builder = builder(folder.newFolder().toPath());
+        Publisher publisher = builder.build();
+        assertTrue(publisher.basicPublish("first"));
+
+        //Channel of publisher is gone, publish fail after message is recorded.
+        broker.closeConnections(false);
+        assertTrue(publisher.basicPublish("second"));
+
+        //Publisher share spool of builder, its new channel replay message before its own.
+        Publisher next = builder.build();
+        assertTrue(next.basicPublish("third"));
+
+        consume();
+        assertTrue(Await.until(() -> received.size() == 3, 2000));
+        assertEquals(Arrays.asList("first", "second", "third"), received);
+
+        next.closeChannel();
+    }
+
+    @Test
+    public void unconfirmedMessageOfPreviousRunIsReplayedInOrder() throws Exception {
+
+        //Records never confirmed, copy of their segment is what a crashed process leave behind.
+        Path crashed = folder.newFolder().toPath();
+        PublishSpool previous = PublishSpool.open(crashed, 64 * 1024);
+        previous.append("", "q", "first".getBytes(StandardCharsets.UTF_8));
+        previous.append("", "q", "second".getBytes(StandardCharsets.UTF_8));
+
+        Path restarted = folder.newFolder().toPath();
+        copySegments(crashed, restarted);
+
+        Publisher publisher = builder(restarted).build();
+        assertTrue(publisher.basicPublish("third"));
+
+        consume();
+        assertTrue(Await.until(() -> received.size() == 3, 2000));
+        assertEquals(Arrays.asList("first", "second", "third"), received);
+
+        publisher.closeChannel();
+    }
+
+    private static void copySegments(Path from, Path to) throws IOException {
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(from, "spool-*.log")) {
+            for (Path file : stream) {
+                Files.copy(file, to.resolve(file.getFileName()));
+            }
+        }
+    }
+}
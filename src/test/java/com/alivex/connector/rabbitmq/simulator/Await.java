@@ -0,0 +1,31 @@
+package com.alivex.connector.rabbitmq.simulator;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Poll a condition of asynchronous simulated broker until it is true or timeout is reached.
+ */
+public final class Await {
+
+    private Await() {
+    }
+
+    /**
+     * @param condition
+     * @param timeoutMs
+     * @return true when condition is true before timeout.
+     * @throws InterruptedException
+     */
+    public static boolean until(BooleanSupplier condition, long timeoutMs) throws InterruptedException {
+
+        long deadline = System.nanoTime() + timeoutMs * 1_000_000L;
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+
+        return true;
+    }
+}
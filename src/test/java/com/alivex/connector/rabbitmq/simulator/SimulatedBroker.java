@@ -0,0 +1,331 @@
+package com.alivex.connector.rabbitmq.simulator;
+
+import com.rabbitmq.client.BuiltinExchangeType;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-JVM stand-in of RabbitMQ broker for load and recovery testing without a real server.
+ * Support exchanges, queues, publisher confirms, mandatory returns, prefetch and acknowledgement.
+ * Fault injection: confirm latency, nack rate, connection.blocked and forced channel or connection shutdown.
+ * Nack decision use a seeded random so a run can be repeated.
+ *
+ * Confirms, returns and blocked notifications are sent from a single broker thread in publish order,
+ * deliveries of each channel are sent from a dedicated thread of that channel like amqp client does.
+ */
+public class SimulatedBroker implements Closeable {
+
+    private final Map<String, SimulatedExchange> exchanges = new ConcurrentHashMap<>();
+    private final Map<String, SimulatedQueue> queues = new ConcurrentHashMap<>();
+    private final Set<SimulatedConnection> connections = ConcurrentHashMap.newKeySet();
+    private final List<Runnable> heldPublishes = new ArrayList<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final AtomicInteger createdChannelCount = new AtomicInteger();
+    private final ScheduledExecutorService scheduler;
+    private final Random random;
+
+    private volatile long confirmLatency;
+    private volatile double nackRate;
+    private volatile boolean blocked;
+
+    public SimulatedBroker() {
+        this(0L);
+    }
+
+    /**
+     * @param seed of random used to decide which publish is nack.
+     */
+    public SimulatedBroker(long seed) {
+
+        this.random = new Random(seed);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "simulated-broker");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        declareExchange("amq.direct", BuiltinExchangeType.DIRECT.getType());
+        declareExchange("amq.fanout", BuiltinExchangeType.FANOUT.getType());
+        declareExchange("amq.topic", BuiltinExchangeType.TOPIC.getType());
+    }
+
+    /**
+     * Delay between publish and its confirm, return of unroutable message is delay the same.
+     * If not specify default is 0.
+     * @param confirmLatency in milliseconds.
+     */
+    public void setConfirmLatency(long confirmLatency) {
+        this.confirmLatency = confirmLatency;
+    }
+
+    /**
+     * Fraction of publish confirm with basic.nack instead of basic.ack, nack message is not enqueue.
+     * If not specify default is 0.
+     * @param nackRate between 0 and 1.
+     */
+    public void setNackRate(double nackRate) {
+        this.nackRate = nackRate;
+    }
+
+    /**
+     * Send connection.blocked to every connection, publish is hold until unblock like broker stop reading socket.
+     * @param reason
+     */
+    public void block(String reason) {
+
+        blocked = true;
+        for (SimulatedConnection connection : connections) {
+            scheduler.execute(() -> connection.fireBlocked(reason));
+        }
+    }
+
+    /**
+     * Send connection.unblocked to every connection then process publish hold while blocked in order.
+     */
+    public void unblock() {
+
+        List<Runnable> held;
+        synchronized (heldPublishes) {
+            blocked = false;
+            held = new ArrayList<>(heldPublishes);
+            heldPublishes.clear();
+        }
+
+        for (SimulatedConnection connection : connections) {
+            scheduler.execute(connection::fireUnblocked);
+        }
+
+        for (Runnable publish : held) {
+            publish.run();
+        }
+    }
+
+    public boolean isBlocked() {
+        return blocked;
+    }
+
+    /**
+     * Close every open channel with channel error 320, connections remain open.
+     * Unacked message is requeue and outstanding confirm is never send.
+     */
+    public void closeChannels() {
+
+        for (SimulatedConnection connection : connections) {
+            connection.closeChannelsByBroker(320, "CONNECTION_FORCED - channel closed by simulator");
+        }
+    }
+
+    /**
+     * Close every connection with connection error 320.
+     * @param recover true to reopen connection, channels and consumers right after like automatic recovery does.
+     */
+    public void closeConnections(boolean recover) {
+
+        for (SimulatedConnection connection : new ArrayList<>(connections)) {
+            connection.closeByBroker(320, "CONNECTION_FORCED - connection closed by simulator", recover);
+        }
+    }
+
+    public SimulatedConnection newConnection() {
+        return newConnection("simulated-" + connectionCount.incrementAndGet());
+    }
+
+    public SimulatedConnection newConnection(String clientProvidedName) {
+
+        SimulatedConnection connection = new SimulatedConnection(this, clientProvidedName);
+        connections.add(connection);
+        return connection;
+    }
+
+    public void declareExchange(String name, String type) {
+        exchanges.computeIfAbsent(name, n -> new SimulatedExchange(n, type));
+    }
+
+    public void declareQueue(String name) {
+        declareQueue(name, Collections.emptyMap());
+    }
+
+    public void declareQueue(String name, Map<String, Object> arguments) {
+        queues.computeIfAbsent(name, n -> new SimulatedQueue(this, n, arguments == null ? Collections.emptyMap() : arguments));
+    }
+
+    public void bindQueue(String queue, String exchange, String routingKey) {
+
+        SimulatedExchange simulatedExchange = exchanges.get(exchange);
+        SimulatedQueue simulatedQueue = queues.get(queue);
+        if (simulatedExchange == null || simulatedQueue == null) {
+            throw new IllegalArgumentException("Exchange " + exchange + " and queue " + queue + " must be declare before bind");
+        }
+
+        simulatedExchange.bind(simulatedQueue, routingKey);
+    }
+
+    /**
+     * @param queue
+     * @return number of ready message, -1 when queue does not exist.
+     */
+    public int getMessageCount(String queue) {
+
+        SimulatedQueue simulatedQueue = queues.get(queue);
+        return simulatedQueue == null ? -1 : simulatedQueue.getMessageCount();
+    }
+
+    /**
+     * @return number of channel open on every connection.
+     */
+    public int getChannelCount() {
+
+        int count = 0;
+        for (SimulatedConnection connection : connections) {
+            count += connection.getChannelCount();
+        }
+        return count;
+    }
+
+    /**
+     * @return number of channel created since broker start, including closed ones.
+     */
+    public int getCreatedChannelCount() {
+        return createdChannelCount.get();
+    }
+
+    public int getConsumerCount(String queue) {
+
+        SimulatedQueue simulatedQueue = queues.get(queue);
+        return simulatedQueue == null ? 0 : simulatedQueue.getConsumerCount();
+    }
+
+    @Override
+    public void close() {
+
+        for (SimulatedConnection connection : new ArrayList<>(connections)) {
+            connection.closeByBroker(320, "CONNECTION_FORCED - broker shutdown", false);
+        }
+
+        scheduler.shutdownNow();
+    }
+
+    SimulatedExchange getExchange(String name) {
+        return exchanges.get(name);
+    }
+
+    SimulatedQueue getQueue(String name) {
+        return queues.get(name);
+    }
+
+    void deleteExchange(String name) {
+        exchanges.remove(name);
+    }
+
+    int deleteQueue(String name) {
+
+        SimulatedQueue queue = queues.remove(name);
+        if (queue == null) {
+            return 0;
+        }
+
+        for (SimulatedExchange exchange : exchanges.values()) {
+            exchange.unbindAll(queue);
+        }
+
+        return queue.purge();
+    }
+
+    void channelCreated() {
+        createdChannelCount.incrementAndGet();
+    }
+
+    void removeConnection(SimulatedConnection connection) {
+        connections.remove(connection);
+    }
+
+    void schedule(long delay, Runnable task) {
+
+        if (delay <= 0) {
+            scheduler.execute(task);
+        } else {
+            scheduler.schedule(task, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    long getConfirmLatency() {
+        return confirmLatency;
+    }
+
+    boolean nextNack() {
+
+        double rate = nackRate;
+        if (rate <= 0) {
+            return false;
+        }
+
+        synchronized (random) {
+            return random.nextDouble() < rate;
+        }
+    }
+
+    /**
+     * Run publish now, or hold it until unblock while broker is blocked.
+     * @param publish
+     */
+    void accept(Runnable publish) {
+
+        synchronized (heldPublishes) {
+            if (blocked) {
+                heldPublishes.add(publish);
+                return;
+            }
+        }
+
+        publish.run();
+    }
+
+    /**
+     * @param exchange
+     * @param routingKey
+     * @return queues the message route to, null when exchange does not exist.
+     */
+    Set<SimulatedQueue> route(String exchange, String routingKey) {
+
+        Set<SimulatedQueue> destinations = new LinkedHashSet<>();
+        if (exchange.isEmpty()) {
+            SimulatedQueue queue = queues.get(routingKey);
+            if (queue != null) {
+                destinations.add(queue);
+            }
+            return destinations;
+        }
+
+        SimulatedExchange simulatedExchange = exchanges.get(exchange);
+        if (simulatedExchange == null) {
+            return null;
+        }
+
+        simulatedExchange.route(routingKey, destinations);
+        return destinations;
+    }
+
+    void deadLetter(String exchange, String routingKey, SimulatedMessage message) {
+
+        Set<SimulatedQueue> destinations = route(exchange, routingKey);
+        if (destinations == null) {
+            return;
+        }
+
+        SimulatedMessage deadLettered = new SimulatedMessage(exchange, routingKey, message.getProperties(), message.getBody(), false);
+        for (SimulatedQueue queue : destinations) {
+            queue.enqueue(deadLettered.copy());
+        }
+    }
+}
@@ -0,0 +1,952 @@
+package com.alivex.connector.rabbitmq.simulator;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.AlreadyClosedException;
+import com.rabbitmq.client.BuiltinExchangeType;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Command;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.Consumer;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.GetResponse;
+import com.rabbitmq.client.Method;
+import com.rabbitmq.client.ReturnListener;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+import com.rabbitmq.client.impl.AMQImpl;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Channel of simulated connection.
+ * Delivery tags keep increasing across recovery and ack of a tag delivered before recovery is ignore, like amqp client recovery does.
+ * Ack of an unknown delivery tag close channel with 406 PRECONDITION_FAILED like a real broker.
+ */
+public class SimulatedChannel implements Channel {
+
+    private static final Logger LOG = Logger.getLogger(SimulatedChannel.class.getName());
+
+    private static final int REPLY_NOT_FOUND = 404;
+    private static final int REPLY_PRECONDITION_FAILED = 406;
+    private static final int REPLY_NO_ROUTE = 312;
+
+    private enum Settlement {
+        ACK, REQUEUE, DEAD_LETTER
+    }
+
+    private final SimulatedConnection connection;
+    private final SimulatedBroker broker;
+    private final int channelNumber;
+
+    private final Object publishLock = new Object();
+    private final Object deliveryLock = new Object();
+    private final AtomicLong deliveryTags = new AtomicLong();
+    private final ConcurrentNavigableMap<Long, Unacked> unacked = new ConcurrentSkipListMap<>();
+    private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicInteger globalUnackedCount = new AtomicInteger();
+    private final List<ConfirmListener> confirmListeners = new CopyOnWriteArrayList<>();
+    private final List<ReturnListener> returnListeners = new CopyOnWriteArrayList<>();
+    private final List<ShutdownListener> shutdownListeners = new CopyOnWriteArrayList<>();
+
+    private volatile ShutdownSignalException closeReason;
+    private volatile int epoch;
+    private volatile boolean confirmMode;
+    private volatile int prefetchCount;
+    private volatile int globalPrefetchCount;
+    private volatile long staleDeliveryTag;
+    private volatile ExecutorService dispatcher;
+    private volatile Consumer defaultConsumer;
+    private long nextPublishSeqNo = 1;
+
+    SimulatedChannel(SimulatedConnection connection, int channelNumber) {
+        this.connection = connection;
+        this.broker = connection.getBroker();
+        this.channelNumber = channelNumber;
+        this.dispatcher = newDispatcher();
+    }
+
+    private ExecutorService newDispatcher() {
+
+        return Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, connection.getClientProvidedName() + "-channel-" + channelNumber);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public int getChannelNumber() {
+        return channelNumber;
+    }
+
+    @Override
+    public Connection getConnection() {
+        return connection;
+    }
+
+    @Override
+    public void basicPublish(String exchange, String routingKey, BasicProperties props, byte[] body) throws IOException {
+        basicPublish(exchange, routingKey, false, false, props, body);
+    }
+
+    @Override
+    public void basicPublish(String exchange, String routingKey, boolean mandatory, BasicProperties props, byte[] body) throws IOException {
+        basicPublish(exchange, routingKey, mandatory, false, props, body);
+    }
+
+    @Override
+    public void basicPublish(String exchange, String routingKey, boolean mandatory, boolean immediate, BasicProperties props, byte[] body) throws IOException {
+
+        //Copy body the same way amqp client serialize it before return, caller is free to reuse its array.
+        final SimulatedMessage message = new SimulatedMessage(exchange, routingKey,
+                props == null ? new AMQP.BasicProperties() : props, Arrays.copyOf(body, body.length), false);
+
+        synchronized (publishLock) {
+            ensureOpen();
+            final long seqNo = confirmMode ? nextPublishSeqNo++ : 0;
+            final int publishEpoch = epoch;
+            broker.accept(() -> route(message, mandatory, seqNo, publishEpoch));
+        }
+    }
+
+    private void route(SimulatedMessage message, boolean mandatory, long seqNo, int publishEpoch) {
+
+        Set<SimulatedQueue> destinations = broker.route(message.getExchange(), message.getRoutingKey());
+        if (destinations == null) {
+            closeByBroker(REPLY_NOT_FOUND, "NOT_FOUND - no exchange '" + message.getExchange() + "'");
+            return;
+        }
+
+        boolean nack = confirmMode && broker.nextNack();
+        if (!nack) {
+            for (SimulatedQueue queue : destinations) {
+                queue.enqueue(message.copy());
+            }
+        }
+
+        long latency = broker.getConfirmLatency();
+        if (!nack && mandatory && destinations.isEmpty()) {
+            broker.schedule(latency, () -> fireReturn(message, publishEpoch));
+        }
+
+        if (seqNo > 0) {
+            broker.schedule(latency, () -> fireConfirm(seqNo, !nack, publishEpoch));
+        }
+    }
+
+    private void fireConfirm(long seqNo, boolean ack, int publishEpoch) {
+
+        if (publishEpoch != epoch || !isOpen()) {
+            return;
+        }
+
+        for (ConfirmListener listener : confirmListeners) {
+            try {
+                if (ack) {
+                    listener.handleAck(seqNo, false);
+                } else {
+                    listener.handleNack(seqNo, false);
+                }
+            } catch (IOException | RuntimeException e) {
+                LOG.log(Level.WARNING, "Confirm listener failed", e);
+            }
+        }
+    }
+
+    private void fireReturn(SimulatedMessage message, int publishEpoch) {
+
+        if (publishEpoch != epoch || !isOpen()) {
+            return;
+        }
+
+        for (ReturnListener listener : returnListeners) {
+            try {
+                listener.handleReturn(REPLY_NO_ROUTE, "NO_ROUTE", message.getExchange(), message.getRoutingKey(), message.getProperties(), message.getBody());
+            } catch (IOException | RuntimeException e) {
+                LOG.log(Level.WARNING, "Return listener failed", e);
+            }
+        }
+    }
+
+    /**
+     * Called by queue dispatch when subscription has room in its prefetch window.
+     * @param subscription
+     * @param message
+     */
+    void deliver(final Subscription subscription, final SimulatedMessage message) {
+
+        final long deliveryTag;
+        synchronized (deliveryLock) {
+
+            if (!isOpen()) {
+                subscription.getQueue().requeue(message);
+                return;
+            }
+
+            deliveryTag = deliveryTags.incrementAndGet();
+            if (!subscription.isAutoAck()) {
+                unacked.put(deliveryTag, new Unacked(subscription, subscription.getQueue(), message));
+                subscription.getUnackedCount().incrementAndGet();
+                globalUnackedCount.incrementAndGet();
+            }
+        }
+
+        final Envelope envelope = new Envelope(deliveryTag, message.isRedelivered(), message.getExchange(), message.getRoutingKey());
+        dispatch(() -> {
+            try {
+                subscription.getConsumer().handleDelivery(subscription.getConsumerTag(), envelope, message.getProperties(), message.getBody());
+            } catch (IOException | RuntimeException e) {
+                LOG.log(Level.WARNING, "Consumer failed to handle delivery", e);
+            }
+        });
+    }
+
+    boolean hasGlobalCapacity() {
+
+        int limit = globalPrefetchCount;
+        return limit == 0 || globalUnackedCount.get() < limit;
+    }
+
+    private void dispatch(Runnable task) {
+
+        try {
+            dispatcher.execute(task);
+        } catch (RejectedExecutionException e) {
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.log(Level.FINE, "Channel dispatcher is shutdown, drop callback.");
+            }
+        }
+    }
+
+    @Override
+    public void basicAck(long deliveryTag, boolean multiple) throws IOException {
+        settle(deliveryTag, multiple, Settlement.ACK);
+    }
+
+    @Override
+    public void basicNack(long deliveryTag, boolean multiple, boolean requeue) throws IOException {
+        settle(deliveryTag, multiple, requeue ? Settlement.REQUEUE : Settlement.DEAD_LETTER);
+    }
+
+    @Override
+    public void basicReject(long deliveryTag, boolean requeue) throws IOException {
+        settle(deliveryTag, false, requeue ? Settlement.REQUEUE : Settlement.DEAD_LETTER);
+    }
+
+    private void settle(long deliveryTag, boolean multiple, Settlement settlement) {
+
+        ensureOpen();
+
+        List<Unacked> settled = new ArrayList<>();
+        if (multiple) {
+            Map.Entry<Long, Unacked> entry;
+            while ((entry = unacked.firstEntry()) != null && (deliveryTag == 0 || entry.getKey() <= deliveryTag)) {
+                if (unacked.remove(entry.getKey(), entry.getValue())) {
+                    settled.add(entry.getValue());
+                }
+            }
+        } else {
+            Unacked single = unacked.remove(deliveryTag);
+            if (single == null) {
+                if (deliveryTag > staleDeliveryTag) {
+                    broker.schedule(0, () -> closeByBroker(REPLY_PRECONDITION_FAILED, "PRECONDITION_FAILED - unknown delivery tag " + deliveryTag));
+                }
+                return;
+            }
+            settled.add(single);
+        }
+
+        Set<SimulatedQueue> affected = new LinkedHashSet<>();
+        for (int i = settled.size() - 1; i >= 0; i--) {
+            Unacked entry = settled.get(i);
+            entry.release();
+            affected.add(entry.queue);
+
+            if (settlement == Settlement.REQUEUE) {
+                entry.queue.requeue(entry.message.redeliver());
+            } else if (settlement == Settlement.DEAD_LETTER) {
+                entry.queue.deadLetter(entry.message);
+            }
+        }
+
+        for (Subscription subscription : subscriptions.values()) {
+            affected.add(subscription.getQueue());
+        }
+
+        for (SimulatedQueue queue : affected) {
+            queue.dispatch();
+        }
+    }
+
+    @Override
+    public String basicConsume(String queue, Consumer callback) throws IOException {
+        return basicConsume(queue, false, "", false, false, null, callback);
+    }
+
+    @Override
+    public String basicConsume(String queue, boolean autoAck, Consumer callback) throws IOException {
+        return basicConsume(queue, autoAck, "", false, false, null, callback);
+    }
+
+    @Override
+    public String basicConsume(String queue, boolean autoAck, Map<String, Object> arguments, Consumer callback) throws IOException {
+        return basicConsume(queue, autoAck, "", false, false, arguments, callback);
+    }
+
+    @Override
+    public String basicConsume(String queue, boolean autoAck, String consumerTag, Consumer callback) throws IOException {
+        return basicConsume(queue, autoAck, consumerTag, false, false, null, callback);
+    }
+
+    @Override
+    public String basicConsume(String queue, boolean autoAck, String consumerTag, boolean noLocal, boolean exclusive, Map<String, Object> arguments, Consumer callback) throws IOException {
+
+        ensureOpen();
+        SimulatedQueue simulatedQueue = requireQueue(queue);
+
+        final String tag = consumerTag == null || consumerTag.isEmpty() ? "amq.ctag-" + UUID.randomUUID() : consumerTag;
+        Subscription subscription = new Subscription(this, simulatedQueue, tag, callback, autoAck, prefetchCount);
+        if (subscriptions.putIfAbsent(tag, subscription) != null) {
+            throw new IOException("Consumer tag " + tag + " is already in use on channel " + channelNumber);
+        }
+
+        dispatch(() -> callback.handleConsumeOk(tag));
+        simulatedQueue.addSubscription(subscription);
+        simulatedQueue.dispatch();
+        return tag;
+    }
+
+    @Override
+    public void basicCancel(String consumerTag) throws IOException {
+
+        ensureOpen();
+        final Subscription subscription = subscriptions.remove(consumerTag);
+        if (subscription == null) {
+            throw new IOException("Unknown consumerTag " + consumerTag);
+        }
+
+        subscription.getQueue().removeSubscription(subscription);
+        dispatch(() -> subscription.getConsumer().handleCancelOk(consumerTag));
+    }
+
+    @Override
+    public GetResponse basicGet(String queue, boolean autoAck) throws IOException {
+
+        ensureOpen();
+        SimulatedQueue simulatedQueue = requireQueue(queue);
+        SimulatedMessage message = simulatedQueue.poll();
+        if (message == null) {
+            return null;
+        }
+
+        long deliveryTag = deliveryTags.incrementAndGet();
+        if (!autoAck) {
+            unacked.put(deliveryTag, new Unacked(null, simulatedQueue, message));
+        }
+
+        Envelope envelope = new Envelope(deliveryTag, message.isRedelivered(), message.getExchange(), message.getRoutingKey());
+        return new GetResponse(envelope, message.getProperties(), message.getBody(), simulatedQueue.getMessageCount());
+    }
+
+    @Override
+    public void basicQos(int prefetchSize, int prefetchCount, boolean global) throws IOException {
+
+        ensureOpen();
+        if (!global) {
+            this.prefetchCount = prefetchCount;
+            return;
+        }
+
+        this.globalPrefetchCount = prefetchCount;
+        for (Subscription subscription : subscriptions.values()) {
+            subscription.getQueue().dispatch();
+        }
+    }
+
+    @Override
+    public void basicQos(int prefetchCount, boolean global) throws IOException {
+        basicQos(0, prefetchCount, global);
+    }
+
+    @Override
+    public void basicQos(int prefetchCount) throws IOException {
+        basicQos(0, prefetchCount, false);
+    }
+
+    @Override
+    public AMQP.Confirm.SelectOk confirmSelect() throws IOException {
+
+        ensureOpen();
+        confirmMode = true;
+        return new AMQImpl.Confirm.SelectOk();
+    }
+
+    @Override
+    public long getNextPublishSeqNo() {
+
+        synchronized (publishLock) {
+            return confirmMode ? nextPublishSeqNo : 0;
+        }
+    }
+
+    @Override
+    public AMQP.Exchange.DeclareOk exchangeDeclare(String exchange, String type) throws IOException {
+        return exchangeDeclare(exchange, type, false, false, false, null);
+    }
+
+    @Override
+    public AMQP.Exchange.DeclareOk exchangeDeclare(String exchange, BuiltinExchangeType type) throws IOException {
+        return exchangeDeclare(exchange, type.getType(), false, false, false, null);
+    }
+
+    @Override
+    public AMQP.Exchange.DeclareOk exchangeDeclare(String exchange, String type, boolean durable) throws IOException {
+        return exchangeDeclare(exchange, type, durable, false, false, null);
+    }
+
+    @Override
+    public AMQP.Exchange.DeclareOk exchangeDeclare(String exchange, BuiltinExchangeType type, boolean durable) throws IOException {
+        return exchangeDeclare(exchange, type.getType(), durable, false, false, null);
+    }
+
+    @Override
+    public AMQP.Exchange.DeclareOk exchangeDeclare(String exchange, String type, boolean durable, boolean autoDelete, Map<String, Object> arguments) throws IOException {
+        return exchangeDeclare(exchange, type, durable, autoDelete, false, arguments);
+    }
+
+    @Override
+    public AMQP.Exchange.DeclareOk exchangeDeclare(String exchange, BuiltinExchangeType type, boolean durable, boolean autoDelete, Map<String, Object> arguments) throws IOException {
+        return exchangeDeclare(exchange, type.getType(), durable, autoDelete, false, arguments);
+    }
+
+    @Override
+    public AMQP.Exchange.DeclareOk exchangeDeclare(String exchange, BuiltinExchangeType type, boolean durable, boolean autoDelete, boolean internal, Map<String, Object> arguments) throws IOException {
+        return exchangeDeclare(exchange, type.getType(), durable, autoDelete, internal, arguments);
+    }
+
+    @Override
+    public AMQP.Exchange.DeclareOk exchangeDeclare(String exchange, String type, boolean durable, boolean autoDelete, boolean internal, Map<String, Object> arguments) throws IOException {
+
+        ensureOpen();
+        SimulatedExchange existing = broker.getExchange(exchange);
+        if (existing != null && !existing.getType().equals(type)) {
+            throw closeWithError(REPLY_PRECONDITION_FAILED, "PRECONDITION_FAILED - inequivalent arg 'type' for exchange '" + exchange + "'");
+        }
+
+        broker.declareExchange(exchange, type);
+        return new AMQImpl.Exchange.DeclareOk();
+    }
+
+    @Override
+    public void exchangeDeclareNoWait(String exchange, String type, boolean durable, boolean autoDelete, boolean internal, Map<String, Object> arguments) throws IOException {
+        exchangeDeclare(exchange, type, durable, autoDelete, internal, arguments);
+    }
+
+    @Override
+    public void exchangeDeclareNoWait(String exchange, BuiltinExchangeType type, boolean durable, boolean autoDelete, boolean internal, Map<String, Object> arguments) throws IOException {
+        exchangeDeclare(exchange, type.getType(), durable, autoDelete, internal, arguments);
+    }
+
+    @Override
+    public AMQP.Exchange.DeclareOk exchangeDeclarePassive(String exchange) throws IOException {
+
+        ensureOpen();
+        if (!exchange.isEmpty() && broker.getExchange(exchange) == null) {
+            throw closeWithError(REPLY_NOT_FOUND, "NOT_FOUND - no exchange '" + exchange + "'");
+        }
+        return new AMQImpl.Exchange.DeclareOk();
+    }
+
+    @Override
+    public AMQP.Exchange.DeleteOk exchangeDelete(String exchange, boolean ifUnused) throws IOException {
+
+        ensureOpen();
+        broker.deleteExchange(exchange);
+        return new AMQImpl.Exchange.DeleteOk();
+    }
+
+    @Override
+    public void exchangeDeleteNoWait(String exchange, boolean ifUnused) throws IOException {
+        exchangeDelete(exchange, ifUnused);
+    }
+
+    @Override
+    public AMQP.Exchange.DeleteOk exchangeDelete(String exchange) throws IOException {
+        return exchangeDelete(exchange, false);
+    }
+
+    @Override
+    public AMQP.Exchange.BindOk exchangeBind(String destination, String source, String routingKey) throws IOException {
+        throw new UnsupportedOperationException("Exchange to exchange binding is not simulated");
+    }
+
+    @Override
+    public AMQP.Exchange.BindOk exchangeBind(String destination, String source, String routingKey, Map<String, Object> arguments) throws IOException {
+        throw new UnsupportedOperationException("Exchange to exchange binding is not simulated");
+    }
+
+    @Override
+    public void exchangeBindNoWait(String destination, String source, String routingKey, Map<String, Object> arguments) throws IOException {
+        throw new UnsupportedOperationException("Exchange to exchange binding is not simulated");
+    }
+
+    @Override
+    public AMQP.Exchange.UnbindOk exchangeUnbind(String destination, String source, String routingKey) throws IOException {
+        throw new UnsupportedOperationException("Exchange to exchange binding is not simulated");
+    }
+
+    @Override
+    public AMQP.Exchange.UnbindOk exchangeUnbind(String destination, String source, String routingKey, Map<String, Object> arguments) throws IOException {
+        throw new UnsupportedOperationException("Exchange to exchange binding is not simulated");
+    }
+
+    @Override
+    public void exchangeUnbindNoWait(String destination, String source, String routingKey, Map<String, Object> arguments) throws IOException {
+        throw new UnsupportedOperationException("Exchange to exchange binding is not simulated");
+    }
+
+    @Override
+    public AMQP.Queue.DeclareOk queueDeclare() throws IOException {
+        return queueDeclare("", false, true, true, null);
+    }
+
+    @Override
+    public AMQP.Queue.DeclareOk queueDeclare(String queue, boolean durable, boolean exclusive, boolean autoDelete, Map<String, Object> arguments) throws IOException {
+
+        ensureOpen();
+        String name = queue == null || queue.isEmpty() ? "amq.gen-" + UUID.randomUUID() : queue;
+        broker.declareQueue(name, arguments);
+        SimulatedQueue simulatedQueue = broker.getQueue(name);
+        return new AMQImpl.Queue.DeclareOk(name, simulatedQueue.getMessageCount(), simulatedQueue.getConsumerCount());
+    }
+
+    @Override
+    public void queueDeclareNoWait(String queue, boolean durable, boolean exclusive, boolean autoDelete, Map<String, Object> arguments) throws IOException {
+        queueDeclare(queue, durable, exclusive, autoDelete, arguments);
+    }
+
+    @Override
+    public AMQP.Queue.DeclareOk queueDeclarePassive(String queue) throws IOException {
+
+        ensureOpen();
+        SimulatedQueue simulatedQueue = requireQueue(queue);
+        return new AMQImpl.Queue.DeclareOk(queue, simulatedQueue.getMessageCount(), simulatedQueue.getConsumerCount());
+    }
+
+    @Override
+    public AMQP.Queue.DeleteOk queueDelete(String queue) throws IOException {
+        return queueDelete(queue, false, false);
+    }
+
+    @Override
+    public AMQP.Queue.DeleteOk queueDelete(String queue, boolean ifUnused, boolean ifEmpty) throws IOException {
+
+        ensureOpen();
+        return new AMQImpl.Queue.DeleteOk(broker.deleteQueue(queue));
+    }
+
+    @Override
+    public void queueDeleteNoWait(String queue, boolean ifUnused, boolean ifEmpty) throws IOException {
+        queueDelete(queue, ifUnused, ifEmpty);
+    }
+
+    @Override
+    public AMQP.Queue.BindOk queueBind(String queue, String exchange, String routingKey) throws IOException {
+        return queueBind(queue, exchange, routingKey, null);
+    }
+
+    @Override
+    public AMQP.Queue.BindOk queueBind(String queue, String exchange, String routingKey, Map<String, Object> arguments) throws IOException {
+
+        ensureOpen();
+        requireExchange(exchange).bind(requireQueue(queue), routingKey);
+        return new AMQImpl.Queue.BindOk();
+    }
+
+    @Override
+    public void queueBindNoWait(String queue, String exchange, String routingKey, Map<String, Object> arguments) throws IOException {
+        queueBind(queue, exchange, routingKey, arguments);
+    }
+
+    @Override
+    public AMQP.Queue.UnbindOk queueUnbind(String queue, String exchange, String routingKey) throws IOException {
+        return queueUnbind(queue, exchange, routingKey, null);
+    }
+
+    @Override
+    public AMQP.Queue.UnbindOk queueUnbind(String queue, String exchange, String routingKey, Map<String, Object> arguments) throws IOException {
+
+        ensureOpen();
+        requireExchange(exchange).unbind(requireQueue(queue), routingKey);
+        return new AMQImpl.Queue.UnbindOk();
+    }
+
+    @Override
+    public AMQP.Queue.PurgeOk queuePurge(String queue) throws IOException {
+
+        ensureOpen();
+        return new AMQImpl.Queue.PurgeOk(requireQueue(queue).purge());
+    }
+
+    @Override
+    public long messageCount(String queue) throws IOException {
+        return queueDeclarePassive(queue).getMessageCount();
+    }
+
+    @Override
+    public long consumerCount(String queue) throws IOException {
+        return queueDeclarePassive(queue).getConsumerCount();
+    }
+
+    private SimulatedQueue requireQueue(String queue) throws IOException {
+
+        SimulatedQueue simulatedQueue = broker.getQueue(queue);
+        if (simulatedQueue == null) {
+            throw closeWithError(REPLY_NOT_FOUND, "NOT_FOUND - no queue '" + queue + "'");
+        }
+        return simulatedQueue;
+    }
+
+    private SimulatedExchange requireExchange(String exchange) throws IOException {
+
+        SimulatedExchange simulatedExchange = broker.getExchange(exchange);
+        if (simulatedExchange == null) {
+            throw closeWithError(REPLY_NOT_FOUND, "NOT_FOUND - no exchange '" + exchange + "'");
+        }
+        return simulatedExchange;
+    }
+
+    /**
+     * Channel error on a synchronous method, channel is close and caller receive IOException cause by shutdown signal.
+     */
+    private IOException closeWithError(int replyCode, String replyText) {
+
+        ShutdownSignalException cause = closeByBroker(replyCode, replyText);
+        return new IOException(cause);
+    }
+
+    /**
+     * Close channel from broker side with a channel error.
+     * @param replyCode
+     * @param replyText
+     * @return shutdown signal deliver to listeners.
+     */
+    ShutdownSignalException closeByBroker(int replyCode, String replyText) {
+
+        ShutdownSignalException cause = new ShutdownSignalException(false, false, new AMQImpl.Channel.Close(replyCode, replyText, 0, 0), this);
+        shutdown(cause, false);
+        return cause;
+    }
+
+    /**
+     * Mark channel closed, requeue every unacked message, notify consumers and shutdown listeners.
+     * @param cause
+     * @param recover true to keep subscriptions so recover() can consume again.
+     */
+    void shutdown(final ShutdownSignalException cause, boolean recover) {
+
+        List<Unacked> requeued = new ArrayList<>();
+        synchronized (deliveryLock) {
+
+            if (closeReason != null) {
+                return;
+            }
+
+            closeReason = cause;
+            epoch++;
+            staleDeliveryTag = deliveryTags.get();
+
+            Map.Entry<Long, Unacked> entry;
+            while ((entry = unacked.pollLastEntry()) != null) {
+                requeued.add(entry.getValue());
+            }
+            globalUnackedCount.set(0);
+        }
+
+        Set<SimulatedQueue> affected = new LinkedHashSet<>();
+        for (Unacked entry : requeued) {
+            entry.queue.requeue(entry.message.redeliver());
+            affected.add(entry.queue);
+        }
+
+        for (final Subscription subscription : subscriptions.values()) {
+            subscription.getQueue().removeSubscription(subscription);
+            subscription.getUnackedCount().set(0);
+            dispatch(() -> subscription.getConsumer().handleShutdownSignal(subscription.getConsumerTag(), cause));
+        }
+        dispatcher.shutdown();
+
+        if (!recover) {
+            subscriptions.clear();
+            connection.removeChannel(this);
+        }
+
+        for (ShutdownListener listener : shutdownListeners) {
+            try {
+                listener.shutdownCompleted(cause);
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Shutdown listener failed", e);
+            }
+        }
+
+        for (SimulatedQueue queue : affected) {
+            queue.dispatch();
+        }
+    }
+
+    /**
+     * Reopen channel after connection recovery, publish sequence number start over and consumers consume again.
+     */
+    void recover() {
+
+        synchronized (publishLock) {
+            nextPublishSeqNo = 1;
+        }
+
+        synchronized (deliveryLock) {
+            dispatcher = newDispatcher();
+            closeReason = null;
+        }
+
+        for (final Subscription subscription : subscriptions.values()) {
+            dispatch(() -> subscription.getConsumer().handleRecoverOk(subscription.getConsumerTag()));
+            subscription.getQueue().addSubscription(subscription);
+            subscription.getQueue().dispatch();
+        }
+    }
+
+    private void ensureOpen() {
+
+        ShutdownSignalException cause = closeReason;
+        if (cause != null) {
+            throw new AlreadyClosedException(cause);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        close(200, "OK");
+    }
+
+    @Override
+    public void close(int closeCode, String closeMessage) throws IOException {
+
+        ensureOpen();
+        shutdown(new ShutdownSignalException(false, true, new AMQImpl.Channel.Close(closeCode, closeMessage, 0, 0), this), false);
+    }
+
+    @Override
+    public void abort() throws IOException {
+        abort(200, "OK");
+    }
+
+    @Override
+    public void abort(int closeCode, String closeMessage) throws IOException {
+
+        if (isOpen()) {
+            shutdown(new ShutdownSignalException(false, true, new AMQImpl.Channel.Close(closeCode, closeMessage, 0, 0), this), false);
+        }
+    }
+
+    @Override
+    public void addShutdownListener(ShutdownListener listener) {
+
+        ShutdownSignalException cause = closeReason;
+        if (cause != null) {
+            listener.shutdownCompleted(cause);
+            return;
+        }
+        shutdownListeners.add(listener);
+    }
+
+    @Override
+    public void removeShutdownListener(ShutdownListener listener) {
+        shutdownListeners.remove(listener);
+    }
+
+    @Override
+    public ShutdownSignalException getCloseReason() {
+        return closeReason;
+    }
+
+    @Override
+    public void notifyListeners() {
+
+        ShutdownSignalException cause = closeReason;
+        if (cause == null) {
+            return;
+        }
+
+        for (ShutdownListener listener : shutdownListeners) {
+            listener.shutdownCompleted(cause);
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return closeReason == null;
+    }
+
+    @Override
+    public void addConfirmListener(ConfirmListener listener) {
+        confirmListeners.add(listener);
+    }
+
+    @Override
+    public boolean removeConfirmListener(ConfirmListener listener) {
+        return confirmListeners.remove(listener);
+    }
+
+    @Override
+    public void clearConfirmListeners() {
+        confirmListeners.clear();
+    }
+
+    @Override
+    public void addReturnListener(ReturnListener listener) {
+        returnListeners.add(listener);
+    }
+
+    @Override
+    public boolean removeReturnListener(ReturnListener listener) {
+        return returnListeners.remove(listener);
+    }
+
+    @Override
+    public void clearReturnListeners() {
+        returnListeners.clear();
+    }
+
+    //Channel flow is deprecated by amqp client, simulated broker never send channel.flow.
+    @Override
+    @Deprecated
+    public boolean flowBlocked() {
+        return false;
+    }
+
+    @Override
+    @Deprecated
+    public void addFlowListener(com.rabbitmq.client.FlowListener listener) {
+    }
+
+    @Override
+    @Deprecated
+    public boolean removeFlowListener(com.rabbitmq.client.FlowListener listener) {
+        return false;
+    }
+
+    @Override
+    @Deprecated
+    public void clearFlowListeners() {
+    }
+
+    @Override
+    public Consumer getDefaultConsumer() {
+        return defaultConsumer;
+    }
+
+    @Override
+    public void setDefaultConsumer(Consumer consumer) {
+        this.defaultConsumer = consumer;
+    }
+
+    @Override
+    public AMQP.Basic.RecoverOk basicRecover() throws IOException {
+        throw new UnsupportedOperationException("basic.recover is not simulated");
+    }
+
+    @Override
+    public AMQP.Basic.RecoverOk basicRecover(boolean requeue) throws IOException {
+        throw new UnsupportedOperationException("basic.recover is not simulated");
+    }
+
+    @Override
+    public AMQP.Tx.SelectOk txSelect() throws IOException {
+        throw new UnsupportedOperationException("Transaction is not simulated");
+    }
+
+    @Override
+    public AMQP.Tx.CommitOk txCommit() throws IOException {
+        throw new UnsupportedOperationException("Transaction is not simulated");
+    }
+
+    @Override
+    public AMQP.Tx.RollbackOk txRollback() throws IOException {
+        throw new UnsupportedOperationException("Transaction is not simulated");
+    }
+
+    @Override
+    public boolean waitForConfirms() throws InterruptedException {
+        throw new UnsupportedOperationException("Use confirm listener with simulated channel");
+    }
+
+    @Override
+    public boolean waitForConfirms(long timeout) throws InterruptedException {
+        throw new UnsupportedOperationException("Use confirm listener with simulated channel");
+    }
+
+    @Override
+    public void waitForConfirmsOrDie() throws IOException, InterruptedException {
+        throw new UnsupportedOperationException("Use confirm listener with simulated channel");
+    }
+
+    @Override
+    public void waitForConfirmsOrDie(long timeout) throws IOException, InterruptedException {
+        throw new UnsupportedOperationException("Use confirm listener with simulated channel");
+    }
+
+    @Override
+    public void asyncRpc(Method method) throws IOException {
+        throw new UnsupportedOperationException("Raw rpc is not simulated");
+    }
+
+    @Override
+    public Command rpc(Method method) throws IOException {
+        throw new UnsupportedOperationException("Raw rpc is not simulated");
+    }
+
+    @Override
+    public String toString() {
+        return "SimulatedChannel(" + channelNumber + ", " + connection + ")";
+    }
+
+    private class Unacked {
+
+        private final Subscription subscription;
+        private final SimulatedQueue queue;
+        private final SimulatedMessage message;
+
+        private Unacked(Subscription subscription, SimulatedQueue queue, SimulatedMessage message) {
+            this.subscription = subscription;
+            this.queue = queue;
+            this.message = message;
+        }
+
+        private void release() {
+
+            if (subscription != null) {
+                subscription.getUnackedCount().decrementAndGet();
+                globalUnackedCount.decrementAndGet();
+            }
+        }
+    }
+}
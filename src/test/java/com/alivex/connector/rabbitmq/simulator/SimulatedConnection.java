@@ -0,0 +1,339 @@
+package com.alivex.connector.rabbitmq.simulator;
+
+import com.rabbitmq.client.AlreadyClosedException;
+import com.rabbitmq.client.BlockedListener;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ExceptionHandler;
+import com.rabbitmq.client.Recoverable;
+import com.rabbitmq.client.RecoveryListener;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+import com.rabbitmq.client.impl.AMQImpl;
+import com.rabbitmq.client.impl.DefaultExceptionHandler;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Connection to simulated broker, implement Recoverable so recovery listener is invoke when broker close connection with recover.
+ */
+public class SimulatedConnection implements Connection, Recoverable {
+
+    private static final Logger LOG = Logger.getLogger(SimulatedConnection.class.getName());
+
+    private final SimulatedBroker broker;
+    private final String clientProvidedName;
+    private final Map<Integer, SimulatedChannel> channels = new ConcurrentHashMap<>();
+    private final AtomicInteger channelNumbers = new AtomicInteger();
+    private final List<BlockedListener> blockedListeners = new CopyOnWriteArrayList<>();
+    private final List<ShutdownListener> shutdownListeners = new CopyOnWriteArrayList<>();
+    private final List<RecoveryListener> recoveryListeners = new CopyOnWriteArrayList<>();
+    private final ExceptionHandler exceptionHandler = new DefaultExceptionHandler();
+
+    private volatile ShutdownSignalException closeReason;
+    private volatile String id;
+
+    SimulatedConnection(SimulatedBroker broker, String clientProvidedName) {
+        this.broker = broker;
+        this.clientProvidedName = clientProvidedName;
+    }
+
+    SimulatedBroker getBroker() {
+        return broker;
+    }
+
+    @Override
+    public Channel createChannel() throws IOException {
+        return createChannel(channelNumbers.incrementAndGet());
+    }
+
+    @Override
+    public Channel createChannel(int channelNumber) throws IOException {
+
+        ensureOpen();
+        SimulatedChannel channel = new SimulatedChannel(this, channelNumber);
+        if (channels.putIfAbsent(channelNumber, channel) != null) {
+            return null;
+        }
+        broker.channelCreated();
+        return channel;
+    }
+
+    void removeChannel(SimulatedChannel channel) {
+        channels.remove(channel.getChannelNumber(), channel);
+    }
+
+    int getChannelCount() {
+        return channels.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        close(200, "OK");
+    }
+
+    @Override
+    public void close(int closeCode, String closeMessage) throws IOException {
+
+        ensureOpen();
+        shutdown(new ShutdownSignalException(true, true, new AMQImpl.Connection.Close(closeCode, closeMessage, 0, 0), this), false);
+    }
+
+    @Override
+    public void close(int timeout) throws IOException {
+        close();
+    }
+
+    @Override
+    public void close(int closeCode, String closeMessage, int timeout) throws IOException {
+        close(closeCode, closeMessage);
+    }
+
+    @Override
+    public void abort() {
+        abort(200, "OK");
+    }
+
+    @Override
+    public void abort(int closeCode, String closeMessage) {
+
+        if (isOpen()) {
+            shutdown(new ShutdownSignalException(true, true, new AMQImpl.Connection.Close(closeCode, closeMessage, 0, 0), this), false);
+        }
+    }
+
+    @Override
+    public void abort(int timeout) {
+        abort();
+    }
+
+    @Override
+    public void abort(int closeCode, String closeMessage, int timeout) {
+        abort(closeCode, closeMessage);
+    }
+
+    /**
+     * Close connection from broker side.
+     * @param closeCode
+     * @param closeMessage
+     * @param recover true to reopen connection, channels and consumers like automatic recovery does.
+     */
+    void closeByBroker(int closeCode, String closeMessage, boolean recover) {
+
+        if (!isOpen()) {
+            return;
+        }
+
+        shutdown(new ShutdownSignalException(true, false, new AMQImpl.Connection.Close(closeCode, closeMessage, 0, 0), this), recover);
+        if (recover) {
+            recover();
+        }
+    }
+
+    void closeChannelsByBroker(int closeCode, String closeMessage) {
+
+        for (SimulatedChannel channel : new ArrayList<>(channels.values())) {
+            channel.closeByBroker(closeCode, closeMessage);
+        }
+    }
+
+    private void shutdown(ShutdownSignalException cause, boolean recover) {
+
+        closeReason = cause;
+        for (SimulatedChannel channel : new ArrayList<>(channels.values())) {
+            channel.shutdown(cause, recover);
+        }
+
+        if (!recover) {
+            channels.clear();
+            broker.removeConnection(this);
+        }
+
+        for (ShutdownListener listener : shutdownListeners) {
+            try {
+                listener.shutdownCompleted(cause);
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Shutdown listener failed", e);
+            }
+        }
+    }
+
+    private void recover() {
+
+        for (RecoveryListener listener : recoveryListeners) {
+            listener.handleRecoveryStarted(this);
+        }
+
+        closeReason = null;
+        for (SimulatedChannel channel : channels.values()) {
+            channel.recover();
+        }
+
+        for (RecoveryListener listener : recoveryListeners) {
+            listener.handleRecovery(this);
+        }
+    }
+
+    void fireBlocked(String reason) {
+
+        for (BlockedListener listener : blockedListeners) {
+            try {
+                listener.handleBlocked(reason);
+            } catch (IOException | RuntimeException e) {
+                LOG.log(Level.WARNING, "Blocked listener failed", e);
+            }
+        }
+    }
+
+    void fireUnblocked() {
+
+        for (BlockedListener listener : blockedListeners) {
+            try {
+                listener.handleUnblocked();
+            } catch (IOException | RuntimeException e) {
+                LOG.log(Level.WARNING, "Blocked listener failed", e);
+            }
+        }
+    }
+
+    private void ensureOpen() {
+
+        ShutdownSignalException cause = closeReason;
+        if (cause != null) {
+            throw new AlreadyClosedException(cause);
+        }
+    }
+
+    @Override
+    public void addBlockedListener(BlockedListener listener) {
+        blockedListeners.add(listener);
+    }
+
+    @Override
+    public boolean removeBlockedListener(BlockedListener listener) {
+        return blockedListeners.remove(listener);
+    }
+
+    @Override
+    public void clearBlockedListeners() {
+        blockedListeners.clear();
+    }
+
+    @Override
+    public void addRecoveryListener(RecoveryListener listener) {
+        recoveryListeners.add(listener);
+    }
+
+    @Override
+    public void removeRecoveryListener(RecoveryListener listener) {
+        recoveryListeners.remove(listener);
+    }
+
+    @Override
+    public void addShutdownListener(ShutdownListener listener) {
+
+        ShutdownSignalException cause = closeReason;
+        if (cause != null) {
+            listener.shutdownCompleted(cause);
+            return;
+        }
+        shutdownListeners.add(listener);
+    }
+
+    @Override
+    public void removeShutdownListener(ShutdownListener listener) {
+        shutdownListeners.remove(listener);
+    }
+
+    @Override
+    public ShutdownSignalException getCloseReason() {
+        return closeReason;
+    }
+
+    @Override
+    public void notifyListeners() {
+
+        ShutdownSignalException cause = closeReason;
+        if (cause == null) {
+            return;
+        }
+
+        for (ShutdownListener listener : shutdownListeners) {
+            listener.shutdownCompleted(cause);
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return closeReason == null;
+    }
+
+    @Override
+    public InetAddress getAddress() {
+        return InetAddress.getLoopbackAddress();
+    }
+
+    @Override
+    public int getPort() {
+        return 5672;
+    }
+
+    @Override
+    public int getChannelMax() {
+        return 2047;
+    }
+
+    @Override
+    public int getFrameMax() {
+        return 131072;
+    }
+
+    @Override
+    public int getHeartbeat() {
+        return 0;
+    }
+
+    @Override
+    public Map<String, Object> getClientProperties() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public String getClientProvidedName() {
+        return clientProvidedName;
+    }
+
+    @Override
+    public Map<String, Object> getServerProperties() {
+        return Collections.singletonMap("product", "RabbitMQ simulator");
+    }
+
+    @Override
+    public ExceptionHandler getExceptionHandler() {
+        return exceptionHandler;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    @Override
+    public String toString() {
+        return "SimulatedConnection(" + clientProvidedName + ")";
+    }
+}
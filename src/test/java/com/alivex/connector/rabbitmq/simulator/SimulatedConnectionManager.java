@@ -0,0 +1,42 @@
+package com.alivex.connector.rabbitmq.simulator;
+
+import com.alivex.connector.rabbitmq.ConnectionManager;
+import com.alivex.connector.rabbitmq.TraceableConnection;
+import com.rabbitmq.client.Connection;
+
+/**
+ * Connection manager backed by simulated broker, use in place of real connection manager without changing publisher or consumer code.
+ * Connection is wrap by traceable connection the same as TraceableConnectionFactory, a closed connection is replace on next call.
+ */
+public class SimulatedConnectionManager extends ConnectionManager {
+
+    private final transient SimulatedBroker broker;
+    private transient Connection publisherConnection;
+    private transient Connection consumerConnection;
+
+    public SimulatedConnectionManager(SimulatedBroker broker) {
+        this.broker = broker;
+    }
+
+    @Override
+    public synchronized Connection getPublisherConnection() {
+
+        if (publisherConnection == null || !publisherConnection.isOpen()) {
+            publisherConnection = new TraceableConnection(broker.newConnection("publisher"));
+        }
+        return publisherConnection;
+    }
+
+    @Override
+    public synchronized Connection getConsumerConnection() {
+
+        if (consumerConnection == null || !consumerConnection.isOpen()) {
+            consumerConnection = new TraceableConnection(broker.newConnection("consumer"));
+        }
+        return consumerConnection;
+    }
+
+    public SimulatedBroker getBroker() {
+        return broker;
+    }
+}
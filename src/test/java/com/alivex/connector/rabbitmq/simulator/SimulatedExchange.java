@@ -0,0 +1,127 @@
+package com.alivex.connector.rabbitmq.simulator;
+
+import com.rabbitmq.client.BuiltinExchangeType;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Exchange of simulated broker, support direct, fanout and topic routing.
+ * Headers exchange can be declare but never route a message.
+ */
+class SimulatedExchange {
+
+    private final String name;
+    private final String type;
+    private final List<Binding> bindings = new CopyOnWriteArrayList<>();
+
+    SimulatedExchange(String name, String type) {
+        this.name = name;
+        this.type = type;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getType() {
+        return type;
+    }
+
+    void bind(SimulatedQueue queue, String routingKey) {
+
+        Binding binding = new Binding(queue, routingKey);
+        if (!bindings.contains(binding)) {
+            bindings.add(binding);
+        }
+    }
+
+    void unbind(SimulatedQueue queue, String routingKey) {
+        bindings.remove(new Binding(queue, routingKey));
+    }
+
+    void unbindAll(SimulatedQueue queue) {
+        bindings.removeIf(binding -> binding.queue == queue);
+    }
+
+    /**
+     * Add every queue bound with matching routing key to destinations.
+     * @param routingKey
+     * @param destinations
+     */
+    void route(String routingKey, Set<SimulatedQueue> destinations) {
+
+        for (Binding binding : bindings) {
+            if (matches(binding.routingKey, routingKey)) {
+                destinations.add(binding.queue);
+            }
+        }
+    }
+
+    private boolean matches(String bindingKey, String routingKey) {
+
+        if (BuiltinExchangeType.FANOUT.getType().equals(type)) {
+            return true;
+        }
+
+        if (BuiltinExchangeType.DIRECT.getType().equals(type)) {
+            return bindingKey.equals(routingKey);
+        }
+
+        if (BuiltinExchangeType.TOPIC.getType().equals(type)) {
+            return matchesTopic(bindingKey.split("\\.", -1), 0, routingKey.split("\\.", -1), 0);
+        }
+
+        return false;
+    }
+
+    private static boolean matchesTopic(String[] pattern, int p, String[] words, int w) {
+
+        if (p == pattern.length) {
+            return w == words.length;
+        }
+
+        if ("#".equals(pattern[p])) {
+            for (int i = w; i <= words.length; i++) {
+                if (matchesTopic(pattern, p + 1, words, i)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        if (w == words.length) {
+            return false;
+        }
+
+        return ("*".equals(pattern[p]) || pattern[p].equals(words[w])) && matchesTopic(pattern, p + 1, words, w + 1);
+    }
+
+    private static class Binding {
+
+        private final SimulatedQueue queue;
+        private final String routingKey;
+
+        private Binding(SimulatedQueue queue, String routingKey) {
+            this.queue = queue;
+            this.routingKey = routingKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            if (!(o instanceof Binding)) {
+                return false;
+            }
+
+            Binding other = (Binding) o;
+            return queue == other.queue && routingKey.equals(other.routingKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(queue.getName(), routingKey);
+        }
+    }
+}
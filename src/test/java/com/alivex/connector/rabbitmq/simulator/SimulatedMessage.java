@@ -0,0 +1,51 @@
+package com.alivex.connector.rabbitmq.simulator;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+
+/**
+ * Message held by simulated queue, body is a private copy of what publisher sent.
+ */
+class SimulatedMessage {
+
+    private final String exchange;
+    private final String routingKey;
+    private final BasicProperties properties;
+    private final byte[] body;
+    private final boolean redelivered;
+
+    SimulatedMessage(String exchange, String routingKey, BasicProperties properties, byte[] body, boolean redelivered) {
+        this.exchange = exchange;
+        this.routingKey = routingKey;
+        this.properties = properties;
+        this.body = body;
+        this.redelivered = redelivered;
+    }
+
+    SimulatedMessage redeliver() {
+        return new SimulatedMessage(exchange, routingKey, properties, body, true);
+    }
+
+    SimulatedMessage copy() {
+        return new SimulatedMessage(exchange, routingKey, properties, body, redelivered);
+    }
+
+    String getExchange() {
+        return exchange;
+    }
+
+    String getRoutingKey() {
+        return routingKey;
+    }
+
+    BasicProperties getProperties() {
+        return properties;
+    }
+
+    byte[] getBody() {
+        return body;
+    }
+
+    boolean isRedelivered() {
+        return redelivered;
+    }
+}
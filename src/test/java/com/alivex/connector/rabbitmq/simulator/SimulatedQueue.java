@@ -0,0 +1,159 @@
+package com.alivex.connector.rabbitmq.simulator;
+
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Queue of simulated broker, deliver round-robin to subscriptions which still have room in their prefetch window.
+ * Support x-message-ttl, x-dead-letter-exchange and x-dead-letter-routing-key arguments.
+ */
+class SimulatedQueue {
+
+    static final String MESSAGE_TTL = "x-message-ttl";
+    static final String DEAD_LETTER_EXCHANGE = "x-dead-letter-exchange";
+    static final String DEAD_LETTER_ROUTING_KEY = "x-dead-letter-routing-key";
+
+    private final SimulatedBroker broker;
+    private final String name;
+    private final Map<String, Object> arguments;
+    private final Deque<SimulatedMessage> messages = new ConcurrentLinkedDeque<>();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private int nextSubscription;
+
+    SimulatedQueue(SimulatedBroker broker, String name, Map<String, Object> arguments) {
+        this.broker = broker;
+        this.name = name;
+        this.arguments = arguments;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    void enqueue(SimulatedMessage message) {
+
+        messages.addLast(message);
+        scheduleExpiry(message);
+        dispatch();
+    }
+
+    /**
+     * Put message back at the head of queue, used for nack, reject and unacked message of closed channel.
+     * @param message
+     */
+    void requeue(SimulatedMessage message) {
+        messages.addFirst(message);
+    }
+
+    SimulatedMessage poll() {
+        return messages.pollFirst();
+    }
+
+    int getMessageCount() {
+        return messages.size();
+    }
+
+    int getConsumerCount() {
+        return subscriptions.size();
+    }
+
+    int purge() {
+
+        int count = 0;
+        while (messages.pollFirst() != null) {
+            count++;
+        }
+        return count;
+    }
+
+    void addSubscription(Subscription subscription) {
+        subscriptions.add(subscription);
+    }
+
+    void removeSubscription(Subscription subscription) {
+        subscriptions.remove(subscription);
+    }
+
+    /**
+     * Hand ready messages to subscriptions until queue is empty or every prefetch window is full.
+     */
+    synchronized void dispatch() {
+
+        while (!messages.isEmpty()) {
+
+            Subscription subscription = nextAvailableSubscription();
+            if (subscription == null) {
+                return;
+            }
+
+            SimulatedMessage message = messages.pollFirst();
+            if (message == null) {
+                return;
+            }
+
+            subscription.getChannel().deliver(subscription, message);
+        }
+    }
+
+    private Subscription nextAvailableSubscription() {
+
+        int size = subscriptions.size();
+        for (int i = 0; i < size; i++) {
+            int index = (nextSubscription++ & Integer.MAX_VALUE) % size;
+            Subscription subscription = subscriptions.get(index);
+            if (subscription.canAccept()) {
+                return subscription;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Route message to dead letter exchange of this queue, message is drop when no dead letter exchange is configured.
+     * @param message
+     */
+    void deadLetter(SimulatedMessage message) {
+
+        Object exchange = arguments.get(DEAD_LETTER_EXCHANGE);
+        if (exchange == null) {
+            return;
+        }
+
+        Object routingKey = arguments.get(DEAD_LETTER_ROUTING_KEY);
+        broker.deadLetter(exchange.toString(), routingKey == null ? message.getRoutingKey() : routingKey.toString(), message);
+    }
+
+    private void scheduleExpiry(final SimulatedMessage message) {
+
+        long ttl = getTtl(message);
+        if (ttl < 0) {
+            return;
+        }
+
+        broker.schedule(ttl, () -> {
+            if (messages.removeFirstOccurrence(message)) {
+                deadLetter(message);
+            }
+        });
+    }
+
+    private long getTtl(SimulatedMessage message) {
+
+        long ttl = -1;
+        Object queueTtl = arguments.get(MESSAGE_TTL);
+        if (queueTtl instanceof Number) {
+            ttl = ((Number) queueTtl).longValue();
+        }
+
+        if (message.getProperties() != null && message.getProperties().getExpiration() != null) {
+            long messageTtl = Long.parseLong(message.getProperties().getExpiration());
+            ttl = ttl < 0 ? messageTtl : Math.min(ttl, messageTtl);
+        }
+
+        return ttl;
+    }
+}
@@ -0,0 +1,67 @@
+package com.alivex.connector.rabbitmq.simulator;
+
+import com.rabbitmq.client.Consumer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Consumer registered on a simulated queue through basicConsume.
+ */
+class Subscription {
+
+    private final SimulatedChannel channel;
+    private final SimulatedQueue queue;
+    private final String consumerTag;
+    private final Consumer consumer;
+    private final boolean autoAck;
+    private final int prefetchCount;
+    private final AtomicInteger unackedCount = new AtomicInteger();
+
+    Subscription(SimulatedChannel channel, SimulatedQueue queue, String consumerTag, Consumer consumer, boolean autoAck, int prefetchCount) {
+        this.channel = channel;
+        this.queue = queue;
+        this.consumerTag = consumerTag;
+        this.consumer = consumer;
+        this.autoAck = autoAck;
+        this.prefetchCount = prefetchCount;
+    }
+
+    /**
+     * @return true when channel is open and prefetch window of consumer and channel allow one more delivery.
+     */
+    boolean canAccept() {
+
+        if (!channel.isOpen()) {
+            return false;
+        }
+
+        if (autoAck) {
+            return true;
+        }
+
+        return (prefetchCount == 0 || unackedCount.get() < prefetchCount) && channel.hasGlobalCapacity();
+    }
+
+    SimulatedChannel getChannel() {
+        return channel;
+    }
+
+    SimulatedQueue getQueue() {
+        return queue;
+    }
+
+    String getConsumerTag() {
+        return consumerTag;
+    }
+
+    Consumer getConsumer() {
+        return consumer;
+    }
+
+    boolean isAutoAck() {
+        return autoAck;
+    }
+
+    AtomicInteger getUnackedCount() {
+        return unackedCount;
+    }
+}